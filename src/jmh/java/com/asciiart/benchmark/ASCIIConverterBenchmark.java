@@ -0,0 +1,63 @@
+package com.asciiart.benchmark;
+
+import com.asciiart.processor.ASCIIConverter;
+import com.asciiart.processor.GrayFrame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Glyph mapping cost for one frame of gray cells
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ASCIIConverterBenchmark {
+    
+    @Param({"40x15", "80x24", "120x40", "160x50"})
+    public String resolution;
+    
+    @Param({"simple", "extended", "block"})
+    public String charset;
+    
+    private ASCIIConverter converter;
+    private GrayFrame frame;
+    
+    @Setup
+    public void setup() {
+        int[] size = BenchmarkInputs.size(resolution);
+        converter = new ASCIIConverter(BenchmarkInputs.charset(charset));
+        frame = BenchmarkInputs.noiseFrame(size[0], size[1], 42L);
+    }
+    
+    @Benchmark
+    public String convertToAscii() {
+        return converter.convertToAscii(frame);
+    }
+    
+    /**
+     * One lookup per cell of the frame
+     */
+    @Benchmark
+    public int grayscaleToChar() {
+        byte[] cells = frame.getData();
+        int checksum = 0;
+        for (int i = 0, n = frame.getWidth() * frame.getHeight(); i < n; i++) {
+            checksum += converter.grayscaleToChar(cells[i] & 0xFF);
+        }
+        return checksum;
+    }
+}
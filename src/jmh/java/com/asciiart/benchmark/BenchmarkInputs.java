@@ -0,0 +1,70 @@
+package com.asciiart.benchmark;
+
+import com.asciiart.processor.ASCIIConverter;
+import com.asciiart.processor.GrayFrame;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+
+/**
+ * Shared parameters and synthetic inputs for the benchmarks
+ */
+final class BenchmarkInputs {
+    private BenchmarkInputs() {
+    }
+    
+    /**
+     * Parse "WIDTHxHEIGHT" into {width, height}
+     */
+    static int[] size(String value) {
+        String[] parts = value.split("x");
+        return new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1])};
+    }
+    
+    static String charset(String name) {
+        switch (name) {
+            case "extended":
+                return ASCIIConverter.EXTENDED_CHARSET;
+            case "block":
+                return ASCIIConverter.BLOCK_CHARSET;
+            default:
+                return ASCIIConverter.SIMPLE_CHARSET;
+        }
+    }
+    
+    /**
+     * Gray frame of uniformly random cells, the worst case for diff rendering
+     */
+    static GrayFrame noiseFrame(int width, int height, long seed) {
+        GrayFrame frame = new GrayFrame(width, height);
+        Random random = new Random(seed);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                frame.set(x, y, random.nextInt(256));
+            }
+        }
+        return frame;
+    }
+    
+    /**
+     * Channel that accepts and discards everything
+     */
+    static final class NullChannel implements WritableByteChannel {
+        @Override
+        public int write(ByteBuffer src) {
+            int written = src.remaining();
+            src.position(src.limit());
+            return written;
+        }
+        
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+        
+        @Override
+        public void close() {
+        }
+    }
+}
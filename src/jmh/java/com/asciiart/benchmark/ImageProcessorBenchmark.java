@@ -0,0 +1,96 @@
+package com.asciiart.benchmark;
+
+import com.asciiart.camera.SyntheticFrameSource;
+import com.asciiart.processor.GrayFrame;
+import com.asciiart.processor.ImageProcessor;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame processing cost from a synthetic camera frame to gray cells
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ImageProcessorBenchmark {
+    
+    // Output resolutions selectable with keys 1-4
+    @Param({"40x15", "80x24", "120x40", "160x50"})
+    public String resolution;
+    
+    @Param({"640x480", "1280x720"})
+    public String source;
+    
+    private SyntheticFrameSource frameSource;
+    private ImageProcessor processor;
+    private Mat frame;
+    private Mat grayCells;
+    private GrayFrame target;
+    private GrayFrame edgeInput;
+    
+    @Setup
+    public void setup() {
+        int[] sourceSize = BenchmarkInputs.size(source);
+        int[] outputSize = BenchmarkInputs.size(resolution);
+        
+        // Noise defeats any shortcut a smooth image would allow
+        frameSource = new SyntheticFrameSource(SyntheticFrameSource.Pattern.NOISE, sourceSize[0], sourceSize[1]);
+        if (!frameSource.initialize()) {
+            throw new IllegalStateException("Synthetic source failed to initialize");
+        }
+        frame = frameSource.captureFrame();
+        
+        processor = new ImageProcessor();
+        processor.setTargetDimensions(outputSize[0], outputSize[1]);
+        
+        // A gray Mat already at output size, the input of matToGrayFrame
+        Mat gray = processor.toGrayscale(frame);
+        grayCells = processor.resizeForTerminal(gray);
+        processor.recycle(gray);
+        target = new GrayFrame();
+        edgeInput = new GrayFrame();
+        edgeInput.copyFrom(processor.processFrame(frame));
+    }
+    
+    @TearDown
+    public void tearDown() {
+        processor.recycle(grayCells);
+        processor.release();
+        frameSource.release();
+    }
+    
+    @Benchmark
+    public GrayFrame processFrame() {
+        return processor.processFrame(frame);
+    }
+    
+    @Benchmark
+    public GrayFrame matToGrayFrame() {
+        return processor.matToGrayFrame(grayCells, target);
+    }
+    
+    /**
+     * Edge pass alone; compare with processFrame for its share of frame time
+     */
+    @Benchmark
+    public GrayFrame detectEdges() {
+        processor.detectEdges(edgeInput);
+        return edgeInput;
+    }
+}
@@ -0,0 +1,79 @@
+package com.asciiart.benchmark;
+
+import com.asciiart.camera.SyntheticFrameSource;
+import com.asciiart.display.TerminalRenderer;
+import com.asciiart.processor.ASCIIConverter;
+import com.asciiart.processor.GrayFrame;
+import com.asciiart.processor.ImageProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and writing a frame plus status line into a channel that
+ * discards everything, so only the renderer's own work is measured
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TerminalRendererBenchmark {
+    private static final int FRAME_COUNT = 16;
+    private static final String STATUS = "FPS: 15.0 | Commands: +/- [/] c 1-4 s r q h";
+    
+    @Param({"40x15", "80x24", "120x40", "160x50"})
+    public String resolution;
+    
+    @Param({"simple", "extended", "block"})
+    public String charset;
+    
+    @Param({"true", "false"})
+    public boolean diffRendering;
+    
+    private TerminalRenderer renderer;
+    private ASCIIConverter.GlyphTable table;
+    private final GrayFrame[] frames = new GrayFrame[FRAME_COUNT];
+    private int next = 0;
+    
+    @Setup
+    public void setup() {
+        int[] size = BenchmarkInputs.size(resolution);
+        
+        // A moving scene, so consecutive frames differ the way camera frames do
+        SyntheticFrameSource source = new SyntheticFrameSource(SyntheticFrameSource.Pattern.MOVING, 640, 480);
+        if (!source.initialize()) {
+            throw new IllegalStateException("Synthetic source failed to initialize");
+        }
+        ImageProcessor processor = new ImageProcessor();
+        processor.setTargetDimensions(size[0], size[1]);
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            frames[i] = new GrayFrame();
+            frames[i].copyFrom(processor.processFrame(source.captureFrame()));
+        }
+        processor.release();
+        source.release();
+        
+        table = new ASCIIConverter(BenchmarkInputs.charset(charset)).getGlyphTable();
+        renderer = new TerminalRenderer(new BenchmarkInputs.NullChannel(), true);
+        renderer.setDiffRendering(diffRendering);
+    }
+    
+    @Benchmark
+    public int renderFrame() {
+        renderer.renderFrame(frames[next], table, STATUS);
+        next = (next + 1) % FRAME_COUNT;
+        return renderer.getLastFrameBytes();
+    }
+}
@@ -1,14 +1,39 @@
 package com.asciiart;
 
-import com.asciiart.camera.CameraManager;
+import com.asciiart.camera.AsyncFrameSource;
+import com.asciiart.camera.FrameSource;
+import com.asciiart.camera.FrameSourceFactory;
+import com.asciiart.processor.GrayFrame;
 import com.asciiart.processor.ImageProcessor;
 import com.asciiart.processor.ASCIIConverter;
+import com.asciiart.processor.PipelineConfig;
+import com.asciiart.processor.RowBands;
+import com.asciiart.display.AnsiColor;
 import com.asciiart.display.TerminalRenderer;
+import com.asciiart.metrics.StageMetrics;
+import com.asciiart.pipeline.FramePipeline;
+import com.asciiart.pipeline.FrameScheduler;
+import com.asciiart.pipeline.ProcessedFrame;
+import com.asciiart.pipeline.SceneChangeDetector;
+import com.asciiart.pipeline.TileLayout;
+import com.asciiart.pipeline.TiledCompositor;
+import com.asciiart.recording.RecordingFormat;
+import com.asciiart.recording.RecordingWriter;
+import com.asciiart.server.StreamServer;
 import com.asciiart.utils.SimpleKeyboardHandler;
 import com.asciiart.utils.FileUtils;
+import com.asciiart.utils.FrameSaver;
+import com.asciiart.utils.LiveConfig;
+import com.asciiart.utils.NativeMemoryMonitor;
+import com.asciiart.utils.SettingsLoader;
+import com.fasterxml.jackson.databind.JsonNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ch.qos.logback.classic.Level;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -17,12 +42,35 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class ASCIIArtApp {
     private static final Logger logger = LoggerFactory.getLogger(ASCIIArtApp.class);
     
-    private CameraManager cameraManager;
+    // Output size factor per degrade level beyond the charset fallback
+    private static final double DETAIL_STEP = 0.75;
+    // Terminal rows taken by the status line below the frame
+    private static final int STATUS_ROWS = 1;
+    // How long shutdown waits for the render loop before releasing native memory
+    private static final long RENDER_LOOP_JOIN_MILLIS = 2000;
+    
+    private FrameSource frameSource;
+    private TiledCompositor compositor;
     private ImageProcessor imageProcessor;
     private ASCIIConverter asciiConverter;
+    private LiveConfig liveConfig;
+    private RowBands rowBands;
+    private FramePipeline framePipeline;
+    private FrameScheduler frameScheduler;
+    private SceneChangeDetector sceneDetector;
+    private StageMetrics stageMetrics;
     private TerminalRenderer terminalRenderer;
     private SimpleKeyboardHandler keyboardHandler;
+    private NativeMemoryMonitor memoryMonitor;
+    private FrameSaver frameSaver;
+    private RecordingWriter recordingWriter;
+    private StreamServer streamServer;
+    private String recordingDirectory = ".";
+    private int keyframeInterval = 60;
+    private double targetFps = 15.0;
+    private boolean recordOnStart = false;
     private AtomicBoolean running = new AtomicBoolean(false);
+    private volatile Thread renderThread;
     
     public ASCIIArtApp() {
         logger.info("Initializing ASCII Art Camera...");
@@ -30,20 +78,143 @@ public class ASCIIArtApp {
     
     public void initialize() {
         try {
-            // Initialize components
-            cameraManager = new CameraManager();
+            JsonNode settings = SettingsLoader.load();
+            
+            // Initialize components; several sources are composited into one frame
+            List<FrameSource> tileSources = FrameSourceFactory.createTiles(settings);
+            if (tileSources.isEmpty()) {
+                frameSource = FrameSourceFactory.create(settings);
+            }
+            JsonNode performance = settings.path("performance");
+            rowBands = RowBands.create(performance.path("workerThreads").asInt(0),
+                                       performance.path("parallelThreshold").asLong(RowBands.DEFAULT_THRESHOLD));
             imageProcessor = new ImageProcessor();
+            imageProcessor.setRowBands(rowBands);
+            if (settings.path("performance").path("nativeMemoryDebug").asBoolean(false)) {
+                memoryMonitor = new NativeMemoryMonitor(imageProcessor.getMatPool());
+            }
             asciiConverter = new ASCIIConverter();
+            asciiConverter.setRowBands(rowBands);
+            imageProcessor.deferAdjustmentsTo(asciiConverter);
+            imageProcessor.ditherWith(asciiConverter);
+            
+            // Processing settings that change while running travel as snapshots
+            liveConfig = new LiveConfig(PipelineConfig.fromSettings(settings));
+            imageProcessor.applyConfig(liveConfig.get());
             terminalRenderer = new TerminalRenderer();
+            terminalRenderer.setDiffRendering(settings.path("display").path("diffRendering").asBoolean(true));
+            AnsiColor.Mode colorMode = AnsiColor.Mode.parse(settings.path("display").path("colorMode").asText("none"));
+            terminalRenderer.setColorMode(colorMode, settings.path("display").path("colorByteBudget").asInt(32768));
+            imageProcessor.setColorSampling(colorMode != AnsiColor.Mode.NONE);
+            targetFps = performance.path("targetFps").asDouble(15.0);
+            frameScheduler = new FrameScheduler(targetFps,
+                                                performance.path("adaptiveQuality").asBoolean(true)
+                                                    ? performance.path("maxDegradeLevel").asInt(4) : 0);
+            frameScheduler.setLevelListener(this::applyQualityLevel);
+            sceneDetector = new SceneChangeDetector(performance.path("skipStaticFrames").asBoolean(true),
+                                                    performance.path("staticThreshold").asInt(3),
+                                                    performance.path("staticRefreshMs").asLong(1000));
+            if (frameSource != null) {
+                framePipeline = new FramePipeline(frameSource, imageProcessor,
+                                                  performance.path("pipelineDepth").asInt(1),
+                                                  performance.path("pipelined").asBoolean(true),
+                                                  frameScheduler);
+            } else {
+                JsonNode composite = settings.path("composite");
+                compositor = new TiledCompositor(tileSources,
+                                                 TileLayout.Mode.parse(composite.path("layout").asText("grid")),
+                                                 composite.path("samplesPerCell")
+                                                     .asInt(TiledCompositor.DEFAULT_SAMPLES_PER_CELL),
+                                                 imageProcessor, rowBands);
+                compositor.ditherWith(asciiConverter);
+                framePipeline = new FramePipeline(compositor, performance.path("pipelineDepth").asInt(1),
+                                                  performance.path("pipelined").asBoolean(true), frameScheduler);
+            }
+            
+            framePipeline.followConfig(liveConfig);
             
-            // Initialize camera
-            if (!cameraManager.initialize()) {
-                logger.error("Failed to initialize camera");
+            // Per-stage latency metrics; windowed FPS is tracked either way
+            stageMetrics = new StageMetrics(performance.path("metrics").asBoolean(true),
+                                            performance.path("metricsLogIntervalSec").asInt(10));
+            if (stageMetrics.isEnabled()) {
+                imageProcessor.setMetrics(stageMetrics);
+                terminalRenderer.setMetrics(stageMetrics);
+                framePipeline.setMetrics(stageMetrics);
+                if (frameSource instanceof AsyncFrameSource) {
+                    ((AsyncFrameSource) frameSource).setMetrics(stageMetrics);
+                }
+                if (compositor != null) {
+                    compositor.setMetrics(stageMetrics);
+                }
+                stageMetrics.register();
+            }
+            
+            JsonNode recording = settings.path("recording");
+            recordingDirectory = recording.path("directory").asText(".");
+            keyframeInterval = recording.path("keyframeInterval").asInt(60);
+            recordOnStart = recording.path("enabled").asBoolean(false);
+            
+            // Initialize frame source
+            if (compositor != null) {
+                if (!compositor.initialize()) {
+                    logger.error("Failed to initialize composited frame sources");
+                    System.exit(1);
+                }
+            } else if (!frameSource.initialize()) {
+                logger.error("Failed to initialize frame source: {}", frameSource.getName());
                 System.exit(1);
             }
             
             // Initialize keyboard handler
-            keyboardHandler = new SimpleKeyboardHandler(imageProcessor, asciiConverter, running);
+            keyboardHandler = new SimpleKeyboardHandler(imageProcessor, liveConfig, running);
+            keyboardHandler.setCompactStatus("compact".equalsIgnoreCase(
+                settings.path("display").path("statusMode").asText("full")));
+            
+            // Frame saves go through a background writer
+            JsonNode saving = settings.path("saving");
+            frameSaver = new FrameSaver(saving.path("directory").asText("."),
+                                        saving.path("queueCapacity").asInt(64));
+            frameSaver.setStatusListener(keyboardHandler::showMessage);
+            frameSaver.setMetrics(stageMetrics);
+            keyboardHandler.setBurstFrames(saving.path("burstFrames").asInt(30));
+            
+            // Edits to an external settings file take effect without a restart
+            Path settingsFile = SettingsLoader.externalPath();
+            if (settingsFile != null) {
+                liveConfig.setReloadListener(keyboardHandler::showMessage);
+                try {
+                    liveConfig.watch(settingsFile);
+                } catch (IOException e) {
+                    logger.warn("Cannot watch {} for changes: {}", settingsFile, e.getMessage());
+                }
+            }
+            
+            // Stream displayed frames to remote viewers
+            JsonNode server = settings.path("server");
+            if (server.path("enabled").asBoolean(false)) {
+                streamServer = new StreamServer(server.path("host").asText("0.0.0.0"),
+                                                server.path("port").asInt(2323),
+                                                server.path("maxClients").asInt(500));
+                streamServer.setSendBufferBytes(server.path("sendBufferBytes").asInt(65536));
+                streamServer.setMetrics(stageMetrics);
+                streamServer.start();
+                streamServer.register();
+            }
+            
+            // Fit the real terminal and follow its resizes, or use the configured size
+            JsonNode display = settings.path("display");
+            if (display.path("autoSize").asBoolean(true) && terminalRenderer.isTerminalSizeDetected()) {
+                int[] size = terminalRenderer.getTerminalSize();
+                applyTerminalSize(size[0], size[1]);
+                if (!terminalRenderer.watchTerminalSize(this::applyTerminalSize)) {
+                    logger.info("No SIGWINCH on this platform; polling the terminal size instead");
+                }
+            } else {
+                int width = display.path("terminalWidth").asInt(80);
+                int height = display.path("terminalHeight").asInt(24);
+                imageProcessor.setTargetDimensions(width, height);
+                keyboardHandler.setDefaultDimensions(width, height);
+            }
             
             logger.info("Successfully initialized all components");
         } catch (Exception e) {
@@ -62,14 +233,18 @@ public class ASCIIArtApp {
         // Print instructions
         System.out.println("=== CONTROLS (type letter + Enter) ===");
         System.out.println("  +/- : Contrast     [/] : Brightness");
-        System.out.println("  c   : Charset      1-4 : Resolution");
-        System.out.println("  s   : Save frame   r   : Reset");
+        System.out.println("  c   : Charset      1-4 : Resolution (0 fits terminal)");
+        System.out.println("  s   : Save frame   b   : Burst save");
+        System.out.println("  r   : Reset");
+        System.out.println("  m   : Metrics      e   : Edges");
+        System.out.println("  d   : Dithering    v   : Record");
         System.out.println("  q   : Quit         h   : Help");
         System.out.println("=======================================");
         System.out.println("\nStarting in 2 seconds...\n");
         
-        // Start keyboard handler
+        // Start keyboard handler and the background frame saver
         keyboardHandler.start();
+        frameSaver.start();
         
         // Add shutdown hook for cleanup
         Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown));
@@ -84,80 +259,95 @@ public class ASCIIArtApp {
         // Clear screen completely before starting rendering
         terminalRenderer.clear();
         
-        // Main processing loop
-        long frameTime = 1000 / 15; // Target 15 FPS
-        int frameCount = 0;
-        long startTime = System.currentTimeMillis();
-        String currentAsciiArt = "";
+        // Main render loop; capture and processing run on their own threads when pipelined
+        // and the frame scheduler sets the pace
         int lastWidth = 0;
         int lastHeight = 0;
+        String lastStatusMsg = "";
+        framePipeline.start();
+        renderThread = Thread.currentThread();
         
         while (running.get()) {
             try {
-                long frameStart = System.currentTimeMillis();
+                // Only does anything where SIGWINCH could not be handled
+                terminalRenderer.pollTerminalSize();
                 
-                // Capture frame from camera
-                org.bytedeco.opencv.opencv_core.Mat frame = cameraManager.captureFrame();
+                // Newest processed frame, with its sequence number and capture time
+                ProcessedFrame processed = framePipeline.takeLatest();
                 
-                if (frame != null && !frame.empty()) {
-                    // Process the frame: resize, grayscale, adjust
-                    int[][] grayValues = imageProcessor.processFrame(frame);
-                    
-                    if (grayValues != null) {
+                if (processed != null) {
+                    long renderStart = System.nanoTime();
+                    // Read before release; the slot is reused by the process stage afterwards
+                    long processingNanos = processed.getProcessingNanos();
+                    boolean displayed = false;
+                    try {
+                        GrayFrame grayFrame = processed.getCells();
+                        
                         // Check if resolution changed
-                        boolean resolutionChanged = (grayValues[0].length != lastWidth || 
-                                                    grayValues.length != lastHeight);
+                        boolean resolutionChanged = (grayFrame.getWidth() != lastWidth || 
+                                                    grayFrame.getHeight() != lastHeight);
                         if (resolutionChanged) {
                             // Clear screen completely on resolution change
                             terminalRenderer.clear();
-                            lastWidth = grayValues[0].length;
-                            lastHeight = grayValues.length;
+                            lastWidth = grayFrame.getWidth();
+                            lastHeight = grayFrame.getHeight();
                         }
                         
-                        // Convert to ASCII
-                        currentAsciiArt = asciiConverter.convertToAscii(grayValues);
-                        
-                        // Check if we should save this frame
+                        // Save this frame in the background if requested; a full queue drops it
                         if (keyboardHandler.shouldSaveFrame()) {
-                            FileUtils.saveAsciiArtWithMetadata(
-                                currentAsciiArt,
-                                asciiConverter.getCurrentCharset(),
-                                imageProcessor.getContrast(),
-                                imageProcessor.getBrightness(),
-                                grayValues[0].length,
-                                grayValues.length
-                            );
+                            long convertStart = System.nanoTime();
+                            String asciiArt = asciiConverter.convertToAscii(grayFrame);
+                            stageMetrics.recordSince(StageMetrics.Stage.CONVERT, convertStart);
+                            // The snapshot this frame was processed with, not the newest one
+                            PipelineConfig config = processed.getConfig() != null
+                                ? processed.getConfig() : liveConfig.get();
+                            if (!frameSaver.submit(asciiArt, asciiConverter.getCurrentCharset(),
+                                                   config.getContrast(), config.getBrightness(),
+                                                   grayFrame.getWidth(), grayFrame.getHeight())) {
+                                keyboardHandler.showMessage("Save queue full, frame dropped");
+                            }
+                        }
+                        if (keyboardHandler.shouldToggleRecording() || recordOnStart) {
+                            recordOnStart = false;
+                            toggleRecording(grayFrame);
                         }
                         
-                        // Render to terminal
-                        terminalRenderer.render(currentAsciiArt);
-                        
-                        // Add status line
-                        frameCount++;
-                        double fps = frameCount / ((System.currentTimeMillis() - startTime) / 1000.0);
-                        
-                        // Get any status message from keyboard handler
+                        // Skip conversion and output while the scene stands still;
+                        // a new status message always gets through
                         String statusMsg = keyboardHandler.getStatusMessage();
-                        String status;
-                        if (!statusMsg.isEmpty()) {
-                            status = ">>> " + statusMsg + " | FPS: " + String.format("%.1f", fps);
+                        if (!statusMsg.equals(lastStatusMsg)) {
+                            sceneDetector.invalidate();
+                            lastStatusMsg = statusMsg;
+                        }
+                        ASCIIConverter.GlyphTable glyphTable = asciiConverter.getGlyphTable();
+                        displayed = !sceneDetector.isUnchanged(grayFrame, glyphTable, renderStart);
+                        if (memoryMonitor != null) {
+                            memoryMonitor.maybeLog();
+                        }
+                        
+                        // Convert and render frame plus status in one write, sending only changed cells
+                        if (displayed) {
+                            terminalRenderer.renderFrame(grayFrame, glyphTable, buildStatus(statusMsg));
+                            recordFrame(grayFrame, glyphTable, renderStart);
+                            if (streamServer != null) {
+                                streamServer.publish(grayFrame, glyphTable);
+                            }
                         } else {
-                            status = String.format("FPS: %.1f | Commands: +/- [/] c 1-4 s r q h", fps);
+                            stageMetrics.frameUnchanged();
                         }
-                        terminalRenderer.renderStatus(status);
+                    } finally {
+                        framePipeline.release(processed);
+                    }
+                    if (displayed) {
+                        stageMetrics.frameRendered();
                     }
                     
-                    // Clean up the frame
-                    frame.release();
+                    // Stages overlap when threaded, so only the slower one limits the rate
+                    long renderNanos = System.nanoTime() - renderStart;
+                    frameScheduler.recordFrame(framePipeline.isThreaded()
+                        ? Math.max(renderNanos, processingNanos)
+                        : renderNanos + processingNanos);
                 }
-                
-                // Frame rate limiting
-                long frameEnd = System.currentTimeMillis();
-                long sleepTime = frameTime - (frameEnd - frameStart);
-                if (sleepTime > 0) {
-                    Thread.sleep(sleepTime);
-                }
-                
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 break;
@@ -168,10 +358,146 @@ public class ASCIIArtApp {
         }
     }
     
+    /**
+     * Start a new recording, or finish the current one
+     */
+    private synchronized void toggleRecording(GrayFrame frame) {
+        if (recordingWriter != null) {
+            stopRecording();
+            return;
+        }
+        try {
+            Path path = FileUtils.newRecordingPath(recordingDirectory, RecordingFormat.EXTENSION);
+            recordingWriter = new RecordingWriter(path, asciiConverter.getCurrentCharset(), frame.getWidth(),
+                                                  frame.getHeight(), targetFps, keyframeInterval);
+            keyboardHandler.showMessage("Recording to " + recordingWriter.getPath().getFileName());
+        } catch (IOException e) {
+            logger.error("Failed to start recording", e);
+            keyboardHandler.showMessage("Recording failed: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Append a displayed frame to the recording, if one is running
+     */
+    private synchronized void recordFrame(GrayFrame frame, ASCIIConverter.GlyphTable table, long nanos) {
+        if (recordingWriter == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            recordingWriter.writeFrame(frame, table, nanos);
+        } catch (IOException e) {
+            logger.error("Failed to record frame", e);
+            keyboardHandler.showMessage("Recording stopped: " + e.getMessage());
+            stopRecording();
+        }
+        stageMetrics.recordSince(StageMetrics.Stage.RECORD, start);
+    }
+    
+    private synchronized void stopRecording() {
+        if (recordingWriter == null) {
+            return;
+        }
+        try {
+            recordingWriter.close();
+            keyboardHandler.showMessage("Recorded " + recordingWriter.getFrameCount() + " frames to "
+                                        + recordingWriter.getPath().getFileName());
+        } catch (IOException e) {
+            logger.error("Failed to finish recording", e);
+        }
+        recordingWriter = null;
+    }
+    
+    /**
+     * Status line below the frame; FPS is over the last one-second window
+     */
+    private String buildStatus(String statusMsg) {
+        double fps = stageMetrics.getFramesPerSecond();
+        String status;
+        if (keyboardHandler.isCompactStatus()) {
+            status = stageMetrics.compactSummary();
+            if (!statusMsg.isEmpty()) {
+                status = ">>> " + statusMsg + " | " + status;
+            }
+        } else if (!statusMsg.isEmpty()) {
+            status = ">>> " + statusMsg + " | FPS: " + String.format("%.1f", fps);
+        } else {
+            status = String.format("FPS: %.1f | Commands: +/- [/] c 0-4 e d s b v m r q h", fps);
+        }
+        if (!keyboardHandler.isCompactStatus()) {
+            status += fullStatusDetails();
+        }
+        return status;
+    }
+    
+    /**
+     * Output size, latency, drop counts, degrade level and memory for the full status line
+     */
+    private String fullStatusDetails() {
+        String details = String.format(" | Out: %dB | Lat: %.1fms", terminalRenderer.getLastFrameBytes(),
+                                       framePipeline.getLastLatencyNanos() / 1e6);
+        if (frameSource instanceof AsyncFrameSource) {
+            AsyncFrameSource async = (AsyncFrameSource) frameSource;
+            details += String.format(" | Drop: %d Skip: %d Stale: %d", async.getDroppedFrames(),
+                                     framePipeline.getSkippedFrames(), async.getStaleFrames());
+        } else if (compositor != null) {
+            details += String.format(" | Tiles: %d Drop: %d Skip: %d", compositor.getTileCount(),
+                                     compositor.getDroppedFrames(), framePipeline.getSkippedFrames());
+        }
+        if (frameSaver.getPendingFrames() > 0 || frameSaver.getDroppedFrames() > 0) {
+            details += String.format(" | Saves: %d queued %d dropped", frameSaver.getPendingFrames(),
+                                     frameSaver.getDroppedFrames());
+        }
+        RecordingWriter recording = recordingWriter;
+        if (recording != null) {
+            details += String.format(" | REC %d (%dKB)", recording.getFrameCount(),
+                                     recording.getBytesWritten() / 1024);
+        }
+        if (streamServer != null) {
+            details += " | " + streamServer.summary();
+        }
+        if (sceneDetector.getUnchangedFrames() > 0) {
+            details += String.format(" | Static: %d", sceneDetector.getUnchangedFrames());
+        }
+        if (frameScheduler.getLevel() > 0) {
+            details += String.format(" | Degraded: %d (load %.0f%%)", frameScheduler.getLevel(),
+                                     frameScheduler.getLastLoad() * 100);
+        }
+        if (memoryMonitor != null) {
+            details += " | " + memoryMonitor.summary();
+        }
+        return details;
+    }
+    
+    /**
+     * Size frames to the terminal, keeping the bottom row for the status
+     * line. Called once at start and then once per resize.
+     */
+    private void applyTerminalSize(int columns, int rows) {
+        int height = Math.max(1, rows - STATUS_ROWS);
+        imageProcessor.setTargetDimensions(columns, height);
+        keyboardHandler.setDefaultDimensions(columns, height);
+        logger.info("Fitting frames to {}x{} terminal", columns, rows);
+    }
+    
+    /**
+     * Trade detail for frame rate: level 1 falls back to the simple charset,
+     * every further level shrinks the output by another quarter per side
+     */
+    private void applyQualityLevel(int level) {
+        asciiConverter.setCharsetOverride(level >= 1 ? ASCIIConverter.SIMPLE_CHARSET : null);
+        imageProcessor.setDetailScale(level >= 2 ? Math.pow(DETAIL_STEP, level - 1) : 1.0);
+    }
+    
     public void shutdown() {
         logger.info("Shutting down ASCII Art Camera...");
         running.set(false);
         
+        // The render loop processes frames itself when not pipelined, so it must
+        // be finished before the terminal and any native memory go away
+        boolean renderLoopStopped = awaitRenderLoop();
+        
         if (keyboardHandler != null) {
             keyboardHandler.stop();
         }
@@ -180,14 +506,90 @@ public class ASCIIArtApp {
             terminalRenderer.cleanup();
         }
         
-        if (cameraManager != null) {
-            cameraManager.release();
+        stopRecording();
+        
+        if (liveConfig != null) {
+            try {
+                liveConfig.close();
+            } catch (IOException e) {
+                logger.warn("Failed to stop settings watcher: {}", e.getMessage());
+            }
+        }
+        
+        if (streamServer != null) {
+            try {
+                streamServer.close();
+            } catch (IOException e) {
+                logger.warn("Failed to stop stream server: {}", e.getMessage());
+            }
+        }
+        
+        // Let queued saves finish
+        if (frameSaver != null) {
+            frameSaver.stop(2000);
+        }
+        
+        // Stop processing before the source and processor it uses go away
+        if (framePipeline != null) {
+            framePipeline.stop();
+        }
+        
+        if (renderLoopStopped) {
+            if (frameSource != null) {
+                frameSource.release();
+            }
+            
+            if (compositor != null) {
+                compositor.release();
+            }
+            
+            if (imageProcessor != null) {
+                imageProcessor.release();
+            }
+            
+            if (rowBands != null) {
+                rowBands.close();
+            }
+        } else {
+            logger.warn("Render loop still running; leaving native memory to the OS");
+        }
+        
+        if (stageMetrics != null) {
+            stageMetrics.unregister();
         }
         
         logger.info("Shutdown complete");
     }
     
+    /**
+     * Wait for the render loop to leave, unless it is the calling thread.
+     * Returns false if it is still running after the timeout.
+     */
+    private boolean awaitRenderLoop() {
+        Thread loop = renderThread;
+        if (loop == null || loop == Thread.currentThread()) {
+            return true;
+        }
+        try {
+            loop.join(RENDER_LOOP_JOIN_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !loop.isAlive();
+    }
+    
     public static void main(String[] args) {
+        // "play <file>" replays a recording instead of opening the camera
+        if (args.length > 0 && args[0].equals("play")) {
+            PlaybackApp.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // "batch <inputs>" converts images and videos to text files
+        if (args.length > 0 && args[0].equals("batch")) {
+            BatchApp.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        
         // Disable debug logging for cleaner display
         ch.qos.logback.classic.Logger rootLogger = 
             (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
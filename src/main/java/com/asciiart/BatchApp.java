@@ -0,0 +1,121 @@
+package com.asciiart;
+
+import com.asciiart.batch.BatchConverter;
+import com.asciiart.processor.ASCIIConverter;
+import com.asciiart.processor.ImageProcessor;
+import com.asciiart.processor.PipelineConfig;
+import com.asciiart.utils.SettingsLoader;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts images and videos to ASCII text files without a camera or terminal.
+ *
+ * <pre>
+ * batch &lt;file or directory&gt;... [--out DIR] [--width N] [--height N] [--charset NAME]
+ *       [--edges] [--dither MODE] [--threads N] [--in-flight N]
+ * </pre>
+ *
+ * Processing settings default to those in settings.json. The charset is
+ * simple, extended, block or the characters themselves, darkest first.
+ * Threads default to one per core.
+ */
+public class BatchApp {
+    private static final Logger logger = LoggerFactory.getLogger(BatchApp.class);
+    
+    private static final String USAGE = "Usage: batch <file or directory>... [--out DIR] [--width N] [--height N]"
+                                         + " [--charset NAME] [--edges] [--dither MODE] [--threads N] [--in-flight N]";
+    
+    public static void main(String[] args) {
+        JsonNode settings = SettingsLoader.load();
+        JsonNode display = settings.path("display");
+        PipelineConfig config = PipelineConfig.fromSettings(settings);
+        
+        List<Path> inputs = new ArrayList<>();
+        Path out = Paths.get("ascii");
+        int width = display.path("terminalWidth").asInt(80);
+        int height = display.path("terminalHeight").asInt(24);
+        int threads = 0;
+        int inFlight = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--out":
+                    out = Paths.get(args[++i]);
+                    break;
+                case "--width":
+                    width = Integer.parseInt(args[++i]);
+                    break;
+                case "--height":
+                    height = Integer.parseInt(args[++i]);
+                    break;
+                case "--charset":
+                    config = config.withCharset(PipelineConfig.charsetNamed(args[++i]));
+                    break;
+                case "--edges":
+                    config = config.withEdgeDetection(true);
+                    break;
+                case "--dither":
+                    config = config.withDither(ASCIIConverter.Dither.parse(args[++i]));
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--in-flight":
+                    inFlight = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    if (args[i].startsWith("--")) {
+                        System.err.println("Unknown option: " + args[i]);
+                        System.exit(2);
+                    }
+                    inputs.add(Paths.get(args[i]));
+            }
+        }
+        if (inputs.isEmpty()) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        
+        // Every worker thread gets its own processor and converter; the snapshot and its table are shared
+        int targetWidth = width;
+        int targetHeight = height;
+        PipelineConfig workerConfig = config;
+        BatchConverter converter = new BatchConverter(threads, inFlight, () -> {
+            ImageProcessor processor = new ImageProcessor();
+            processor.setTargetDimensions(targetWidth, targetHeight);
+            processor.applyConfig(workerConfig);
+            return processor;
+        }, () -> {
+            ASCIIConverter asciiConverter = new ASCIIConverter();
+            asciiConverter.applyConfig(workerConfig);
+            return asciiConverter;
+        });
+        
+        int status = 0;
+        try {
+            BatchConverter.Result result = converter.run(BatchConverter.jobsFor(inputs, out));
+            logger.info(result.toString());
+            System.out.println(result);
+            if (result.getFailedFiles() > 0) {
+                status = 1;
+            }
+        } catch (IOException e) {
+            logger.error("Batch conversion failed", e);
+            System.err.println("Batch conversion failed: " + e.getMessage());
+            status = 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = 1;
+        }
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+}
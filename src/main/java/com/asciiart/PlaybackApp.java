@@ -0,0 +1,167 @@
+package com.asciiart;
+
+import com.asciiart.display.TerminalRenderer;
+import com.asciiart.recording.RecordingPlayer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Scanner;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays an ASCII recording back in the terminal without a camera.
+ *
+ * <pre>
+ * play &lt;file.asciv&gt; [--speed N] [--max] [--step] [--bench] [--from FRAME]
+ * </pre>
+ *
+ * Frames are shown at their recorded times divided by the speed; --max
+ * shows them as fast as the terminal takes them, --step waits for Enter
+ * (b goes back a frame, a number jumps to that frame, q quits) and
+ * --bench replays into a null sink and reports the frame rate.
+ */
+public class PlaybackApp {
+    private static final Logger logger = LoggerFactory.getLogger(PlaybackApp.class);
+    
+    private enum Mode { TIMED, MAX, STEP, BENCH }
+    
+    private final RecordingPlayer player;
+    private final TerminalRenderer renderer;
+    private final Mode mode;
+    private final double speed;
+    
+    private PlaybackApp(RecordingPlayer player, TerminalRenderer renderer, Mode mode, double speed) {
+        this.player = player;
+        this.renderer = renderer;
+        this.mode = mode;
+        this.speed = speed > 0 ? speed : 1.0;
+    }
+    
+    /**
+     * Play from the given frame to the end, or until quit in step mode
+     */
+    public void play(int fromFrame) throws IOException {
+        if (mode != Mode.BENCH) {
+            renderer.clear();
+        }
+        if (fromFrame > 0) {
+            player.seek(fromFrame - 1);
+        }
+        if (mode == Mode.STEP) {
+            step();
+            return;
+        }
+        
+        long startNanos = System.nanoTime();
+        long firstMillis = -1;
+        int shown = 0;
+        while (player.next()) {
+            if (firstMillis < 0) {
+                firstMillis = player.getFrameMillis();
+            }
+            if (mode == Mode.TIMED) {
+                // Absolute deadlines, so rendering time does not add up over the recording
+                long due = startNanos + (long) ((player.getFrameMillis() - firstMillis) * 1_000_000L / speed);
+                long wait;
+                while ((wait = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            show();
+            shown++;
+        }
+        
+        long elapsed = System.nanoTime() - startNanos;
+        String summary = String.format("Played %d frames in %.1fs (%.1f fps, %.1f MB written)", shown,
+                                       elapsed / 1e9, shown * 1e9 / Math.max(1, elapsed),
+                                       renderer.getTotalBytes() / 1e6);
+        logger.info(summary);
+        System.out.println();
+        System.out.println(summary);
+    }
+    
+    private void step() throws IOException {
+        Scanner scanner = new Scanner(System.in);
+        if (player.next()) {
+            show();
+        }
+        while (scanner.hasNextLine()) {
+            String input = scanner.nextLine().trim();
+            if (input.equals("q")) {
+                break;
+            } else if (input.equals("b")) {
+                player.seek(player.getFrameNumber() - 1);
+            } else if (!input.isEmpty() && input.chars().allMatch(Character::isDigit)) {
+                player.seek(Integer.parseInt(input));
+            } else if (!player.next()) {
+                continue;
+            }
+            show();
+        }
+    }
+    
+    private void show() {
+        String status = String.format("Frame %d/%d | %.1fs | %s", player.getFrameNumber() + 1,
+                                      player.getFrameCount(), player.getFrameMillis() / 1000.0,
+                                      mode == Mode.STEP ? "Enter: next, b: back, N: frame N, q: quit"
+                                                        : player.getPath().getFileName());
+        renderer.renderFrame(player.getFrame(), player.getGlyphTable(), status);
+    }
+    
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: play <file.asciv> [--speed N] [--max] [--step] [--bench] [--from FRAME]");
+            System.exit(2);
+        }
+        Path path = Paths.get(args[0]);
+        Mode mode = Mode.TIMED;
+        double speed = 1.0;
+        int from = 0;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--speed":
+                    speed = Double.parseDouble(args[++i]);
+                    break;
+                case "--max":
+                    mode = Mode.MAX;
+                    break;
+                case "--step":
+                    mode = Mode.STEP;
+                    break;
+                case "--bench":
+                    mode = Mode.BENCH;
+                    break;
+                case "--from":
+                    from = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        
+        TerminalRenderer renderer = mode == Mode.BENCH
+            ? new TerminalRenderer(Channels.newChannel(OutputStream.nullOutputStream()), true)
+            : new TerminalRenderer();
+        int status = 0;
+        try (RecordingPlayer player = new RecordingPlayer(path)) {
+            new PlaybackApp(player, renderer, mode, speed).play(from);
+        } catch (IOException e) {
+            logger.error("Playback failed", e);
+            System.err.println("Playback failed: " + e.getMessage());
+            status = 1;
+        } finally {
+            if (mode != Mode.BENCH) {
+                renderer.cleanup();
+            }
+        }
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package com.asciiart.batch;
+
+import com.asciiart.camera.FrameSource;
+import com.asciiart.camera.ImageSequenceSource;
+import com.asciiart.camera.VideoFileSource;
+import com.asciiart.processor.ASCIIConverter;
+import com.asciiart.processor.GrayFrame;
+import com.asciiart.processor.ImageProcessor;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Converts image and video files to ASCII text files without a terminal.
+ *
+ * Every file is decoded frame by frame on a decoder thread of its own;
+ * decoded frames are converted on a pool of worker threads, each with its
+ * own processor and converter, so a single long video keeps every core
+ * busy and many small images do too. Frames of one file are written in
+ * decode order by whichever worker completes the next one due; files do
+ * not wait for each other.
+ *
+ * Memory stays bounded by a fixed number of frames in flight: a decoder
+ * takes a permit per decoded frame and gets it back once that frame is
+ * written, so decoders stall rather than run ahead of slow workers or of
+ * a frame that holds up its file's order.
+ *
+ * A video becomes one text file with its frames separated by a form feed
+ * line; an image becomes a text file with its single frame.
+ */
+public class BatchConverter {
+    private static final Logger logger = LoggerFactory.getLogger(BatchConverter.class);
+    
+    /** Separates the frames of a video in its text file */
+    public static final String FRAME_SEPARATOR = "\f\n";
+    
+    /** Default frames in flight per worker thread */
+    public static final int DEFAULT_FRAMES_PER_WORKER = 4;
+    
+    /**
+     * One input file and the text file it is converted to
+     */
+    public static final class Job {
+        private final String name;
+        private final Supplier<FrameSource> source;
+        private final Path output;
+        
+        /**
+         * @param source opens a new, uninitialized source for the file; it must end with null
+         */
+        public Job(String name, Supplier<FrameSource> source, Path output) {
+            this.name = name;
+            this.source = source;
+            this.output = output;
+        }
+        
+        /**
+         * Decode an image or, for any other extension, a video
+         */
+        public static Job forFile(Path input, Path output) {
+            String path = input.toString();
+            Supplier<FrameSource> source = ImageSequenceSource.isImageFile(path)
+                ? () -> new ImageSequenceSource(path, false)
+                : () -> new VideoFileSource(path, false);
+            return new Job(path, source, output);
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public Path getOutput() {
+            return output;
+        }
+    }
+    
+    /**
+     * Totals of a finished run
+     */
+    public static final class Result {
+        private final int files;
+        private final int failedFiles;
+        private final long frames;
+        private final long elapsedNanos;
+        
+        Result(int files, int failedFiles, long frames, long elapsedNanos) {
+            this.files = files;
+            this.failedFiles = failedFiles;
+            this.frames = frames;
+            this.elapsedNanos = elapsedNanos;
+        }
+        
+        public int getFiles() {
+            return files;
+        }
+        
+        public int getFailedFiles() {
+            return failedFiles;
+        }
+        
+        public long getFrames() {
+            return frames;
+        }
+        
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+        
+        public double getFilesPerSecond() {
+            return files * 1e9 / Math.max(1, elapsedNanos);
+        }
+        
+        public double getFramesPerSecond() {
+            return frames * 1e9 / Math.max(1, elapsedNanos);
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("Converted %d files (%d failed), %d frames in %.1fs (%.1f files/s, %.1f fps)",
+                                 files - failedFiles, failedFiles, frames, elapsedNanos / 1e9,
+                                 getFilesPerSecond(), getFramesPerSecond());
+        }
+    }
+    
+    /**
+     * A worker thread's own processor and converter
+     */
+    private static final class Worker {
+        final ImageProcessor processor;
+        final ASCIIConverter converter;
+        
+        Worker(ImageProcessor processor, ASCIIConverter converter) {
+            this.processor = processor;
+            this.converter = converter;
+            // As in the live view, adjustments are folded into the converter's lookup table
+            processor.deferAdjustmentsTo(converter);
+            processor.ditherWith(converter);
+        }
+    }
+    
+    private final int threads;
+    private final int framesInFlight;
+    private final Supplier<ImageProcessor> processors;
+    private final Supplier<ASCIIConverter> converters;
+    
+    // State of the current run
+    private final Queue<Worker> allWorkers = new ConcurrentLinkedQueue<>();
+    private ThreadLocal<Worker> workers;
+    private ExecutorService workerPool;
+    private Semaphore permits;
+    private CountDownLatch remaining;
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicInteger failedFiles = new AtomicInteger();
+    
+    /**
+     * @param threads worker threads; 0 uses one per core
+     * @param framesInFlight decoded or converted frames not yet written; 0 uses
+     *                       {@link #DEFAULT_FRAMES_PER_WORKER} per worker
+     * @param processors creates the processor of each worker thread
+     * @param converters creates the converter of each worker thread
+     */
+    public BatchConverter(int threads, int framesInFlight,
+                          Supplier<ImageProcessor> processors, Supplier<ASCIIConverter> converters) {
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.framesInFlight = framesInFlight > 0 ? framesInFlight : this.threads * DEFAULT_FRAMES_PER_WORKER;
+        this.processors = processors;
+        this.converters = converters;
+    }
+    
+    /**
+     * Jobs for the given files and directories. Directories are searched
+     * recursively for images and videos, and their text files keep the
+     * directory layout under a folder named after the directory. Output
+     * names are the input names with .txt appended.
+     */
+    public static List<Job> jobsFor(List<Path> inputs, Path outputDirectory) throws IOException {
+        List<Job> jobs = new ArrayList<>();
+        for (Path input : inputs) {
+            if (Files.isDirectory(input)) {
+                Path base = outputDirectory.resolve(input.toAbsolutePath().normalize().getFileName().toString());
+                List<Path> files;
+                try (Stream<Path> walk = Files.walk(input)) {
+                    files = walk.filter(Files::isRegularFile)
+                                .filter(file -> ImageSequenceSource.isImageFile(file.toString())
+                                                || VideoFileSource.isVideoFile(file.toString()))
+                                .sorted()
+                                .collect(Collectors.toList());
+                }
+                for (Path file : files) {
+                    Path relative = input.relativize(file);
+                    jobs.add(Job.forFile(file, base.resolve(relative.toString() + ".txt")));
+                }
+            } else if (Files.isRegularFile(input)) {
+                jobs.add(Job.forFile(input, outputDirectory.resolve(input.getFileName() + ".txt")));
+            } else {
+                throw new NoSuchFileException(input.toString());
+            }
+        }
+        return jobs;
+    }
+    
+    /**
+     * Convert every job and wait until all are written. Files that fail to
+     * decode or write are logged, counted and have their partial output removed.
+     */
+    public Result run(List<Job> jobs) throws InterruptedException {
+        long start = System.nanoTime();
+        frames.set(0);
+        failedFiles.set(0);
+        permits = new Semaphore(framesInFlight);
+        remaining = new CountDownLatch(jobs.size());
+        workers = ThreadLocal.withInitial(() -> {
+            Worker worker = new Worker(processors.get(), converters.get());
+            allWorkers.add(worker);
+            return worker;
+        });
+        workerPool = Executors.newFixedThreadPool(threads, threadFactory("Batch-Worker-"));
+        // One decoder per file being converted, as many files at a time as there are workers
+        ExecutorService decoderPool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, jobs.size())),
+                                                                   threadFactory("Batch-Decoder-"));
+        logger.info("Converting {} files on {} workers, {} frames in flight", jobs.size(), threads, framesInFlight);
+        
+        try {
+            for (Job job : jobs) {
+                decoderPool.execute(() -> decode(job));
+            }
+            remaining.await();
+        } finally {
+            decoderPool.shutdownNow();
+            workerPool.shutdownNow();
+            decoderPool.awaitTermination(10, TimeUnit.SECONDS);
+            workerPool.awaitTermination(10, TimeUnit.SECONDS);
+            Worker worker;
+            while ((worker = allWorkers.poll()) != null) {
+                worker.processor.release();
+            }
+        }
+        return new Result(jobs.size(), failedFiles.get(), frames.get(), System.nanoTime() - start);
+    }
+    
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    /**
+     * Decode a file on the calling decoder thread and hand its frames to the workers
+     */
+    private void decode(Job job) {
+        FileRun run = new FileRun(job);
+        FrameSource source = job.source.get();
+        long decoded = 0;
+        try {
+            Files.createDirectories(job.output.toAbsolutePath().getParent());
+            run.open();
+            if (!source.initialize()) {
+                run.fail("cannot be opened", null);
+                return;
+            }
+            Mat frame;
+            while (!run.isFailed() && (frame = source.captureFrame()) != null) {
+                if (frame.empty()) {
+                    continue;
+                }
+                permits.acquire();
+                // The source reuses its frame, so the worker gets a copy
+                Mat copy = frame.clone();
+                long sequence = decoded++;
+                workerPool.execute(() -> convert(run, sequence, copy));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.fail("was interrupted", null);
+        } catch (Throwable e) {
+            run.fail("failed", e);
+        } finally {
+            source.release();
+            run.decoded(decoded);
+        }
+    }
+    
+    private void convert(FileRun run, long sequence, Mat frame) {
+        String text = null;
+        try {
+            Worker worker = workers.get();
+            GrayFrame cells = worker.processor.processFrame(frame);
+            if (cells != null) {
+                text = worker.converter.convertToAscii(cells);
+            }
+        } catch (Throwable e) {
+            // Native errors too: the file fails, but the frame still has to complete
+            run.fail("failed to convert frame " + sequence, e);
+        } finally {
+            frame.close();
+            // Returns the frame's permit and lets later frames be written
+            run.completed(sequence, text);
+        }
+    }
+    
+    /**
+     * Writes one file's frames in order as they complete
+     */
+    private final class FileRun {
+        final Job job;
+        // Converted frames waiting for an earlier one; null text for frames that failed
+        final Map<Long, String> pending = new HashMap<>();
+        Writer out;
+        long nextToWrite = 0;
+        long written = 0;
+        long total = -1;
+        boolean failed = false;
+        boolean finished = false;
+        
+        FileRun(Job job) {
+            this.job = job;
+        }
+        
+        synchronized void open() throws IOException {
+            out = Files.newBufferedWriter(job.output, StandardCharsets.UTF_8);
+        }
+        
+        synchronized boolean isFailed() {
+            return failed;
+        }
+        
+        synchronized void fail(String reason, Throwable e) {
+            if (!failed) {
+                failed = true;
+                logger.error("{} {}", job.name, reason, e);
+            }
+        }
+        
+        synchronized void completed(long sequence, String text) {
+            pending.put(sequence, text);
+            while (pending.containsKey(nextToWrite)) {
+                String next = pending.remove(nextToWrite);
+                if (!failed && next != null) {
+                    try {
+                        if (written > 0) {
+                            out.write(FRAME_SEPARATOR);
+                        }
+                        out.write(next);
+                        written++;
+                        frames.incrementAndGet();
+                    } catch (IOException e) {
+                        fail("cannot be written", e);
+                    }
+                }
+                nextToWrite++;
+                permits.release();
+            }
+            finishIfDone();
+        }
+        
+        /**
+         * Decoding ended after the given number of frames
+         */
+        synchronized void decoded(long count) {
+            total = count;
+            finishIfDone();
+        }
+        
+        private void finishIfDone() {
+            if (finished || total < 0 || nextToWrite < total) {
+                return;
+            }
+            finished = true;
+            try {
+                if (out != null) {
+                    out.close();
+                }
+                if (!failed && written == 0) {
+                    fail("has no frames", null);
+                }
+                if (failed) {
+                    Files.deleteIfExists(job.output);
+                } else {
+                    logger.info("Converted {} ({} frames)", job.name, written);
+                }
+            } catch (IOException e) {
+                fail("cannot be written", e);
+            } finally {
+                if (failed) {
+                    failedFiles.incrementAndGet();
+                }
+                remaining.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.asciiart.camera;
+
+import com.asciiart.metrics.StageMetrics;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a frame source on a dedicated capture thread so blocking grabs never
+ * add to the render thread's frame time. Captured frames go through a
+ * {@link FrameRingBuffer}; {@link #captureFrame()} returns the freshest one.
+ */
+public class AsyncFrameSource implements FrameSource {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncFrameSource.class);
+    
+    // Back-off when the wrapped source has nothing to deliver (e.g. end of a video)
+    private static final long IDLE_SLEEP_MS = 10;
+    
+    private final FrameSource delegate;
+    private final int bufferSize;
+    private final FrameRingBuffer.OverflowPolicy policy;
+    private final long frameTimeoutNanos;
+    private FrameRingBuffer ringBuffer;
+    private Thread captureThread;
+    private volatile boolean running = false;
+    private volatile StageMetrics metrics = StageMetrics.disabled();
+    
+    public AsyncFrameSource(FrameSource delegate, int bufferSize,
+                            FrameRingBuffer.OverflowPolicy policy, long frameTimeoutMs) {
+        this.delegate = delegate;
+        this.bufferSize = bufferSize;
+        this.policy = policy;
+        this.frameTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(frameTimeoutMs);
+    }
+    
+    /**
+     * Record how long each grab from the wrapped source takes
+     */
+    public void setMetrics(StageMetrics metrics) {
+        this.metrics = metrics != null ? metrics : StageMetrics.disabled();
+    }
+    
+    @Override
+    public boolean initialize() {
+        if (!delegate.initialize()) {
+            return false;
+        }
+        
+        ringBuffer = new FrameRingBuffer(bufferSize, delegate.getFrameWidth(),
+                                         delegate.getFrameHeight(), policy);
+        running = true;
+        captureThread = new Thread(this::captureLoop, "Frame-Capture");
+        captureThread.setDaemon(true);
+        captureThread.start();
+        
+        logger.info("Async capture started for {} with {} slots ({})",
+                   delegate.getName(), ringBuffer.getCapacity(), policy);
+        return true;
+    }
+    
+    private void captureLoop() {
+        while (running) {
+            try {
+                long grabStart = System.nanoTime();
+                Mat frame = delegate.captureFrame();
+                if (frame == null || frame.empty()) {
+                    Thread.sleep(IDLE_SLEEP_MS);
+                    continue;
+                }
+                metrics.recordSince(StageMetrics.Stage.GRAB, grabStart);
+                if (!ringBuffer.publish(frame, System.nanoTime())) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                logger.error("Error in capture thread", e);
+            }
+        }
+        logger.debug("Capture thread stopped");
+    }
+    
+    /**
+     * Freshest captured frame, or null if none arrived within the frame timeout
+     */
+    @Override
+    public Mat captureFrame() {
+        return ringBuffer != null ? ringBuffer.takeLatest(frameTimeoutNanos) : null;
+    }
+    
+    /**
+     * Sequence number of the last frame returned by {@link #captureFrame()}
+     */
+    public long getLastSequence() {
+        return ringBuffer != null ? ringBuffer.getLastSequence() : -1;
+    }
+    
+    /**
+     * System.nanoTime() at which the last returned frame was captured
+     */
+    public long getLastCaptureNanos() {
+        return ringBuffer != null ? ringBuffer.getLastCaptureNanos() : 0;
+    }
+    
+    public long getDroppedFrames() {
+        return ringBuffer != null ? ringBuffer.getDroppedFrames() : 0;
+    }
+    
+    public long getStaleFrames() {
+        return ringBuffer != null ? ringBuffer.getStaleFrames() : 0;
+    }
+    
+    @Override
+    public int getFrameWidth() {
+        return delegate.getFrameWidth();
+    }
+    
+    @Override
+    public int getFrameHeight() {
+        return delegate.getFrameHeight();
+    }
+    
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+    
+    @Override
+    public void release() {
+        running = false;
+        if (ringBuffer != null) {
+            ringBuffer.close();
+        }
+        if (captureThread != null) {
+            captureThread.interrupt();
+            try {
+                captureThread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (captureThread.isAlive()) {
+                // Still inside a native grab; freeing the grabber or the slots under it would crash
+                logger.warn("Capture thread for {} did not stop; leaving its native resources allocated",
+                            delegate.getName());
+                return;
+            }
+        }
+        
+        delegate.release();
+        
+        if (ringBuffer != null) {
+            logger.info("Async capture: {} frames published, {} dropped, {} stale",
+                       ringBuffer.getPublishedFrames(), ringBuffer.getDroppedFrames(),
+                       ringBuffer.getStaleFrames());
+            ringBuffer.release();
+            ringBuffer = null;
+        }
+    }
+}
@@ -8,12 +8,10 @@ import org.bytedeco.javacv.OpenCVFrameConverter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.awt.image.BufferedImage;
-
 /**
  * Manages camera operations and frame capture
  */
-public class CameraManager {
+public class CameraManager implements FrameSource {
     private static final Logger logger = LoggerFactory.getLogger(CameraManager.class);
     
     private FrameGrabber grabber;
@@ -27,9 +25,18 @@ public class CameraManager {
         this.converterToMat = new OpenCVFrameConverter.ToMat();
     }
     
+    public CameraManager(int deviceId, int width, int height, double fps) {
+        this();
+        this.deviceId = deviceId;
+        this.frameWidth = width;
+        this.frameHeight = height;
+        this.fps = fps;
+    }
+    
     /**
      * Initialize camera with default settings
      */
+    @Override
     public boolean initialize() {
         return initialize(deviceId, frameWidth, frameHeight, fps);
     }
@@ -41,6 +48,7 @@ public class CameraManager {
         try {
             logger.info("Initializing camera {} with resolution {}x{} @ {}fps", 
                        deviceId, width, height, fps);
+            this.deviceId = deviceId;
             
             // Create grabber for the specified camera
             grabber = new OpenCVFrameGrabber(deviceId);
@@ -70,6 +78,7 @@ public class CameraManager {
     /**
      * Capture a single frame from the camera
      */
+    @Override
     public Mat captureFrame() {
         try {
             Frame frame = grabber.grab();
@@ -91,14 +100,21 @@ public class CameraManager {
     /**
      * Get current frame dimensions
      */
+    @Override
     public int getFrameWidth() {
         return grabber != null ? grabber.getImageWidth() : 0;
     }
     
+    @Override
     public int getFrameHeight() {
         return grabber != null ? grabber.getImageHeight() : 0;
     }
     
+    @Override
+    public String getName() {
+        return "camera " + deviceId;
+    }
+    
     /**
      * List available camera devices
      */
@@ -126,6 +142,7 @@ public class CameraManager {
     /**
      * Release camera resources
      */
+    @Override
     public void release() {
         if (grabber != null) {
             try {
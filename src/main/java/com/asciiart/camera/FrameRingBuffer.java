@@ -0,0 +1,214 @@
+package com.asciiart.camera;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+
+/**
+ * Lock-free single-producer/single-consumer ring of preallocated frames.
+ *
+ * The producer copies each captured frame into a free slot and publishes it
+ * as the latest one. The consumer always takes the freshest published frame
+ * and keeps it until its next take, so the producer never writes the slot
+ * that is being read nor the latest unconsumed one. Frames that are
+ * overwritten or skipped before the consumer sees them are counted as dropped.
+ */
+public class FrameRingBuffer {
+    private static final Logger logger = LoggerFactory.getLogger(FrameRingBuffer.class);
+    
+    /** Slots needed for one frame being written, one being read and one latest */
+    public static final int MIN_CAPACITY = 3;
+    
+    private static final long PARK_NANOS = 200_000L;
+    
+    /**
+     * What the producer does when every writable slot still holds an unconsumed frame
+     */
+    public enum OverflowPolicy {
+        DROP_OLDEST,
+        BLOCK;
+        
+        public static OverflowPolicy fromName(String name) {
+            if ("block".equalsIgnoreCase(name)) {
+                return BLOCK;
+            }
+            return DROP_OLDEST;
+        }
+    }
+    
+    private final Mat[] slots;
+    private final long[] slotSequence;
+    private final long[] slotTimestamp;
+    private final OverflowPolicy policy;
+    
+    private final AtomicInteger latestSlot = new AtomicInteger(-1);
+    private final AtomicInteger heldSlot = new AtomicInteger(-1);
+    private volatile long consumedSequence = -1;
+    private volatile boolean closed = false;
+    
+    // Producer-only state
+    private long nextSequence = 0;
+    
+    // Consumer-only state, volatile so other threads can read the counters
+    private volatile long droppedFrames = 0;
+    private volatile long staleFrames = 0;
+    private long heldTimestamp = 0;
+    
+    public FrameRingBuffer(int capacity, int width, int height, OverflowPolicy policy) {
+        if (capacity < MIN_CAPACITY) {
+            logger.warn("Frame buffer size {} too small, using {}", capacity, MIN_CAPACITY);
+            capacity = MIN_CAPACITY;
+        }
+        this.policy = policy;
+        this.slots = new Mat[capacity];
+        this.slotSequence = new long[capacity];
+        this.slotTimestamp = new long[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = width > 0 && height > 0 ? new Mat(height, width, CV_8UC3) : new Mat();
+            slotSequence[i] = -1;
+        }
+    }
+    
+    /**
+     * Copy a frame into the ring and publish it as the latest one.
+     * Called from the producer thread only. Returns false if the ring was
+     * closed while waiting for a free slot.
+     */
+    public boolean publish(Mat frame, long captureNanos) {
+        int slot = claimSlot();
+        if (slot < 0) {
+            return false;
+        }
+        
+        // copyTo only reallocates when the source size or type changes
+        frame.copyTo(slots[slot]);
+        slotSequence[slot] = nextSequence++;
+        slotTimestamp[slot] = captureNanos;
+        latestSlot.set(slot);
+        return true;
+    }
+    
+    /**
+     * Pick a slot that is neither the latest nor held by the consumer,
+     * preferring one whose frame was already consumed
+     */
+    private int claimSlot() {
+        while (!closed) {
+            int latest = latestSlot.get();
+            int held = heldSlot.get();
+            long consumed = consumedSequence;
+            
+            int oldest = -1;
+            for (int i = 0; i < slots.length; i++) {
+                if (i == latest || i == held) {
+                    continue;
+                }
+                if (slotSequence[i] <= consumed) {
+                    return i;
+                }
+                if (oldest < 0 || slotSequence[i] < slotSequence[oldest]) {
+                    oldest = i;
+                }
+            }
+            
+            if (policy == OverflowPolicy.DROP_OLDEST) {
+                return oldest;
+            }
+            
+            LockSupport.parkNanos(PARK_NANOS);
+            if (Thread.currentThread().isInterrupted()) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Take the freshest frame, waiting up to timeoutNanos for one newer than
+     * the last take. Called from the consumer thread only. The returned Mat
+     * stays valid until the next call; null means no new frame arrived.
+     */
+    public Mat takeLatest(long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        
+        while (!closed) {
+            int slot = latestSlot.get();
+            if (slot >= 0) {
+                heldSlot.set(slot);
+                // Re-check after announcing the hold; if the producer published
+                // meanwhile it may already be writing the slot we announced
+                if (latestSlot.get() != slot) {
+                    continue;
+                }
+                
+                long sequence = slotSequence[slot];
+                if (sequence > consumedSequence) {
+                    droppedFrames += sequence - consumedSequence - 1;
+                    consumedSequence = sequence;
+                    heldTimestamp = slotTimestamp[slot];
+                    return slots[slot];
+                }
+            }
+            
+            if (System.nanoTime() - deadline >= 0) {
+                staleFrames++;
+                return null;
+            }
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        return null;
+    }
+    
+    /**
+     * Sequence number of the frame returned by the last successful take
+     */
+    public long getLastSequence() {
+        return consumedSequence;
+    }
+    
+    /**
+     * System.nanoTime() at which the last taken frame was captured
+     */
+    public long getLastCaptureNanos() {
+        return heldTimestamp;
+    }
+    
+    public long getPublishedFrames() {
+        int latest = latestSlot.get();
+        return latest >= 0 ? slotSequence[latest] + 1 : 0;
+    }
+    
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+    
+    public long getStaleFrames() {
+        return staleFrames;
+    }
+    
+    public int getCapacity() {
+        return slots.length;
+    }
+    
+    /**
+     * Wake up a blocked producer or consumer; both return immediately afterwards
+     */
+    public void close() {
+        closed = true;
+    }
+    
+    /**
+     * Free the native frame memory. Only call once both threads have stopped.
+     */
+    public void release() {
+        close();
+        for (Mat slot : slots) {
+            slot.release();
+        }
+    }
+}
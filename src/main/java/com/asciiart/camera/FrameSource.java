@@ -0,0 +1,37 @@
+package com.asciiart.camera;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+/**
+ * Source of BGR frames for the processing pipeline.
+ *
+ * The Mat returned by {@link #captureFrame()} is owned by the source and is
+ * only valid until the next call. Callers must copy it if they need to keep
+ * it and must never release it.
+ */
+public interface FrameSource {
+    
+    /**
+     * Open the source and verify that frames can be read
+     */
+    boolean initialize();
+    
+    /**
+     * Capture the next frame, or null if none is available
+     */
+    Mat captureFrame();
+    
+    int getFrameWidth();
+    
+    int getFrameHeight();
+    
+    /**
+     * Short human readable description for logs and status lines
+     */
+    String getName();
+    
+    /**
+     * Release all resources held by the source
+     */
+    void release();
+}
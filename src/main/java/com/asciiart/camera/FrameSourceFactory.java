@@ -0,0 +1,108 @@
+package com.asciiart.camera;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates the frame source selected by the "source" section of settings.json
+ */
+public class FrameSourceFactory {
+    private static final Logger logger = LoggerFactory.getLogger(FrameSourceFactory.class);
+    
+    private FrameSourceFactory() {
+    }
+    
+    /**
+     * Build the configured frame source, running it on its own capture thread
+     * unless performance.asyncCapture is false
+     */
+    public static FrameSource create(JsonNode settings) {
+        return withCaptureThread(createDirect(settings), settings);
+    }
+    
+    /**
+     * Build one source per entry of composite.sources, plus one camera per
+     * detected device if composite.detectCameras is set. Each entry is a
+     * "source" section whose missing camera fields come from "camera".
+     * Sources get their own capture threads like {@link #create}. Empty
+     * unless compositing is configured.
+     */
+    public static List<FrameSource> createTiles(JsonNode settings) {
+        JsonNode composite = settings.path("composite");
+        List<JsonNode> entries = new ArrayList<>();
+        composite.path("sources").forEach(entries::add);
+        if (composite.path("detectCameras").asBoolean(false)) {
+            int cameras = CameraManager.detectCameras();
+            for (int i = 0; i < cameras; i++) {
+                entries.add(JsonNodeFactory.instance.objectNode().put("type", "camera").put("deviceId", i));
+            }
+        }
+        
+        List<FrameSource> sources = new ArrayList<>();
+        for (JsonNode entry : entries) {
+            if (!entry.isObject()) {
+                throw new IllegalArgumentException("Composite source entries must be objects: " + entry);
+            }
+            ObjectNode camera = settings.path("camera").isObject()
+                ? ((ObjectNode) settings.path("camera")).deepCopy() : JsonNodeFactory.instance.objectNode();
+            camera.setAll((ObjectNode) entry);
+            sources.add(withCaptureThread(build(camera, entry), settings));
+        }
+        return sources;
+    }
+    
+    /**
+     * Run the source on its own capture thread unless performance.asyncCapture is false
+     */
+    private static FrameSource withCaptureThread(FrameSource source, JsonNode settings) {
+        JsonNode performance = settings.path("performance");
+        if (!performance.path("asyncCapture").asBoolean(true)) {
+            return source;
+        }
+        
+        int bufferSize = performance.path("frameBufferSize").asInt(FrameRingBuffer.MIN_CAPACITY);
+        FrameRingBuffer.OverflowPolicy policy =
+            FrameRingBuffer.OverflowPolicy.fromName(performance.path("overflowPolicy").asText("dropOldest"));
+        long frameTimeoutMs = 1000 / Math.max(1, performance.path("targetFps").asInt(15));
+        return new AsyncFrameSource(source, bufferSize, policy, frameTimeoutMs);
+    }
+    
+    /**
+     * Build a frame source from the full settings tree without a capture thread.
+     * Supported source types: camera, synthetic, video, images.
+     */
+    public static FrameSource createDirect(JsonNode settings) {
+        return build(settings.path("camera"), settings.path("source"));
+    }
+    
+    private static FrameSource build(JsonNode camera, JsonNode source) {
+        int width = camera.path("width").asInt(640);
+        int height = camera.path("height").asInt(480);
+        String type = source.path("type").asText("camera");
+        String path = source.path("path").asText("");
+        boolean loop = source.path("loop").asBoolean(true);
+        
+        logger.info("Creating {} frame source", type);
+        switch (type.toLowerCase()) {
+            case "camera":
+                return new CameraManager(camera.path("deviceId").asInt(0), width, height,
+                                         camera.path("fps").asDouble(30.0));
+            case "synthetic":
+                return new SyntheticFrameSource(
+                    SyntheticFrameSource.Pattern.fromName(source.path("pattern").asText("moving")),
+                    width, height, source.path("seed").asLong(42L));
+            case "video":
+                return new VideoFileSource(path, loop);
+            case "images":
+                return new ImageSequenceSource(path, loop);
+            default:
+                throw new IllegalArgumentException("Unknown frame source type: " + type);
+        }
+    }
+}
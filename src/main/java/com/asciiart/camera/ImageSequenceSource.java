@@ -0,0 +1,114 @@
+package com.asciiart.camera;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMREAD_COLOR;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imread;
+
+/**
+ * Plays back a directory of PNG/JPEG images in filename order, or a single image
+ */
+public class ImageSequenceSource implements FrameSource {
+    private static final Logger logger = LoggerFactory.getLogger(ImageSequenceSource.class);
+    
+    private final String directory;
+    private final boolean loop;
+    private File[] files = new File[0];
+    private int nextIndex = 0;
+    private Mat current;
+    private int frameWidth = 0;
+    private int frameHeight = 0;
+    
+    public ImageSequenceSource(String directory, boolean loop) {
+        this.directory = directory;
+        this.loop = loop;
+    }
+    
+    /**
+     * Whether a file name looks like an image this source can decode
+     */
+    public static boolean isImageFile(String name) {
+        String lower = name.toLowerCase();
+        return lower.endsWith(".png") || lower.endsWith(".jpg") || lower.endsWith(".jpeg");
+    }
+    
+    @Override
+    public boolean initialize() {
+        File dir = new File(directory);
+        File[] listed = dir.isFile() ? new File[]{dir} : dir.listFiles((d, name) -> isImageFile(name));
+        if (listed == null || listed.length == 0) {
+            logger.error("No PNG/JPEG images found in {}", directory);
+            return false;
+        }
+        
+        Arrays.sort(listed);
+        files = listed;
+        nextIndex = 0;
+        
+        // Decode the first image up front to validate the sequence and learn its size
+        Mat first = imread(files[0].getPath(), IMREAD_COLOR);
+        if (first.empty()) {
+            logger.error("Failed to decode {}", files[0]);
+            return false;
+        }
+        frameWidth = first.cols();
+        frameHeight = first.rows();
+        first.release();
+        
+        logger.info("Image sequence with {} files from {}", files.length, directory);
+        return true;
+    }
+    
+    @Override
+    public Mat captureFrame() {
+        if (nextIndex >= files.length) {
+            if (!loop || files.length == 0) {
+                return null;
+            }
+            nextIndex = 0;
+        }
+        
+        File file = files[nextIndex++];
+        Mat decoded = imread(file.getPath(), IMREAD_COLOR);
+        if (decoded.empty()) {
+            logger.warn("Skipping unreadable image {}", file);
+            decoded.release();
+            return null;
+        }
+        
+        if (current != null) {
+            current.release();
+        }
+        current = decoded;
+        return current;
+    }
+    
+    @Override
+    public int getFrameWidth() {
+        return frameWidth;
+    }
+    
+    @Override
+    public int getFrameHeight() {
+        return frameHeight;
+    }
+    
+    @Override
+    public String getName() {
+        return "images " + new File(directory).getName();
+    }
+    
+    @Override
+    public void release() {
+        if (current != null) {
+            current.release();
+            current = null;
+        }
+        logger.info("Image sequence source released");
+    }
+}
@@ -0,0 +1,179 @@
+package com.asciiart.camera;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+
+/**
+ * Deterministic generated frames for benchmarking without camera hardware.
+ * Frame content depends only on the pattern, the dimensions and the frame
+ * index, so two runs with the same settings produce identical input.
+ */
+public class SyntheticFrameSource implements FrameSource {
+    private static final Logger logger = LoggerFactory.getLogger(SyntheticFrameSource.class);
+    
+    public enum Pattern {
+        GRADIENT,
+        MOVING,
+        NOISE;
+        
+        public static Pattern fromName(String name) {
+            for (Pattern pattern : values()) {
+                if (pattern.name().equalsIgnoreCase(name)) {
+                    return pattern;
+                }
+            }
+            throw new IllegalArgumentException("Unknown synthetic pattern: " + name);
+        }
+    }
+    
+    private final Pattern pattern;
+    private final int width;
+    private final int height;
+    private final long seed;
+    private Mat frame;
+    private byte[] pixels;
+    private long frameIndex = 0;
+    
+    public SyntheticFrameSource(Pattern pattern, int width, int height) {
+        this(pattern, width, height, 42L);
+    }
+    
+    public SyntheticFrameSource(Pattern pattern, int width, int height, long seed) {
+        this.pattern = pattern;
+        this.width = width;
+        this.height = height;
+        this.seed = seed;
+    }
+    
+    @Override
+    public boolean initialize() {
+        if (width <= 0 || height <= 0) {
+            logger.error("Invalid synthetic frame size {}x{}", width, height);
+            return false;
+        }
+        frame = new Mat(height, width, CV_8UC3);
+        pixels = new byte[width * height * 3];
+        frameIndex = 0;
+        logger.info("Synthetic {} source initialized at {}x{}", pattern, width, height);
+        return true;
+    }
+    
+    @Override
+    public Mat captureFrame() {
+        if (frame == null) {
+            return null;
+        }
+        
+        switch (pattern) {
+            case GRADIENT:
+                fillGradient();
+                break;
+            case MOVING:
+                fillMoving();
+                break;
+            default:
+                fillNoise();
+                break;
+        }
+        frameIndex++;
+        
+        frame.data().put(pixels);
+        return frame;
+    }
+    
+    /**
+     * Diagonal gradient that scrolls one pixel per frame
+     */
+    private void fillGradient() {
+        int span = width + height;
+        int offset = (int) (frameIndex % span);
+        int i = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int value = ((x + y + offset) % span) * 255 / span;
+                pixels[i++] = (byte) value;
+                pixels[i++] = (byte) value;
+                pixels[i++] = (byte) value;
+            }
+        }
+    }
+    
+    /**
+     * Vertical bars moving right with a bright disc bouncing across them
+     */
+    private void fillMoving() {
+        int barWidth = Math.max(1, width / 8);
+        int radius = Math.max(2, Math.min(width, height) / 6);
+        int travelX = Math.max(1, width - 2 * radius);
+        int travelY = Math.max(1, height - 2 * radius);
+        int cx = radius + bounce(frameIndex * 3, travelX);
+        int cy = radius + bounce(frameIndex * 2, travelY);
+        int r2 = radius * radius;
+        
+        int i = 0;
+        for (int y = 0; y < height; y++) {
+            int dy = y - cy;
+            for (int x = 0; x < width; x++) {
+                int dx = x - cx;
+                int value;
+                if (dx * dx + dy * dy <= r2) {
+                    value = 255;
+                } else {
+                    value = (((x + frameIndex) / barWidth) & 1) == 0 ? 40 : 120;
+                }
+                pixels[i++] = (byte) value;
+                pixels[i++] = (byte) value;
+                pixels[i++] = (byte) value;
+            }
+        }
+    }
+    
+    private static int bounce(long position, int range) {
+        long period = 2L * range;
+        int p = (int) (position % period);
+        return p < range ? p : (int) (period - p);
+    }
+    
+    /**
+     * Seeded xorshift noise, different for every frame but reproducible
+     */
+    private void fillNoise() {
+        long state = seed ^ (frameIndex * 0x9E3779B97F4A7C15L);
+        if (state == 0) {
+            state = 1;
+        }
+        for (int i = 0; i < pixels.length; i++) {
+            state ^= state << 13;
+            state ^= state >>> 7;
+            state ^= state << 17;
+            pixels[i] = (byte) state;
+        }
+    }
+    
+    @Override
+    public int getFrameWidth() {
+        return width;
+    }
+    
+    @Override
+    public int getFrameHeight() {
+        return height;
+    }
+    
+    @Override
+    public String getName() {
+        return "synthetic " + pattern.name().toLowerCase();
+    }
+    
+    @Override
+    public void release() {
+        if (frame != null) {
+            frame.release();
+            frame = null;
+        }
+        logger.info("Synthetic source released after {} frames", frameIndex);
+    }
+}
@@ -0,0 +1,251 @@
+package com.asciiart.display;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Quantizes cell colors to terminal foreground colors and writes their SGR
+ * escapes. Every color is reduced to a key first: the xterm palette index in
+ * 256-color mode, or the packed RGB with the low bits cleared in truecolor
+ * mode. Equal keys produce the same escape, so runs of cells with one key
+ * need a single escape.
+ *
+ * The number of cleared bits is the precision level. It is coarsened while
+ * frames exceed the byte budget and refined again once they fit easily, so
+ * fewer, longer runs keep color output within bandwidth.
+ */
+public class AnsiColor {
+    /** Key of a cell whose color does not matter, e.g. a blank */
+    public static final int ANY = -1;
+    /** Key of the terminal's default foreground */
+    public static final int DEFAULT = -2;
+    
+    // ESC [ 38 ; 2 ; rrr ; ggg ; bbb m
+    static final int MAX_SGR_BYTES = 19;
+    private static final byte[] RESET_FOREGROUND = {0x1B, '[', '3', '9', 'm'};
+    private static final byte[] TRUECOLOR_PREFIX = {0x1B, '[', '3', '8', ';', '2', ';'};
+    
+    private static final int[] CUBE_LEVELS = {0, 95, 135, 175, 215, 255};
+    private static final int MAX_SHIFT = 6;
+    // Frames in a row that must fit comfortably before precision is raised again
+    private static final int REFINE_AFTER_FRAMES = 30;
+    
+    /**
+     * Output color depth
+     */
+    public enum Mode {
+        NONE, ANSI256, TRUECOLOR;
+        
+        /**
+         * Parse a settings value: none, 256, truecolor or auto (pick from TERM and COLORTERM)
+         */
+        public static Mode parse(String value) {
+            switch (value.toLowerCase(Locale.ROOT)) {
+                case "256":
+                case "ansi256":
+                    return ANSI256;
+                case "truecolor":
+                case "24bit":
+                    return TRUECOLOR;
+                case "auto":
+                    return detect();
+                default:
+                    return NONE;
+            }
+        }
+        
+        private static Mode detect() {
+            String colorTerm = System.getenv("COLORTERM");
+            if (colorTerm != null && (colorTerm.contains("truecolor") || colorTerm.contains("24bit"))) {
+                return TRUECOLOR;
+            }
+            String term = System.getenv("TERM");
+            return term != null && term.contains("256color") ? ANSI256 : NONE;
+        }
+    }
+    
+    // 5 bits per channel to xterm index, built once on first 256-color use
+    private static final class Palette {
+        static final byte[] INDEX = buildPalette();
+        static final byte[][] SGR = buildPaletteEscapes();
+    }
+    
+    // ASCII digits of every channel value
+    private static final byte[][] CHANNEL_DIGITS = buildChannelDigits();
+    
+    private final Mode mode;
+    private final int byteBudget;
+    private final int minShift;
+    private int shift;
+    private int easyFrames = 0;
+    
+    /**
+     * @param byteBudget target bytes per frame; 0 or less keeps full precision
+     */
+    public AnsiColor(Mode mode, int byteBudget) {
+        this.mode = mode;
+        this.byteBudget = byteBudget;
+        // The palette lookup only uses the top 5 bits anyway
+        this.minShift = mode == Mode.ANSI256 ? 3 : 0;
+        this.shift = minShift;
+    }
+    
+    public boolean isEnabled() {
+        return mode != Mode.NONE;
+    }
+    
+    public Mode getMode() {
+        return mode;
+    }
+    
+    /**
+     * Key of a packed 0xRRGGBB color at the current precision
+     */
+    public int keyOf(int rgb) {
+        int mask = (0xFF << shift) & 0xFF;
+        int r = (rgb >> 16) & mask;
+        int g = (rgb >> 8) & mask;
+        int b = rgb & mask;
+        if (mode == Mode.ANSI256) {
+            return Palette.INDEX[((r >> 3) << 10) | ((g >> 3) << 5) | (b >> 3)] & 0xFF;
+        }
+        return (r << 16) | (g << 8) | b;
+    }
+    
+    /**
+     * Write the escape selecting a key as foreground
+     */
+    public void putSgr(ByteBuffer out, int key) {
+        if (key == DEFAULT) {
+            out.put(RESET_FOREGROUND);
+        } else if (mode == Mode.ANSI256) {
+            out.put(Palette.SGR[key]);
+        } else {
+            // Re-center the cleared bits so coarse colors are not biased dark
+            int half = (1 << shift) >> 1;
+            out.put(TRUECOLOR_PREFIX);
+            out.put(CHANNEL_DIGITS[((key >> 16) & 0xFF) | half]).put((byte) ';');
+            out.put(CHANNEL_DIGITS[((key >> 8) & 0xFF) | half]).put((byte) ';');
+            out.put(CHANNEL_DIGITS[(key & 0xFF) | half]).put((byte) 'm');
+        }
+    }
+    
+    /**
+     * Length of the escape {@link #putSgr} writes for a key
+     */
+    public int sgrBytes(int key) {
+        if (key == DEFAULT) {
+            return RESET_FOREGROUND.length;
+        }
+        if (mode == Mode.ANSI256) {
+            return Palette.SGR[key].length;
+        }
+        int half = (1 << shift) >> 1;
+        return TRUECOLOR_PREFIX.length + 3
+               + CHANNEL_DIGITS[((key >> 16) & 0xFF) | half].length
+               + CHANNEL_DIGITS[((key >> 8) & 0xFF) | half].length
+               + CHANNEL_DIGITS[(key & 0xFF) | half].length;
+    }
+    
+    /**
+     * Buffer space color escapes can add to a frame of this size
+     */
+    public int maxExtraBytes(int width, int height) {
+        return isEnabled() ? width * height * MAX_SGR_BYTES + RESET_FOREGROUND.length : 0;
+    }
+    
+    /**
+     * Adjust precision after a frame of the given size. Returns true when the
+     * precision changed, which changes every key.
+     */
+    public boolean adapt(int frameBytes) {
+        if (byteBudget <= 0 || !isEnabled()) {
+            return false;
+        }
+        if (frameBytes > byteBudget && shift < MAX_SHIFT) {
+            shift++;
+            easyFrames = 0;
+            return true;
+        }
+        if (frameBytes < byteBudget / 3 && shift > minShift) {
+            if (++easyFrames >= REFINE_AFTER_FRAMES) {
+                shift--;
+                easyFrames = 0;
+                return true;
+            }
+        } else {
+            easyFrames = 0;
+        }
+        return false;
+    }
+    
+    /**
+     * Low bits cleared from every channel; higher is coarser
+     */
+    public int getPrecisionShift() {
+        return shift;
+    }
+    
+    private static byte[] buildPalette() {
+        byte[] index = new byte[1 << 15];
+        for (int i = 0; i < index.length; i++) {
+            int r = expand5((i >> 10) & 31);
+            int g = expand5((i >> 5) & 31);
+            int b = expand5(i & 31);
+            index[i] = (byte) nearestXterm(r, g, b);
+        }
+        return index;
+    }
+    
+    private static int expand5(int value) {
+        return (value << 3) | (value >> 2);
+    }
+    
+    /**
+     * Closest entry of the 6x6x6 cube (16-231) or the gray ramp (232-255)
+     */
+    static int nearestXterm(int r, int g, int b) {
+        int cr = nearestCubeLevel(r);
+        int cg = nearestCubeLevel(g);
+        int cb = nearestCubeLevel(b);
+        int cubeDistance = square(CUBE_LEVELS[cr] - r) + square(CUBE_LEVELS[cg] - g) + square(CUBE_LEVELS[cb] - b);
+        
+        int mean = (r + g + b) / 3;
+        int step = Math.max(0, Math.min(23, (mean - 3) / 10));
+        int grayLevel = 8 + step * 10;
+        int grayDistance = square(grayLevel - r) + square(grayLevel - g) + square(grayLevel - b);
+        
+        return grayDistance < cubeDistance ? 232 + step : 16 + cr * 36 + cg * 6 + cb;
+    }
+    
+    private static int nearestCubeLevel(int value) {
+        int best = 0;
+        for (int i = 1; i < CUBE_LEVELS.length; i++) {
+            if (Math.abs(CUBE_LEVELS[i] - value) < Math.abs(CUBE_LEVELS[best] - value)) {
+                best = i;
+            }
+        }
+        return best;
+    }
+    
+    private static int square(int value) {
+        return value * value;
+    }
+    
+    private static byte[][] buildPaletteEscapes() {
+        byte[][] escapes = new byte[256][];
+        for (int i = 0; i < 256; i++) {
+            escapes[i] = ("\033[38;5;" + i + "m").getBytes(StandardCharsets.US_ASCII);
+        }
+        return escapes;
+    }
+    
+    private static byte[][] buildChannelDigits() {
+        byte[][] digits = new byte[256][];
+        for (int i = 0; i < 256; i++) {
+            digits[i] = Integer.toString(i).getBytes(StandardCharsets.US_ASCII);
+        }
+        return digits;
+    }
+}
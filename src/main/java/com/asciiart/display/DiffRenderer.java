@@ -0,0 +1,495 @@
+package com.asciiart.display;
+
+import com.asciiart.processor.ASCIIConverter;
+import com.asciiart.processor.GrayFrame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes a gray frame as the UTF-8 terminal output needed to turn the
+ * previously displayed frame into it. Only runs of changed cells are sent,
+ * each preceded by a cursor-positioning escape; a full repaint is produced
+ * instead when that is cheaper or when the grid size changed.
+ *
+ * Glyph bytes come straight from the pre-encoded glyph table, so no chars
+ * or Strings are built. Pure encoder: the caller writes the buffer.
+ *
+ * Frames with edges or, with a color mode set, colors go through a per-cell
+ * pass that resolves each cell's glyph and color first. A cell counts as
+ * changed when its glyph or its quantized color changes, and a color escape
+ * is only sent where the color differs from the one the terminal is already
+ * drawing with; blanks never need one. The foreground is reset at the end
+ * of every frame.
+ */
+public class DiffRenderer {
+    private static final byte ESC = 0x1B;
+    private static final byte[] CLEAR_SCREEN = {ESC, '[', '2', 'J'};
+    private static final byte[] CURSOR_HOME = {ESC, '[', 'H'};
+    private static final byte[] CRLF = {'\r', '\n'};
+    
+    // Largest cursor move: ESC [ rrrr ; cccc H
+    private static final int MAX_MOVE_BYTES = 12;
+    
+    private char[] previous = new char[0];
+    private int previousWidth = -1;
+    private int previousHeight = -1;
+    private boolean lastWasFull = false;
+    
+    // Per-cell pass: glyph code and color key of the frame being encoded, keys displayed last
+    private AnsiColor color = new AnsiColor(AnsiColor.Mode.NONE, 0);
+    private int[] codes = new int[0];
+    private int[] keys = new int[0];
+    private int[] previousKeys = new int[0];
+    private boolean previousCellPass = false;
+    private int pen = AnsiColor.DEFAULT;
+    
+    /**
+     * Forget the displayed frame so the next encode repaints everything
+     */
+    public void invalidate() {
+        previousWidth = -1;
+        previousHeight = -1;
+    }
+    
+    /**
+     * Color output to use for colored frames
+     */
+    public void setColor(AnsiColor color) {
+        this.color = color;
+        invalidate();
+    }
+    
+    public AnsiColor getColor() {
+        return color;
+    }
+    
+    /**
+     * Whether a frame is sent with colors
+     */
+    public boolean usesColor(GrayFrame frame) {
+        return color.isEnabled() && frame.isColored();
+    }
+    
+    /**
+     * Whether a frame needs the per-cell pass rather than the plain gray lookup
+     */
+    public boolean needsCellPass(GrayFrame frame) {
+        return usesColor(frame) || frame.hasEdges();
+    }
+    
+    /**
+     * Buffer space that {@link #encode} may need for a frame of this size
+     */
+    public static int maxEncodedBytes(int width, int height, int bytesPerGlyph) {
+        int full = CLEAR_SCREEN.length + CURSOR_HOME.length + CRLF.length * height
+                   + width * height * bytesPerGlyph;
+        // A diff is abandoned at the end of the row that exceeds a full repaint
+        return full + width * (MAX_MOVE_BYTES + bytesPerGlyph);
+    }
+    
+    /**
+     * Append the bytes that update the screen to the given frame and return
+     * how many were written. Frames are drawn from the top-left corner.
+     */
+    public int encode(GrayFrame frame, ASCIIConverter.GlyphTable table, ByteBuffer out) {
+        int start = out.position();
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        boolean resized = width != previousWidth || height != previousHeight;
+        if (previous.length < width * height) {
+            previous = new char[width * height];
+        }
+        boolean cellPass = needsCellPass(frame);
+        
+        int fullBytes = cellPass ? prepareCells(frame, table) : fullRepaintBytes(frame, table);
+        boolean full = resized || cellPass != previousCellPass;
+        if (!full) {
+            int startPen = pen;
+            full = cellPass ? !encodeCellDiff(frame, table, out, start + fullBytes)
+                            : !encodeDiff(frame, table, out, start + fullBytes);
+            if (full) {
+                // Diff grew larger than a full repaint; discard it and the colors it set
+                out.position(start);
+                pen = startPen;
+            }
+        }
+        
+        if (full) {
+            if (resized) {
+                out.put(CLEAR_SCREEN);
+            }
+            out.put(CURSOR_HOME);
+            if (cellPass) {
+                putCellRows(frame, table, out, CRLF);
+                rememberCells(width * height, table);
+            } else {
+                encodeRows(frame, table, out, CRLF, false);
+                rememberAll(frame, table);
+            }
+        }
+        if (cellPass) {
+            resetPen(out);
+        }
+        
+        lastWasFull = full;
+        previousCellPass = cellPass;
+        previousWidth = width;
+        previousHeight = height;
+        return out.position() - start;
+    }
+    
+    /**
+     * Whether the last encode produced a full repaint
+     */
+    public boolean wasFullRepaint() {
+        return lastWasFull;
+    }
+    
+    /**
+     * Write every row followed by a line separator, without any escapes;
+     * the separator is omitted after the last row unless trailing is set
+     */
+    public static void encodeRows(GrayFrame frame, ASCIIConverter.GlyphTable table, ByteBuffer out,
+                                  byte[] separator, boolean trailing) {
+        byte[] gray = frame.getData();
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int stride = frame.getStride();
+        for (int y = 0; y < height; y++) {
+            if (y > 0) {
+                out.put(separator);
+            }
+            putGlyphs(gray, y * stride, width, table, out);
+        }
+        if (trailing && height > 0) {
+            out.put(separator);
+        }
+    }
+    
+    /**
+     * Write every row, with colors and edge glyphs, followed by a line
+     * separator and without cursor escapes, ending with the default
+     * foreground. For frames where {@link #encodeRows} would drop those.
+     */
+    public void encodeCellRows(GrayFrame frame, ASCIIConverter.GlyphTable table, ByteBuffer out,
+                               byte[] separator, boolean trailing) {
+        prepareCells(frame, table);
+        putCellRows(frame, table, out, separator);
+        resetPen(out);
+        if (trailing && frame.getHeight() > 0) {
+            out.put(separator);
+        }
+        // The next diff cannot rely on what was displayed before this
+        invalidate();
+    }
+    
+    private void putCellRows(GrayFrame frame, ASCIIConverter.GlyphTable table, ByteBuffer out, byte[] separator) {
+        int width = frame.getWidth();
+        for (int y = 0; y < frame.getHeight(); y++) {
+            if (y > 0) {
+                out.put(separator);
+            }
+            putCells(y * width, width, table, out);
+        }
+    }
+    
+    /**
+     * Resolve every cell to its glyph table code (gray value or edge glyph)
+     * and, with colors, its quantized color key, blanks getting ANY. Returns
+     * the size of a full repaint.
+     */
+    private int prepareCells(GrayFrame frame, ASCIIConverter.GlyphTable table) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int stride = frame.getStride();
+        if (keys.length < width * height) {
+            codes = new int[width * height];
+            keys = new int[width * height];
+            previousKeys = new int[width * height];
+        }
+        char[] chars = table.getChars();
+        byte[] length = table.getEncodedLength();
+        byte[] gray = frame.getData();
+        byte[] edges = frame.hasEdges() ? frame.getEdges() : null;
+        int[] colors = usesColor(frame) ? frame.getColors() : null;
+        
+        int bytes = CURSOR_HOME.length + CRLF.length * Math.max(0, height - 1);
+        int simulatedPen = AnsiColor.DEFAULT;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0, i = y * stride, cell = y * width; x < width; x++, i++, cell++) {
+                int code = edges == null ? gray[i] & 0xFF
+                                         : ASCIIConverter.GlyphTable.codeOf(gray[i] & 0xFF, edges[i]);
+                int key = colors == null || chars[code] == ' ' ? AnsiColor.ANY : color.keyOf(colors[i]);
+                codes[cell] = code;
+                keys[cell] = key;
+                bytes += length[code];
+                if (key != AnsiColor.ANY && key != simulatedPen) {
+                    bytes += color.sgrBytes(key);
+                    simulatedPen = key;
+                }
+            }
+        }
+        return bytes;
+    }
+    
+    /**
+     * Counterpart of {@link #encodeDiff} on prepared cells; a cell changed if
+     * its glyph did or, unless it is blank, its color key did
+     */
+    private boolean encodeCellDiff(GrayFrame frame, ASCIIConverter.GlyphTable table, ByteBuffer out, int limit) {
+        char[] chars = table.getChars();
+        byte[] length = table.getEncodedLength();
+        int width = frame.getWidth();
+        
+        for (int y = 0; y < frame.getHeight(); y++) {
+            int cell = y * width;
+            int runStart = -1;
+            int runEnd = -1;
+            int gapBytes = 0;
+            int gapKey = AnsiColor.ANY;
+            
+            for (int x = 0; x < width; x++) {
+                int code = codes[cell + x];
+                char glyph = chars[code];
+                int key = keys[cell + x];
+                if (glyph == previous[cell + x] && (key == AnsiColor.ANY || key == previousKeys[cell + x])) {
+                    if (runStart >= 0) {
+                        // Rewriting the gap may also mean switching colors
+                        gapBytes += length[code];
+                        if (key != AnsiColor.ANY && key != gapKey) {
+                            gapBytes += color.sgrBytes(key);
+                            gapKey = key;
+                        }
+                    }
+                    continue;
+                }
+                previous[cell + x] = glyph;
+                previousKeys[cell + x] = key;
+                
+                if (runStart >= 0 && gapBytes > moveCost(y, x)) {
+                    emitCellRun(cell, y, runStart, runEnd, table, out);
+                    runStart = -1;
+                }
+                if (runStart < 0) {
+                    runStart = x;
+                }
+                runEnd = x + 1;
+                gapBytes = 0;
+                gapKey = key;
+            }
+            
+            if (runStart >= 0) {
+                emitCellRun(cell, y, runStart, runEnd, table, out);
+            }
+            if (out.position() >= limit) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private void emitCellRun(int cell, int y, int start, int end, ASCIIConverter.GlyphTable table, ByteBuffer out) {
+        putCursorMove(out, y, start);
+        putCells(cell + start, end - start, table, out);
+        // Gap cells rewritten inside the run are now displayed with their current keys
+        System.arraycopy(keys, cell + start, previousKeys, cell + start, end - start);
+    }
+    
+    /**
+     * Copy glyph bytes of count consecutive prepared cells, switching the
+     * foreground only where the color key changes
+     */
+    private void putCells(int offset, int count, ASCIIConverter.GlyphTable table, ByteBuffer out) {
+        byte[] encoded = table.getEncoded();
+        byte[] length = table.getEncodedLength();
+        int stride = table.getBytesPerGlyph();
+        int[] cellCodes = codes;
+        int[] cellKeys = keys;
+        for (int i = offset, end = offset + count; i < end; i++) {
+            int key = cellKeys[i];
+            if (key != AnsiColor.ANY && key != pen) {
+                color.putSgr(out, key);
+                pen = key;
+            }
+            int code = cellCodes[i];
+            out.put(encoded, code * stride, length[code]);
+        }
+    }
+    
+    private void resetPen(ByteBuffer out) {
+        if (pen != AnsiColor.DEFAULT) {
+            color.putSgr(out, AnsiColor.DEFAULT);
+            pen = AnsiColor.DEFAULT;
+        }
+    }
+    
+    private void rememberCells(int cells, ASCIIConverter.GlyphTable table) {
+        char[] chars = table.getChars();
+        for (int cell = 0; cell < cells; cell++) {
+            previous[cell] = chars[codes[cell]];
+        }
+        System.arraycopy(keys, 0, previousKeys, 0, cells);
+    }
+    
+    private void rememberAll(GrayFrame frame, ASCIIConverter.GlyphTable table) {
+        char[] chars = table.getChars();
+        byte[] gray = frame.getData();
+        int width = frame.getWidth();
+        int stride = frame.getStride();
+        for (int y = 0; y < frame.getHeight(); y++) {
+            int row = y * stride;
+            int cell = y * width;
+            for (int x = 0; x < width; x++) {
+                previous[cell + x] = chars[gray[row + x] & 0xFF];
+            }
+        }
+    }
+    
+    /**
+     * Emit changed runs and record them as displayed. Returns false as soon
+     * as the output passes the limit; the caller then repaints in full.
+     */
+    private boolean encodeDiff(GrayFrame frame, ASCIIConverter.GlyphTable table, ByteBuffer out, int limit) {
+        char[] chars = table.getChars();
+        byte[] length = table.getEncodedLength();
+        byte[] gray = frame.getData();
+        int width = frame.getWidth();
+        int stride = frame.getStride();
+        
+        for (int y = 0; y < frame.getHeight(); y++) {
+            int row = y * stride;
+            int cell = y * width;
+            int runStart = -1;
+            int runEnd = -1;
+            int gapBytes = 0;
+            
+            for (int x = 0; x < width; x++) {
+                int value = gray[row + x] & 0xFF;
+                char glyph = chars[value];
+                if (glyph == previous[cell + x]) {
+                    if (runStart >= 0) {
+                        gapBytes += length[value];
+                    }
+                    continue;
+                }
+                previous[cell + x] = glyph;
+                
+                // Rewriting a short unchanged gap is cheaper than a cursor move
+                if (runStart >= 0 && gapBytes > moveCost(y, x)) {
+                    emitRun(gray, row, y, runStart, runEnd, table, out);
+                    runStart = -1;
+                }
+                if (runStart < 0) {
+                    runStart = x;
+                }
+                runEnd = x + 1;
+                gapBytes = 0;
+            }
+            
+            if (runStart >= 0) {
+                emitRun(gray, row, y, runStart, runEnd, table, out);
+            }
+            if (out.position() >= limit) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static void emitRun(byte[] gray, int row, int y, int start, int end,
+                                ASCIIConverter.GlyphTable table, ByteBuffer out) {
+        putCursorMove(out, y, start);
+        putGlyphs(gray, row + start, end - start, table, out);
+    }
+    
+    /**
+     * Copy the pre-encoded glyph bytes of count consecutive cells
+     */
+    private static void putGlyphs(byte[] gray, int offset, int count, ASCIIConverter.GlyphTable table,
+                                  ByteBuffer out) {
+        byte[] encoded = table.getEncoded();
+        int stride = table.getBytesPerGlyph();
+        if (stride == 1) {
+            for (int i = offset, end = offset + count; i < end; i++) {
+                out.put(encoded[gray[i] & 0xFF]);
+            }
+            return;
+        }
+        
+        byte[] length = table.getEncodedLength();
+        for (int i = offset, end = offset + count; i < end; i++) {
+            int value = gray[i] & 0xFF;
+            out.put(encoded, value * stride, length[value]);
+        }
+    }
+    
+    private static int fullRepaintBytes(GrayFrame frame, ASCIIConverter.GlyphTable table) {
+        byte[] length = table.getEncodedLength();
+        byte[] gray = frame.getData();
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int stride = frame.getStride();
+        int bytes = CURSOR_HOME.length + CRLF.length * Math.max(0, height - 1);
+        if (table.getBytesPerGlyph() == 1) {
+            return bytes + width * height;
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0, i = y * stride; x < width; x++, i++) {
+                bytes += length[gray[i] & 0xFF];
+            }
+        }
+        return bytes;
+    }
+    
+    /**
+     * Write ESC [ row ; col H for a zero-based position
+     */
+    public static void putCursorMove(ByteBuffer out, int y, int x) {
+        out.put(ESC).put((byte) '[');
+        putDecimal(out, y + 1);
+        out.put((byte) ';');
+        putDecimal(out, x + 1);
+        out.put((byte) 'H');
+    }
+    
+    /**
+     * Write a non-negative number in ASCII digits without allocating
+     */
+    public static void putDecimal(ByteBuffer out, int value) {
+        if (value >= 10) {
+            putDecimal(out, value / 10);
+        }
+        out.put((byte) ('0' + value % 10));
+    }
+    
+    /**
+     * Write text as UTF-8 without allocating
+     */
+    public static void putUtf8(ByteBuffer out, CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | (c >> 6))).put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                out.put((byte) '?');
+            } else {
+                out.put((byte) (0xE0 | (c >> 12)))
+                   .put((byte) (0x80 | ((c >> 6) & 0x3F)))
+                   .put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+    
+    /**
+     * Size of "ESC [ row ; col H" for a zero-based position
+     */
+    static int moveCost(int y, int x) {
+        return 4 + digits(y + 1) + digits(x + 1);
+    }
+    
+    private static int digits(int value) {
+        return value < 10 ? 1 : (value < 100 ? 2 : (value < 1000 ? 3 : 4));
+    }
+}
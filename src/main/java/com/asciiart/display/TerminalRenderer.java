@@ -1,8 +1,18 @@
 package com.asciiart.display;
 
+import com.asciiart.metrics.StageMetrics;
+import com.asciiart.processor.ASCIIConverter;
+import com.asciiart.processor.GrayFrame;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.function.BiConsumer;
+
 /**
  * Handles terminal rendering and display
  */
@@ -19,7 +29,28 @@ public class TerminalRenderer {
     private boolean useAnsiCodes = true;
     private int frameCount = 0;
     
+    // Byte-level output stage
+    private static final byte[] CLEAR_AND_HOME = {0x1B, '[', '2', 'J', 0x1B, '[', 'H'};
+    private static final byte[] ERASE_LINE = {0x1B, '[', 'K'};
+    private static final byte[] NEWLINE = {'\n'};
+    private static final int STATUS_OVERHEAD = 32;
+    
+    private final WritableByteChannel output;
+    private final boolean stdoutChannel;
+    private ByteBuffer frameBuffer = ByteBuffer.allocateDirect(64 * 1024);
+    private final DiffRenderer diffRenderer = new DiffRenderer();
+    private boolean diffRendering = true;
+    private int lastFrameBytes = 0;
+    private long totalBytes = 0;
+    private StageMetrics metrics = StageMetrics.disabled();
+    private final TerminalSize terminalSize = new TerminalSize(80, 24);
+    private volatile boolean redrawPending = false;
+    
     public TerminalRenderer() {
+        this.output = new FileOutputStream(FileDescriptor.out).getChannel();
+        this.stdoutChannel = true;
+        terminalSize.refresh();
+        
         // Check if terminal supports ANSI codes
         String term = System.getenv("TERM");
         useAnsiCodes = term != null && !term.equals("dumb");
@@ -29,6 +60,16 @@ public class TerminalRenderer {
         }
     }
     
+    /**
+     * Renderer writing frames to an arbitrary channel instead of stdout,
+     * e.g. a null sink for benchmarks. The terminal itself is not touched.
+     */
+    public TerminalRenderer(WritableByteChannel output, boolean useAnsiCodes) {
+        this.output = output;
+        this.stdoutChannel = false;
+        this.useAnsiCodes = useAnsiCodes;
+    }
+    
     /**
      * Initialize terminal for rendering
      */
@@ -48,6 +89,7 @@ public class TerminalRenderer {
             System.out.print("\033[3J");     // Clear scrollback
             System.out.print("\033[H");      // Move cursor home
             System.out.flush();
+            diffRenderer.invalidate();
         } else {
             // Fallback for non-ANSI terminals
             for (int i = 0; i < 50; i++) {
@@ -57,39 +99,170 @@ public class TerminalRenderer {
     }
     
     /**
-     * Render ASCII art to terminal
+     * Render a frame and its status line with a single write. Glyph bytes are
+     * copied from the pre-encoded table into a reused buffer; with ANSI
+     * support only the cells that changed since the previous frame are sent.
      */
-    public void render(String asciiArt) {
-        if (asciiArt == null || asciiArt.isEmpty()) {
+    public void renderFrame(GrayFrame frame, ASCIIConverter.GlyphTable table, String status) {
+        if (frame == null || frame.isEmpty()) {
             return;
         }
         
-        if (useAnsiCodes) {
-            // Clear entire screen first for clean rendering
-            System.out.print("\033[2J");   // Clear screen
-            System.out.print("\033[H");    // Move cursor home
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int statusBytes = status != null ? status.length() * 3 + STATUS_OVERHEAD : 0;
+        boolean colored = diffRenderer.usesColor(frame);
+        boolean cellPass = diffRenderer.needsCellPass(frame);
+        int colorBytes = colored ? diffRenderer.getColor().maxExtraBytes(width, height) : 0;
+        ensureCapacity(DiffRenderer.maxEncodedBytes(width, height, table.getBytesPerGlyph()) + colorBytes
+                       + statusBytes);
+        
+        long encodeStart = System.nanoTime();
+        ByteBuffer buffer = frameBuffer;
+        buffer.clear();
+        if (useAnsiCodes && redrawPending) {
+            // The terminal reflowed or cropped the old frame; start from a blank screen
+            redrawPending = false;
+            buffer.put(CLEAR_AND_HOME);
+            diffRenderer.invalidate();
+        }
+        if (useAnsiCodes && diffRendering) {
+            diffRenderer.encode(frame, table, buffer);
+        } else {
+            if (useAnsiCodes) {
+                buffer.put(CLEAR_AND_HOME);
+            }
+            if (cellPass) {
+                diffRenderer.encodeCellRows(frame, table, buffer, NEWLINE, true);
+            } else {
+                DiffRenderer.encodeRows(frame, table, buffer, NEWLINE, true);
+            }
         }
         
-        System.out.print(asciiArt);
-        System.out.flush();
+        if (status != null) {
+            // A wrapped status line would scroll the frame on the last row
+            if (terminalSize.isDetected() && status.length() > terminalSize.getColumns()) {
+                status = status.substring(0, terminalSize.getColumns());
+            }
+            if (useAnsiCodes) {
+                // Position explicitly: after a diff update the cursor can be anywhere
+                DiffRenderer.putCursorMove(buffer, height + 1, 0);
+                DiffRenderer.putUtf8(buffer, status);
+                buffer.put(ERASE_LINE);
+            } else {
+                buffer.put(NEWLINE);
+                DiffRenderer.putUtf8(buffer, status);
+                buffer.put(NEWLINE);
+            }
+        }
         
+        buffer.flip();
+        lastFrameBytes = buffer.remaining();
+        if (colored) {
+            // Coarser colors make longer runs and fewer escapes when over budget
+            diffRenderer.getColor().adapt(lastFrameBytes);
+        }
+        long writeStart = System.nanoTime();
+        metrics.record(StageMetrics.Stage.ENCODE, writeStart - encodeStart);
+        write(buffer);
+        metrics.recordSince(StageMetrics.Stage.WRITE, writeStart);
+        
+        totalBytes += lastFrameBytes;
         frameCount++;
     }
     
+    private void ensureCapacity(int bytes) {
+        if (frameBuffer.capacity() < bytes) {
+            frameBuffer = ByteBuffer.allocateDirect(Math.max(bytes, frameBuffer.capacity() * 2));
+        }
+    }
+    
     /**
-     * Display status line at bottom of screen
+     * Push the whole buffer to the output channel
      */
-    public void renderStatus(String status) {
-        System.out.println("\n" + status);
-        System.out.flush();
+    private void write(ByteBuffer buffer) {
+        try {
+            // Anything still buffered in System.out must reach the terminal first
+            if (stdoutChannel) {
+                System.out.flush();
+            }
+            while (buffer.hasRemaining()) {
+                output.write(buffer);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to write frame", e);
+        }
     }
     
     /**
-     * Get terminal dimensions (simplified for now)
+     * Record encode and write times of {@link #renderFrame}
+     */
+    public void setMetrics(StageMetrics metrics) {
+        this.metrics = metrics != null ? metrics : StageMetrics.disabled();
+    }
+    
+    /**
+     * Send colored frames with foreground colors; NONE renders plain glyphs
+     *
+     * @param byteBudget bytes per frame above which color precision is reduced; 0 for no limit
+     */
+    public void setColorMode(AnsiColor.Mode mode, int byteBudget) {
+        // Without escape support there is no way to send colors
+        diffRenderer.setColor(new AnsiColor(useAnsiCodes ? mode : AnsiColor.Mode.NONE, byteBudget));
+    }
+    
+    public AnsiColor.Mode getColorMode() {
+        return diffRenderer.getColor().getMode();
+    }
+    
+    public void setDiffRendering(boolean diffRendering) {
+        this.diffRendering = diffRendering;
+        diffRenderer.invalidate();
+    }
+    
+    /**
+     * Bytes written for the last frame including its status line
+     */
+    public int getLastFrameBytes() {
+        return lastFrameBytes;
+    }
+    
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+    
+    /**
+     * Terminal columns and rows, cached; 80x24 when output is not a terminal
      */
     public int[] getTerminalSize() {
-        // Default size - will be improved with JNA integration later
-        return new int[]{80, 24};
+        return terminalSize.get();
+    }
+    
+    /**
+     * Whether {@link #getTerminalSize} reflects the real terminal
+     */
+    public boolean isTerminalSizeDetected() {
+        return terminalSize.isDetected();
+    }
+    
+    /**
+     * Call the listener with columns and rows once per terminal resize. The
+     * next frame is drawn on a cleared screen. Returns false if resizes are
+     * only seen through {@link #pollTerminalSize}.
+     */
+    public boolean watchTerminalSize(BiConsumer<Integer, Integer> listener) {
+        return terminalSize.watch((columns, rows) -> {
+            redrawPending = true;
+            listener.accept(columns, rows);
+        });
+    }
+    
+    /**
+     * Look for a terminal resize where there is no SIGWINCH; cheap enough to
+     * call once per frame, and a no-op where the signal is handled
+     */
+    public void pollTerminalSize() {
+        terminalSize.poll();
     }
     
     /**
@@ -102,7 +275,7 @@ public class TerminalRenderer {
             System.out.print(CLEAR_SCREEN);
             System.out.flush();
         }
-        logger.debug("Terminal cleanup complete. Rendered {} frames", frameCount);
+        logger.debug("Terminal cleanup complete. Rendered {} frames, {} bytes", frameCount, totalBytes);
     }
     
     public int getFrameCount() {
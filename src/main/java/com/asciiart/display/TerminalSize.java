@@ -0,0 +1,189 @@
+package com.asciiart.display;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Platform;
+import com.sun.jna.Structure;
+import com.sun.jna.platform.win32.Kernel32;
+import com.sun.jna.platform.win32.Wincon;
+import com.sun.jna.platform.win32.WinNT;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Size of the controlling terminal in character cells, read with
+ * ioctl(TIOCGWINSZ) (or the console buffer on Windows) and cached.
+ *
+ * The cached size is refreshed from a SIGWINCH handler, so reading it per
+ * frame costs a volatile load and no system call. Where there is no
+ * SIGWINCH (Windows) {@link #poll} asks the terminal again instead, at most
+ * every quarter second.
+ */
+public class TerminalSize {
+    private static final Logger logger = LoggerFactory.getLogger(TerminalSize.class);
+    
+    private static final long TIOCGWINSZ_LINUX = 0x5413L;
+    private static final long TIOCGWINSZ_BSD = 0x40087468L;
+    // Tried in order; stdout may be redirected while stderr or stdin is still the tty
+    private static final int[] TERMINAL_FDS = {1, 2, 0};
+    private static final long POLL_INTERVAL_NANOS = 250_000_000L;
+    
+    private volatile int[] size;
+    private volatile boolean detected = false;
+    private BiConsumer<Integer, Integer> listener = (columns, rows) -> { };
+    private boolean polling = false;
+    private long nextPollNanos;
+    
+    /**
+     * Interface to the C library call used on Unix-like systems
+     */
+    public interface CLibrary extends Library {
+        int ioctl(int fd, NativeLong request, WinSize size);
+    }
+    
+    /**
+     * struct winsize from sys/ioctl.h
+     */
+    @Structure.FieldOrder({"ws_row", "ws_col", "ws_xpixel", "ws_ypixel"})
+    public static class WinSize extends Structure {
+        public short ws_row;
+        public short ws_col;
+        public short ws_xpixel;
+        public short ws_ypixel;
+    }
+    
+    /**
+     * @param fallbackColumns size reported while the real one is unknown,
+     *                        e.g. when output is not a terminal
+     */
+    public TerminalSize(int fallbackColumns, int fallbackRows) {
+        this.size = new int[]{fallbackColumns, fallbackRows};
+    }
+    
+    /**
+     * Query the terminal now and keep the result. Returns false and keeps the
+     * fallback size if there is no terminal to ask.
+     */
+    public boolean refresh() {
+        int[] queried = query();
+        if (queried == null) {
+            return false;
+        }
+        size = queried;
+        detected = true;
+        return true;
+    }
+    
+    /**
+     * Refresh the size on every SIGWINCH and pass the new size to the
+     * listener, on the JVM's signal thread. Where the signal cannot be
+     * handled, resizes are found by {@link #poll} instead and the listener
+     * runs on the polling thread. Returns false in that case.
+     */
+    public boolean watch(BiConsumer<Integer, Integer> listener) {
+        this.listener = listener;
+        if (WindowChangeSignal.install(this::onWindowChange)) {
+            return true;
+        }
+        nextPollNanos = System.nanoTime() + POLL_INTERVAL_NANOS;
+        polling = true;
+        return false;
+    }
+    
+    /**
+     * Re-read the size if the last read is old enough and tell the listener
+     * about a change, on the calling thread. Does nothing unless watching
+     * fell back to polling, so it is safe to call once per frame.
+     */
+    public void poll() {
+        if (!polling) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - nextPollNanos < 0) {
+            return;
+        }
+        nextPollNanos = now + POLL_INTERVAL_NANOS;
+        onWindowChange();
+    }
+    
+    private void onWindowChange() {
+        int[] previous = size;
+        if (!refresh()) {
+            return;
+        }
+        int[] current = size;
+        if (current[0] != previous[0] || current[1] != previous[1]) {
+            logger.debug("Terminal resized to {}x{}", current[0], current[1]);
+            listener.accept(current[0], current[1]);
+        }
+    }
+    
+    /**
+     * Ask the operating system for the current size, or null if unknown
+     */
+    public static int[] query() {
+        try {
+            return Platform.isWindows() ? queryConsole() : queryIoctl();
+        } catch (UnsatisfiedLinkError | RuntimeException e) {
+            logger.debug("Terminal size query failed: {}", e.getMessage());
+            return null;
+        }
+    }
+    
+    private static int[] queryIoctl() {
+        CLibrary libc = CLibraryHolder.INSTANCE;
+        NativeLong request = new NativeLong(Platform.isLinux() ? TIOCGWINSZ_LINUX : TIOCGWINSZ_BSD);
+        WinSize winSize = new WinSize();
+        for (int fd : TERMINAL_FDS) {
+            if (libc.ioctl(fd, request, winSize) == 0 && winSize.ws_col > 0 && winSize.ws_row > 0) {
+                return new int[]{winSize.ws_col, winSize.ws_row};
+            }
+        }
+        return null;
+    }
+    
+    private static int[] queryConsole() {
+        WinNT.HANDLE handle = Kernel32.INSTANCE.GetStdHandle(Wincon.STD_OUTPUT_HANDLE);
+        Wincon.CONSOLE_SCREEN_BUFFER_INFO info = new Wincon.CONSOLE_SCREEN_BUFFER_INFO();
+        if (!Kernel32.INSTANCE.GetConsoleScreenBufferInfo(handle, info)) {
+            return null;
+        }
+        int columns = info.srWindow.Right - info.srWindow.Left + 1;
+        int rows = info.srWindow.Bottom - info.srWindow.Top + 1;
+        return columns > 0 && rows > 0 ? new int[]{columns, rows} : null;
+    }
+    
+    /**
+     * Loads libc on first use only, so Windows never tries
+     */
+    private static class CLibraryHolder {
+        static final CLibrary INSTANCE = Native.load(Platform.C_LIBRARY_NAME, CLibrary.class);
+    }
+    
+    public int getColumns() {
+        return size[0];
+    }
+    
+    public int getRows() {
+        return size[1];
+    }
+    
+    /**
+     * Columns and rows as last seen
+     */
+    public int[] get() {
+        int[] current = size;
+        return new int[]{current[0], current[1]};
+    }
+    
+    /**
+     * Whether the size came from the terminal rather than the fallback
+     */
+    public boolean isDetected() {
+        return detected;
+    }
+}
@@ -0,0 +1,30 @@
+package com.asciiart.display;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sun.misc.Signal;
+
+/**
+ * SIGWINCH handling, kept apart because sun.misc.Signal is JDK-internal API;
+ * nothing else in the application touches it
+ */
+final class WindowChangeSignal {
+    private static final Logger logger = LoggerFactory.getLogger(WindowChangeSignal.class);
+    
+    private WindowChangeSignal() {
+    }
+    
+    /**
+     * Run the handler on the JVM's signal thread on every SIGWINCH. Returns
+     * false where the signal does not exist (Windows) or cannot be handled.
+     */
+    static boolean install(Runnable handler) {
+        try {
+            Signal.handle(new Signal("WINCH"), signal -> handler.run());
+            return true;
+        } catch (IllegalArgumentException | UnsupportedOperationException | LinkageError e) {
+            logger.debug("SIGWINCH not available: {}", e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.asciiart.metrics;
+
+import java.beans.ConstructorProperties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with log-linear buckets: every power of two
+ * is split into eight equal buckets, so a reported percentile is at most
+ * 12.5% above the true value. Any number of threads may record concurrently.
+ *
+ * Counts are cumulative. {@link #intervalSnapshot()} reports what was
+ * recorded since its previous call and is meant for a single reporter.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    // Values of 2^43 ns (about 2.4 hours) and more share the last bucket
+    private static final int MAX_EXPONENT = 42;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+    private final AtomicLong intervalMax = new AtomicLong();
+    
+    // Reporter-only state for interval snapshots
+    private final long[] intervalBase = new long[BUCKETS];
+    private long intervalBaseNanos = 0;
+    
+    /**
+     * Record one latency in nanoseconds; negative values count as zero
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        totalNanos.addAndGet(value);
+        raise(max, value);
+        raise(intervalMax, value);
+    }
+    
+    private static void raise(AtomicLong target, long value) {
+        long current;
+        while (value > (current = target.get()) && !target.compareAndSet(current, value)) {
+            // Lost a race with another recorder; retry against the new maximum
+        }
+    }
+    
+    static int indexOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (value >> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+    
+    /**
+     * Largest value that falls into the bucket
+     */
+    static long upperBound(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int exponent = index / SUB_COUNT + SUB_BITS - 1;
+        long lower = (long) (SUB_COUNT + index % SUB_COUNT) << (exponent - SUB_BITS);
+        return lower + (1L << (exponent - SUB_BITS)) - 1;
+    }
+    
+    /**
+     * Everything recorded so far
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return Snapshot.of(copy, totalNanos.get(), max.get());
+    }
+    
+    /**
+     * Everything recorded since the previous call. Values recorded while the
+     * snapshot is taken land in either this interval or the next.
+     */
+    public synchronized Snapshot intervalSnapshot() {
+        long[] delta = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            long current = counts.get(i);
+            delta[i] = current - intervalBase[i];
+            intervalBase[i] = current;
+        }
+        long nanos = totalNanos.get();
+        long intervalNanos = nanos - intervalBaseNanos;
+        intervalBaseNanos = nanos;
+        return Snapshot.of(delta, intervalNanos, intervalMax.getAndSet(0));
+    }
+    
+    /**
+     * Summary of a set of recorded latencies, all in nanoseconds
+     */
+    public static final class Snapshot {
+        public static final Snapshot EMPTY = new Snapshot(0, 0, 0, 0, 0);
+        
+        private final long count;
+        private final long p50Nanos;
+        private final long p99Nanos;
+        private final long maxNanos;
+        private final long meanNanos;
+        
+        @ConstructorProperties({"count", "p50Nanos", "p99Nanos", "maxNanos", "meanNanos"})
+        public Snapshot(long count, long p50Nanos, long p99Nanos, long maxNanos, long meanNanos) {
+            this.count = count;
+            this.p50Nanos = p50Nanos;
+            this.p99Nanos = p99Nanos;
+            this.maxNanos = maxNanos;
+            this.meanNanos = meanNanos;
+        }
+        
+        static Snapshot of(long[] buckets, long sumNanos, long max) {
+            long count = 0;
+            for (long bucket : buckets) {
+                count += bucket;
+            }
+            if (count == 0) {
+                return EMPTY;
+            }
+            return new Snapshot(count, percentile(buckets, count, 0.50, max),
+                                percentile(buckets, count, 0.99, max), max, sumNanos / count);
+        }
+        
+        private static long percentile(long[] buckets, long count, double fraction, long max) {
+            long rank = Math.max(1, (long) Math.ceil(fraction * count));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+        
+        public long getCount() {
+            return count;
+        }
+        
+        public long getP50Nanos() {
+            return p50Nanos;
+        }
+        
+        public long getP99Nanos() {
+            return p99Nanos;
+        }
+        
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+        
+        public long getMeanNanos() {
+            return meanNanos;
+        }
+    }
+}
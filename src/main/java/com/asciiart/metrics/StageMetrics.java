@@ -0,0 +1,260 @@
+package com.asciiart.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Latency histograms for every stage of the frame pipeline plus windowed FPS.
+ *
+ * Stages record from whichever thread runs them; recording is lock-free.
+ * The render thread calls {@link #frameRendered()} once per frame, which
+ * also closes a window every second. The status line, the periodic log
+ * line and JMX all report the last complete window.
+ */
+public class StageMetrics implements StageMetricsMXBean {
+    private static final Logger logger = LoggerFactory.getLogger(StageMetrics.class);
+    
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+    private static final String OBJECT_NAME = "com.asciiart:type=StageMetrics";
+    
+    /**
+     * Pipeline stages. GRAYSCALE, RESIZE and ADJUST are the processing
+     * steps, EDGES the edge detection pass and DITHER the dithering pass,
+     * all also included in PROCESS. Glyph lookup for display happens inside
+     * ENCODE; CONVERT is the String conversion used for saving and RECORD
+     * the delta encoding of recorded frames.
+     */
+    public enum Stage {
+        GRAB("grab"),
+        PROCESS("proc"),
+        GRAYSCALE("gray"),
+        RESIZE("resize"),
+        ADJUST("adjust"),
+        EDGES("edge"),
+        DITHER("dith"),
+        CONVERT("conv"),
+        ENCODE("enc"),
+        WRITE("write"),
+        SAVE("save"),
+        RECORD("rec"),
+        STREAM("strm");
+        
+        private final String label;
+        
+        Stage(String label) {
+            this.label = label;
+        }
+        
+        public String getLabel() {
+            return label;
+        }
+    }
+    
+    private static final StageMetrics DISABLED = new StageMetrics(false, 0);
+    
+    private final boolean enabled;
+    private final long logIntervalNanos;
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+    private volatile LatencyHistogram.Snapshot[] window;
+    private volatile double framesPerSecond = 0.0;
+    private volatile long framesRendered = 0;
+    private volatile long framesUnchanged = 0;
+    private ObjectName registeredName;
+    
+    // Render-thread state
+    private long windowStart = -1;
+    private int windowFrames = 0;
+    private long lastLogNanos;
+    
+    /**
+     * @param logIntervalSeconds seconds between log lines; 0 disables logging
+     */
+    public StageMetrics(boolean enabled, int logIntervalSeconds) {
+        this.enabled = enabled;
+        this.logIntervalNanos = logIntervalSeconds * 1_000_000_000L;
+        LatencyHistogram.Snapshot[] empty = new LatencyHistogram.Snapshot[histograms.length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+            empty[i] = LatencyHistogram.Snapshot.EMPTY;
+        }
+        this.window = empty;
+    }
+    
+    /**
+     * Shared instance that records nothing, used until real metrics are set
+     */
+    public static StageMetrics disabled() {
+        return DISABLED;
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Record how long one run of a stage took
+     */
+    public void record(Stage stage, long nanos) {
+        if (enabled) {
+            histograms[stage.ordinal()].record(nanos);
+        }
+    }
+    
+    /**
+     * Record a stage that started at startNanos (from System.nanoTime()) and ends now
+     */
+    public void recordSince(Stage stage, long startNanos) {
+        if (enabled) {
+            histograms[stage.ordinal()].record(System.nanoTime() - startNanos);
+        }
+    }
+    
+    /**
+     * Count a displayed frame and close the window once a second. Render thread only.
+     */
+    public void frameRendered() {
+        framesRendered++;
+        long now = System.nanoTime();
+        if (windowStart < 0) {
+            windowStart = now;
+            lastLogNanos = now;
+        }
+        windowFrames++;
+        
+        long elapsed = now - windowStart;
+        if (elapsed < WINDOW_NANOS) {
+            return;
+        }
+        framesPerSecond = windowFrames * 1e9 / elapsed;
+        windowStart = now;
+        windowFrames = 0;
+        
+        if (enabled) {
+            LatencyHistogram.Snapshot[] closed = new LatencyHistogram.Snapshot[histograms.length];
+            for (int i = 0; i < histograms.length; i++) {
+                closed[i] = histograms[i].intervalSnapshot();
+            }
+            window = closed;
+            
+            if (logIntervalNanos > 0 && now - lastLogNanos >= logIntervalNanos) {
+                lastLogNanos = now;
+                logger.info(logSummary());
+            }
+        }
+    }
+    
+    /**
+     * Count a frame that was not displayed because the scene had not changed.
+     * Render thread only.
+     */
+    public void frameUnchanged() {
+        framesUnchanged++;
+    }
+    
+    /**
+     * Last window of a single stage
+     */
+    public LatencyHistogram.Snapshot getWindow(Stage stage) {
+        return window[stage.ordinal()];
+    }
+    
+    /**
+     * Short status bar text: FPS and the p99 of every active stage in ms,
+     * e.g. "15.0fps p99 grab 0.2 proc 3.1 enc 0.4 write 0.1"
+     */
+    public String compactSummary() {
+        StringBuilder text = new StringBuilder(96);
+        text.append(String.format("%.1ffps p99", framesPerSecond));
+        LatencyHistogram.Snapshot[] current = window;
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram.Snapshot snapshot = current[stage.ordinal()];
+            if (snapshot.getCount() > 0) {
+                text.append(' ').append(stage.getLabel()).append(' ')
+                    .append(String.format("%.1f", snapshot.getP99Nanos() / 1e6));
+            }
+        }
+        return text.toString();
+    }
+    
+    /**
+     * Full line for the log: p50/p99/max in ms of every active stage
+     */
+    public String logSummary() {
+        StringBuilder text = new StringBuilder(256);
+        text.append(String.format("FPS %.1f | stage p50/p99/max ms:", framesPerSecond));
+        LatencyHistogram.Snapshot[] current = window;
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram.Snapshot snapshot = current[stage.ordinal()];
+            if (snapshot.getCount() > 0) {
+                text.append(String.format(" %s %.2f/%.2f/%.2f", stage.getLabel(), snapshot.getP50Nanos() / 1e6,
+                                          snapshot.getP99Nanos() / 1e6, snapshot.getMaxNanos() / 1e6));
+            }
+        }
+        return text.toString();
+    }
+    
+    /**
+     * Expose these metrics through the platform MBean server
+     */
+    public void register() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            registeredName = name;
+            logger.info("Metrics registered as {}", OBJECT_NAME);
+        } catch (Exception e) {
+            logger.warn("Could not register metrics MBean: {}", e.getMessage());
+        }
+    }
+    
+    public void unregister() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+        } catch (Exception e) {
+            logger.warn("Could not unregister metrics MBean: {}", e.getMessage());
+        }
+        registeredName = null;
+    }
+    
+    @Override
+    public double getFramesPerSecond() {
+        return framesPerSecond;
+    }
+    
+    @Override
+    public long getFramesRendered() {
+        return framesRendered;
+    }
+    
+    @Override
+    public long getFramesUnchanged() {
+        return framesUnchanged;
+    }
+    
+    @Override
+    public Map<String, LatencyHistogram.Snapshot> getStages() {
+        LatencyHistogram.Snapshot[] current = window;
+        Map<String, LatencyHistogram.Snapshot> stages = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            stages.put(stage.getLabel(), current[stage.ordinal()]);
+        }
+        return stages;
+    }
+    
+    @Override
+    public Map<String, LatencyHistogram.Snapshot> getStagesSinceStart() {
+        Map<String, LatencyHistogram.Snapshot> stages = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            stages.put(stage.getLabel(), histograms[stage.ordinal()].snapshot());
+        }
+        return stages;
+    }
+}
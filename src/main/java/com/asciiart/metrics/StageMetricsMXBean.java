@@ -0,0 +1,31 @@
+package com.asciiart.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the frame pipeline metrics, registered as com.asciiart:type=StageMetrics
+ */
+public interface StageMetricsMXBean {
+    
+    /**
+     * Frames rendered per second over the last complete window
+     */
+    double getFramesPerSecond();
+    
+    long getFramesRendered();
+    
+    /**
+     * Frames skipped because the scene had not changed since the last displayed frame
+     */
+    long getFramesUnchanged();
+    
+    /**
+     * Per-stage latencies over the last complete window
+     */
+    Map<String, LatencyHistogram.Snapshot> getStages();
+    
+    /**
+     * Per-stage latencies since start
+     */
+    Map<String, LatencyHistogram.Snapshot> getStagesSinceStart();
+}
@@ -0,0 +1,312 @@
+package com.asciiart.pipeline;
+
+import com.asciiart.camera.AsyncFrameSource;
+import com.asciiart.camera.FrameSource;
+import com.asciiart.metrics.StageMetrics;
+import com.asciiart.processor.GrayFrame;
+import com.asciiart.processor.ImageProcessor;
+import com.asciiart.processor.PipelineConfig;
+import com.asciiart.utils.LiveConfig;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Staged frame pipeline: capture → process → render.
+ *
+ * Capture runs on the frame source's own thread (see {@link AsyncFrameSource}),
+ * processing on a "Frame-Process" thread and rendering on whichever thread
+ * calls {@link #takeLatest}. Process and render exchange a fixed set of
+ * {@link ProcessedFrame} slots through two single-producer/single-consumer
+ * queues, so nothing queues without bound: when rendering falls behind, the
+ * process stage runs out of free slots and the capture ring drops frames,
+ * and the render stage skips straight to the newest processed frame.
+ * Sequence numbers only ever increase on the way through.
+ *
+ * The process stage paces the pipeline through the {@link FrameScheduler},
+ * taking the freshest capture each time, and the render stage draws each
+ * frame as soon as it arrives, so a frame's age on screen is only its
+ * processing and render time.
+ *
+ * With threading disabled every take waits for the scheduler and then
+ * processes one frame inline instead.
+ *
+ * Instead of a single source and processor, the process stage can run a
+ * {@link TiledCompositor} that captures and processes several sources into
+ * one frame.
+ *
+ * Settings changed while running reach the process stage as a
+ * {@link PipelineConfig} snapshot, taken over before each frame when it
+ * is new.
+ */
+public class FramePipeline {
+    private static final Logger logger = LoggerFactory.getLogger(FramePipeline.class);
+    
+    private static final long PARK_NANOS = 200_000L;
+    private static final long IDLE_SLEEP_MS = 10;
+    
+    private final FrameSource source;
+    private final ImageProcessor processor;
+    private final TiledCompositor compositor;
+    private final boolean threaded;
+    private final FrameScheduler scheduler;
+    private final ProcessedFrame[] slots;
+    private final SpscQueue<ProcessedFrame> ready;
+    private final SpscQueue<ProcessedFrame> free;
+    private Thread processThread;
+    private StageMetrics metrics = StageMetrics.disabled();
+    private LiveConfig config;
+    private volatile boolean running = false;
+    
+    // Process-stage state; numbering for sources that do not number frames themselves
+    private long nextSequence = 0;
+    private PipelineConfig appliedConfig;
+    
+    // Render-stage state, volatile so other threads can read the counters
+    private volatile long renderedFrames = 0;
+    private volatile long skippedFrames = 0;
+    private volatile long lastLatencyNanos = 0;
+    
+    /**
+     * @param depth processed frames that may wait for the render stage
+     */
+    public FramePipeline(FrameSource source, ImageProcessor processor, int depth,
+                         boolean threaded, FrameScheduler scheduler) {
+        this(source, processor, null, depth, threaded, scheduler);
+    }
+    
+    /**
+     * Pipeline whose process stage composites several sources into each frame
+     */
+    public FramePipeline(TiledCompositor compositor, int depth, boolean threaded, FrameScheduler scheduler) {
+        this(null, null, compositor, depth, threaded, scheduler);
+    }
+    
+    private FramePipeline(FrameSource source, ImageProcessor processor, TiledCompositor compositor,
+                          int depth, boolean threaded, FrameScheduler scheduler) {
+        this.source = source;
+        this.processor = processor;
+        this.compositor = compositor;
+        this.threaded = threaded;
+        this.scheduler = scheduler;
+        
+        // One slot being processed and one being rendered on top of the queued ones
+        int slotCount = threaded ? Math.max(1, depth) + 2 : 1;
+        this.slots = new ProcessedFrame[slotCount];
+        this.ready = new SpscQueue<>(slotCount);
+        this.free = new SpscQueue<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new ProcessedFrame();
+            free.offer(slots[i]);
+        }
+    }
+    
+    /**
+     * Record grab (for sources without their own capture thread) and process times
+     */
+    public void setMetrics(StageMetrics metrics) {
+        this.metrics = metrics != null ? metrics : StageMetrics.disabled();
+    }
+    
+    /**
+     * Apply the current settings snapshot to the processor before each frame.
+     * Call before {@link #start}.
+     */
+    public void followConfig(LiveConfig config) {
+        this.config = config;
+    }
+    
+    /**
+     * Start the process stage thread when running threaded
+     */
+    public void start() {
+        running = true;
+        if (!threaded) {
+            return;
+        }
+        processThread = new Thread(this::processLoop, "Frame-Process");
+        processThread.setDaemon(true);
+        processThread.start();
+        logger.info("Frame pipeline started with {} slots", slots.length);
+    }
+    
+    private void processLoop() {
+        ProcessedFrame slot = null;
+        while (running) {
+            try {
+                if (slot == null) {
+                    slot = free.poll();
+                    if (slot == null) {
+                        // Render stage is behind; the capture ring drops frames meanwhile
+                        LockSupport.parkNanos(PARK_NANOS);
+                        continue;
+                    }
+                }
+                scheduler.awaitNextFrame();
+                if (processInto(slot)) {
+                    ready.offer(slot);
+                    slot = null;
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                logger.error("Error in process thread", e);
+            }
+        }
+        logger.debug("Process thread stopped");
+    }
+    
+    /**
+     * Capture and process one frame into the slot. Returns false if the
+     * source had nothing new.
+     */
+    private boolean processInto(ProcessedFrame slot) throws InterruptedException {
+        if (config != null) {
+            // One volatile read per frame; the snapshot holds for the whole frame
+            PipelineConfig current = config.get();
+            if (current != appliedConfig) {
+                appliedConfig = current;
+                if (compositor != null) {
+                    compositor.applyConfig(current);
+                } else {
+                    processor.applyConfig(current);
+                }
+            }
+        }
+        if (compositor != null) {
+            return composeInto(slot);
+        }
+        
+        // The Mat belongs to the source and is never released here
+        long grabStart = System.nanoTime();
+        Mat frame = source.captureFrame();
+        boolean asyncSource = source instanceof AsyncFrameSource;
+        if (frame == null || frame.empty()) {
+            if (threaded && !asyncSource) {
+                Thread.sleep(IDLE_SLEEP_MS);
+            }
+            return false;
+        }
+        
+        long startNanos = System.nanoTime();
+        long sequence;
+        long captureNanos;
+        if (asyncSource) {
+            AsyncFrameSource async = (AsyncFrameSource) source;
+            sequence = async.getLastSequence();
+            captureNanos = async.getLastCaptureNanos();
+        } else {
+            sequence = nextSequence++;
+            captureNanos = startNanos;
+            // An async source records its own grabs on the capture thread
+            metrics.record(StageMetrics.Stage.GRAB, startNanos - grabStart);
+        }
+        
+        GrayFrame cells = processor.processFrame(frame);
+        if (cells == null) {
+            return false;
+        }
+        long processedNanos = System.nanoTime();
+        metrics.record(StageMetrics.Stage.PROCESS, processedNanos - startNanos);
+        slot.fill(cells, sequence, captureNanos, startNanos, processedNanos, appliedConfig);
+        return true;
+    }
+    
+    /**
+     * Capture and composite all tile sources into the slot. Returns false if
+     * none of them had anything new; each waits at most its frame timeout.
+     */
+    private boolean composeInto(ProcessedFrame slot) {
+        long startNanos = System.nanoTime();
+        GrayFrame cells = compositor.compose();
+        if (cells == null) {
+            return false;
+        }
+        long processedNanos = System.nanoTime();
+        metrics.record(StageMetrics.Stage.PROCESS, processedNanos - startNanos);
+        slot.fill(cells, nextSequence++, compositor.getLastCaptureNanos(), startNanos, processedNanos,
+                  appliedConfig);
+        return true;
+    }
+    
+    /**
+     * Newest processed frame, waiting up to one frame interval for one.
+     * Older frames still queued are skipped. Render thread only; hand the
+     * frame back with {@link #release} once it has been rendered.
+     */
+    public ProcessedFrame takeLatest() throws InterruptedException {
+        if (!threaded) {
+            scheduler.awaitNextFrame();
+            ProcessedFrame slot = slots[0];
+            return processInto(slot) ? slot : null;
+        }
+        
+        long deadline = System.nanoTime() + scheduler.getFrameIntervalNanos();
+        ProcessedFrame latest = ready.poll();
+        while (latest == null) {
+            if (!running || System.nanoTime() - deadline >= 0) {
+                return null;
+            }
+            LockSupport.parkNanos(PARK_NANOS);
+            latest = ready.poll();
+        }
+        
+        ProcessedFrame newer;
+        while ((newer = ready.poll()) != null) {
+            free.offer(latest);
+            skippedFrames++;
+            latest = newer;
+        }
+        return latest;
+    }
+    
+    /**
+     * Return a rendered frame to the process stage and record its capture-to-display latency
+     */
+    public void release(ProcessedFrame frame) {
+        lastLatencyNanos = System.nanoTime() - frame.getCaptureNanos();
+        renderedFrames++;
+        if (threaded) {
+            free.offer(frame);
+        }
+    }
+    
+    /**
+     * Stop the process stage and wait for it to finish
+     */
+    public void stop() {
+        running = false;
+        if (processThread != null) {
+            try {
+                processThread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            processThread = null;
+        }
+    }
+    
+    public boolean isThreaded() {
+        return threaded;
+    }
+    
+    public long getRenderedFrames() {
+        return renderedFrames;
+    }
+    
+    /**
+     * Processed frames the render stage skipped because a newer one was ready
+     */
+    public long getSkippedFrames() {
+        return skippedFrames;
+    }
+    
+    /**
+     * Capture-to-display time of the last released frame
+     */
+    public long getLastLatencyNanos() {
+        return lastLatencyNanos;
+    }
+}
@@ -0,0 +1,163 @@
+package com.asciiart.pipeline;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Paces frames at a target rate using absolute System.nanoTime() deadlines
+ * and trades detail for a stable rate under load.
+ *
+ * Load is measured once per second of frames as the mean busy time of the
+ * slowest stage divided by the frame budget. Sustained overload raises the
+ * degrade level by one step; sustained headroom lowers it again. Recovery
+ * needs more consecutive windows than degradation so the level does not
+ * flap. What each level means is up to the level listener.
+ */
+public class FrameScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(FrameScheduler.class);
+    
+    /** Mean load above which a window counts as overloaded */
+    static final double DEGRADE_LOAD = 0.9;
+    /** Mean load below which a window leaves room for the next level up */
+    static final double RECOVER_LOAD = 0.45;
+    static final int DEGRADE_AFTER_WINDOWS = 2;
+    static final int RECOVER_AFTER_WINDOWS = 5;
+    
+    private final long frameIntervalNanos;
+    private final int framesPerWindow;
+    private final int maxLevel;
+    private final LongSupplier clock;
+    private final LongConsumer parker;
+    private IntConsumer levelListener = level -> { };
+    
+    // Pacing state, owned by the thread that calls awaitNextFrame
+    private long nextFrameNanos;
+    private boolean started = false;
+    
+    // Load state, owned by the thread that calls recordFrame
+    private long windowBusyNanos = 0;
+    private int windowFrames = 0;
+    private int overloadedWindows = 0;
+    private int idleWindows = 0;
+    private volatile int level = 0;
+    private volatile double lastLoad = 0.0;
+    
+    /**
+     * @param maxLevel highest degrade level; 0 disables adaptation
+     */
+    public FrameScheduler(double targetFps, int maxLevel) {
+        this(targetFps, maxLevel, System::nanoTime, LockSupport::parkNanos);
+    }
+    
+    /**
+     * Scheduler reading time from the clock and waiting with the parker,
+     * e.g. a fake clock in tests
+     */
+    FrameScheduler(double targetFps, int maxLevel, LongSupplier clock, LongConsumer parker) {
+        this.clock = clock;
+        this.parker = parker;
+        double fps = targetFps > 0 ? targetFps : 15.0;
+        this.frameIntervalNanos = Math.round(1_000_000_000L / fps);
+        this.framesPerWindow = Math.max(1, (int) Math.round(fps));
+        this.maxLevel = Math.max(0, maxLevel);
+    }
+    
+    /**
+     * Called with the new level whenever it changes, on the thread calling {@link #recordFrame}
+     */
+    public void setLevelListener(IntConsumer levelListener) {
+        this.levelListener = levelListener;
+    }
+    
+    /**
+     * Block until the next frame is due. Deadlines advance by exactly one
+     * interval, so sleep overshoot does not accumulate; after an overrun the
+     * schedule restarts from now instead of bursting to catch up.
+     */
+    public void awaitNextFrame() throws InterruptedException {
+        long now = clock.getAsLong();
+        if (!started) {
+            nextFrameNanos = now;
+            started = true;
+        }
+        
+        long wait;
+        while ((wait = nextFrameNanos - now) > 0) {
+            parker.accept(wait);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            now = clock.getAsLong();
+        }
+        
+        nextFrameNanos += frameIntervalNanos;
+        if (nextFrameNanos - now < 0) {
+            nextFrameNanos = now + frameIntervalNanos;
+        }
+    }
+    
+    /**
+     * Account for one displayed frame; busyNanos is the time of the slowest
+     * stage (or of all stages when they run in series)
+     */
+    public void recordFrame(long busyNanos) {
+        windowBusyNanos += busyNanos;
+        if (++windowFrames < framesPerWindow) {
+            return;
+        }
+        
+        double load = (double) windowBusyNanos / ((double) windowFrames * frameIntervalNanos);
+        lastLoad = load;
+        windowBusyNanos = 0;
+        windowFrames = 0;
+        
+        if (load > DEGRADE_LOAD) {
+            overloadedWindows++;
+            idleWindows = 0;
+        } else if (load < RECOVER_LOAD) {
+            idleWindows++;
+            overloadedWindows = 0;
+        } else {
+            overloadedWindows = 0;
+            idleWindows = 0;
+        }
+        
+        if (overloadedWindows >= DEGRADE_AFTER_WINDOWS && level < maxLevel) {
+            changeLevel(level + 1, load);
+        } else if (idleWindows >= RECOVER_AFTER_WINDOWS && level > 0) {
+            changeLevel(level - 1, load);
+        }
+    }
+    
+    private void changeLevel(int newLevel, double load) {
+        logger.info("Frame load {}%, {} to quality level {}", Math.round(load * 100),
+                   newLevel > level ? "degrading" : "recovering", newLevel);
+        level = newLevel;
+        overloadedWindows = 0;
+        idleWindows = 0;
+        levelListener.accept(newLevel);
+    }
+    
+    public long getFrameIntervalNanos() {
+        return frameIntervalNanos;
+    }
+    
+    /**
+     * Current degrade level; 0 is full quality
+     */
+    public int getLevel() {
+        return level;
+    }
+    
+    /**
+     * Mean load of the last complete window, 1.0 being the full frame budget
+     */
+    public double getLastLoad() {
+        return lastLoad;
+    }
+}
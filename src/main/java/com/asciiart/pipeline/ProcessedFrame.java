@@ -0,0 +1,67 @@
+package com.asciiart.pipeline;
+
+import com.asciiart.processor.GrayFrame;
+import com.asciiart.processor.PipelineConfig;
+
+/**
+ * Reusable hand-off slot between the process and render stages: the cells
+ * of one processed frame plus where it came from and when
+ */
+public class ProcessedFrame {
+    private final GrayFrame cells = new GrayFrame();
+    private long sequence = -1;
+    private long captureNanos;
+    private long processingNanos;
+    private long processedNanos;
+    private PipelineConfig config;
+    
+    void fill(GrayFrame source, long sequence, long captureNanos, long startNanos, long processedNanos,
+              PipelineConfig config) {
+        cells.copyFrom(source);
+        this.sequence = sequence;
+        this.captureNanos = captureNanos;
+        this.processingNanos = processedNanos - startNanos;
+        this.processedNanos = processedNanos;
+        this.config = config;
+    }
+    
+    public GrayFrame getCells() {
+        return cells;
+    }
+    
+    /**
+     * Capture sequence number; increases strictly from frame to frame
+     */
+    public long getSequence() {
+        return sequence;
+    }
+    
+    /**
+     * System.nanoTime() at which the source frame was captured
+     */
+    public long getCaptureNanos() {
+        return captureNanos;
+    }
+    
+    /**
+     * Time the process stage spent on this frame
+     */
+    public long getProcessingNanos() {
+        return processingNanos;
+    }
+    
+    /**
+     * System.nanoTime() at which processing finished
+     */
+    public long getProcessedNanos() {
+        return processedNanos;
+    }
+    
+    /**
+     * Settings snapshot the frame was processed with, or null when the
+     * pipeline does not follow a {@link com.asciiart.utils.LiveConfig}
+     */
+    public PipelineConfig getConfig() {
+        return config;
+    }
+}
@@ -0,0 +1,195 @@
+package com.asciiart.pipeline;
+
+import com.asciiart.processor.ASCIIConverter;
+import com.asciiart.processor.GrayFrame;
+
+import java.util.Arrays;
+
+/**
+ * Decides whether a processed frame differs enough from the last displayed
+ * one to be worth converting and writing out.
+ *
+ * Cells are summed over blocks of {@link #BLOCK_COLUMNS} x {@link #BLOCK_ROWS}
+ * into a small signature. A frame counts as changed when any block's mean
+ * gray value moved by more than the threshold since the last displayed
+ * frame, so sensor noise averages out while a single moving object still
+ * gets through. Colored frames add a sum per color channel, so a change of
+ * hue alone is shown, and edged frames add one per edge direction, each
+ * edge cell counting as 255 in its direction. A new glyph table, a new
+ * size, edges or colors being turned on or off, or the refresh interval
+ * running out always count as a change.
+ *
+ * Comparison is against the last displayed frame rather than the previous
+ * one, so slow drift adds up until it is shown. Render thread only, apart
+ * from the counter.
+ */
+public class SceneChangeDetector {
+    static final int BLOCK_COLUMNS = 4;
+    static final int BLOCK_ROWS = 2;
+    private static final int COLOR_PLANES = 3;
+    private static final int EDGE_PLANES = 4;
+    
+    private final boolean enabled;
+    private final int threshold;
+    private final long refreshNanos;
+    
+    // Block sums of the frame being checked and of the last displayed frame,
+    // one run of blocks per plane: gray, then red, green, blue, then edge directions
+    private int[] signature = new int[0];
+    private int[] shownSignature = new int[0];
+    private int shownWidth = -1;
+    private int shownHeight = -1;
+    private boolean shownEdged;
+    private boolean shownColored;
+    private ASCIIConverter.GlyphTable shownTable;
+    private long shownNanos;
+    private boolean invalid = true;
+    private volatile long unchangedFrames = 0;
+    
+    /**
+     * @param threshold mean gray change (0-255) a block needs before the frame counts as changed
+     * @param refreshMillis longest time between displayed frames; 0 or less never forces one
+     */
+    public SceneChangeDetector(boolean enabled, int threshold, long refreshMillis) {
+        this.enabled = enabled;
+        this.threshold = Math.max(0, Math.min(255, threshold));
+        this.refreshNanos = refreshMillis > 0 ? refreshMillis * 1_000_000L : Long.MAX_VALUE;
+    }
+    
+    /**
+     * Whether the frame can be skipped. A frame that is not skipped becomes
+     * the new reference, so only call this for frames that will be displayed
+     * when it returns false.
+     *
+     * @param glyphTable table the frame would be drawn with; compared by identity
+     */
+    public boolean isUnchanged(GrayFrame frame, ASCIIConverter.GlyphTable glyphTable, long nowNanos) {
+        if (!enabled) {
+            return false;
+        }
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int blockColumns = (width + BLOCK_COLUMNS - 1) / BLOCK_COLUMNS;
+        int blocks = blockColumns * ((height + BLOCK_ROWS - 1) / BLOCK_ROWS);
+        int planes = 1 + (frame.isColored() ? COLOR_PLANES : 0) + (frame.hasEdges() ? EDGE_PLANES : 0);
+        if (signature.length < blocks * planes) {
+            signature = new int[blocks * planes];
+            shownSignature = new int[blocks * planes];
+            invalid = true;
+        }
+        computeSignature(frame, blockColumns, blocks, planes);
+        
+        boolean forced = invalid
+                         || width != shownWidth || height != shownHeight
+                         || frame.hasEdges() != shownEdged || frame.isColored() != shownColored
+                         || glyphTable != shownTable
+                         || nowNanos - shownNanos >= refreshNanos;
+        if (!forced && !changed(width, height, blockColumns, blocks, planes)) {
+            unchangedFrames++;
+            return true;
+        }
+        
+        int[] swap = shownSignature;
+        shownSignature = signature;
+        signature = swap;
+        shownWidth = width;
+        shownHeight = height;
+        shownEdged = frame.hasEdges();
+        shownColored = frame.isColored();
+        shownTable = glyphTable;
+        shownNanos = nowNanos;
+        invalid = false;
+        return false;
+    }
+    
+    private void computeSignature(GrayFrame frame, int blockColumns, int blocks, int planes) {
+        byte[] cells = frame.getData();
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int stride = frame.getStride();
+        int[] sums = signature;
+        Arrays.fill(sums, 0, blocks * planes, 0);
+        
+        for (int y = 0; y < height; y++) {
+            int row = y * stride;
+            int block = (y / BLOCK_ROWS) * blockColumns;
+            for (int x = 0; x < width; x++) {
+                sums[block + x / BLOCK_COLUMNS] += cells[row + x] & 0xFF;
+            }
+        }
+        
+        int plane = 1;
+        if (frame.isColored()) {
+            int[] colors = frame.getColors();
+            int red = blocks;
+            int green = 2 * blocks;
+            int blue = 3 * blocks;
+            for (int y = 0; y < height; y++) {
+                int row = y * stride;
+                int blockRow = (y / BLOCK_ROWS) * blockColumns;
+                for (int x = 0; x < width; x++) {
+                    int block = blockRow + x / BLOCK_COLUMNS;
+                    int rgb = colors[row + x];
+                    sums[red + block] += (rgb >> 16) & 0xFF;
+                    sums[green + block] += (rgb >> 8) & 0xFF;
+                    sums[blue + block] += rgb & 0xFF;
+                }
+            }
+            plane += COLOR_PLANES;
+        }
+        
+        if (frame.hasEdges()) {
+            byte[] edges = frame.getEdges();
+            // Directions start at 1, so direction d sums into plane + d - 1
+            int base = (plane - 1) * blocks;
+            for (int y = 0; y < height; y++) {
+                int row = y * stride;
+                int blockRow = (y / BLOCK_ROWS) * blockColumns;
+                for (int x = 0; x < width; x++) {
+                    int direction = edges[row + x];
+                    if (direction != GrayFrame.EDGE_NONE) {
+                        sums[base + direction * blocks + blockRow + x / BLOCK_COLUMNS] += 255;
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Whether any block's mean moved by more than the threshold in any plane;
+     * partial blocks along the right and bottom edges are compared by their
+     * own cell count
+     */
+    private boolean changed(int width, int height, int blockColumns, int blocks, int planes) {
+        for (int block = 0; block < blocks; block++) {
+            int column = block % blockColumns;
+            int row = block / blockColumns;
+            int limit = threshold * Math.min(BLOCK_COLUMNS, width - column * BLOCK_COLUMNS)
+                        * Math.min(BLOCK_ROWS, height - row * BLOCK_ROWS);
+            for (int i = block; i < blocks * planes; i += blocks) {
+                if (Math.abs(signature[i] - shownSignature[i]) > limit) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Let the next frame through regardless, e.g. when the status message changed
+     */
+    public void invalidate() {
+        invalid = true;
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Frames skipped because nothing meaningful changed
+     */
+    public long getUnchangedFrames() {
+        return unchangedFrames;
+    }
+}
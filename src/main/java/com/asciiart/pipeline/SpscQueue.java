@@ -0,0 +1,63 @@
+package com.asciiart.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free queue for exactly one producer thread and one consumer
+ * thread. Neither side ever blocks: offer fails when the queue is full and
+ * poll returns null when it is empty, so each stage decides for itself
+ * whether to wait or drop.
+ */
+public class SpscQueue<T> {
+    private final Object[] items;
+    
+    // Next index to read (consumer) and to write (producer); they only grow
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    
+    public SpscQueue(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be positive: " + capacity);
+        }
+        this.items = new Object[capacity];
+    }
+    
+    /**
+     * Append an item; returns false if the queue is full. Producer thread only.
+     */
+    public boolean offer(T item) {
+        long t = tail.get();
+        if (t - head.get() >= items.length) {
+            return false;
+        }
+        items[(int) (t % items.length)] = item;
+        // Publishes the item to the consumer
+        tail.set(t + 1);
+        return true;
+    }
+    
+    /**
+     * Remove the oldest item, or return null if there is none. Consumer thread only.
+     */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long h = head.get();
+        if (h >= tail.get()) {
+            return null;
+        }
+        int index = (int) (h % items.length);
+        T item = (T) items[index];
+        items[index] = null;
+        // Hands the slot back to the producer
+        head.set(h + 1);
+        return item;
+    }
+    
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+    
+    public int capacity() {
+        return items.length;
+    }
+}
@@ -0,0 +1,62 @@
+package com.asciiart.pipeline;
+
+/**
+ * Places the tiles of a composited frame. Rectangles are {x, y, width,
+ * height} in cells; tiles are drawn in order, so later ones cover earlier
+ * ones where they overlap.
+ */
+public final class TileLayout {
+    
+    public enum Mode {
+        /** Equal tiles, row by row */
+        GRID,
+        /** First source fills the frame, the others are insets along the bottom right */
+        PIP;
+        
+        public static Mode parse(String value) {
+            for (Mode mode : values()) {
+                if (mode.name().equalsIgnoreCase(value)) {
+                    return mode;
+                }
+            }
+            return GRID;
+        }
+    }
+    
+    // Insets take this fraction of the frame per side
+    private static final int INSET_DIVISOR = 3;
+    
+    private TileLayout() {
+    }
+    
+    /**
+     * Rectangles for the given number of tiles in a width x height frame
+     */
+    public static int[][] compute(Mode mode, int tiles, int width, int height) {
+        int[][] rects = new int[tiles][];
+        if (mode == Mode.PIP && tiles > 1) {
+            rects[0] = new int[]{0, 0, width, height};
+            int insetWidth = Math.max(1, width / INSET_DIVISOR);
+            int insetHeight = Math.max(1, height / INSET_DIVISOR);
+            int perRow = Math.max(1, width / insetWidth);
+            for (int i = 1; i < tiles; i++) {
+                int column = (i - 1) % perRow;
+                int row = (i - 1) / perRow;
+                rects[i] = new int[]{Math.max(0, width - (column + 1) * insetWidth),
+                                     Math.max(0, height - (row + 1) * insetHeight), insetWidth, insetHeight};
+            }
+            return rects;
+        }
+        
+        int columns = (int) Math.ceil(Math.sqrt(tiles));
+        int rows = (tiles + columns - 1) / Math.max(1, columns);
+        for (int i = 0; i < tiles; i++) {
+            int column = i % columns;
+            int row = i / columns;
+            int x = column * width / columns;
+            int y = row * height / rows;
+            rects[i] = new int[]{x, y, (column + 1) * width / columns - x, (row + 1) * height / rows - y};
+        }
+        return rects;
+    }
+}
@@ -0,0 +1,359 @@
+package com.asciiart.pipeline;
+
+import com.asciiart.camera.AsyncFrameSource;
+import com.asciiart.camera.FrameSource;
+import com.asciiart.metrics.StageMetrics;
+import com.asciiart.processor.ASCIIConverter;
+import com.asciiart.processor.GrayFrame;
+import com.asciiart.processor.ImageProcessor;
+import com.asciiart.processor.PipelineConfig;
+import com.asciiart.processor.RowBands;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.bytedeco.opencv.global.opencv_imgproc.INTER_NEAREST;
+import static org.bytedeco.opencv.global.opencv_imgproc.resize;
+
+/**
+ * Composites several frame sources into one frame of cells, laid out as a
+ * grid or picture-in-picture ({@link TileLayout}).
+ *
+ * Every source keeps its own capture thread when wrapped in an
+ * {@link AsyncFrameSource}, and every tile has its own processor targeting
+ * the tile's size, so a tile costs what its cells cost rather than what a
+ * full frame would. Sources much larger than their tile are first sampled
+ * down to a few pixels per cell with nearest-neighbour interpolation,
+ * which only reads the pixels it keeps, so the total work follows the
+ * output cells and not the number of sources times their capture size.
+ * Sources are grabbed one after another on the process thread, which with
+ * capture threads only takes a ready frame, and the tiles are then
+ * processed in parallel on the row band pool. Grabs can block on a camera
+ * or decoder, so they never run on the shared pool.
+ *
+ * Tiles follow the main processor's adjustments, edge and color settings
+ * and its target size; dithering runs once over the finished composite.
+ * A source without a new frame keeps showing its last one.
+ */
+public class TiledCompositor {
+    private static final Logger logger = LoggerFactory.getLogger(TiledCompositor.class);
+    
+    /** Default samples per cell side kept when sampling a source down */
+    public static final int DEFAULT_SAMPLES_PER_CELL = 4;
+    
+    private static final class Tile {
+        final FrameSource source;
+        final ImageProcessor processor = new ImageProcessor();
+        final Mat sampled = new Mat();
+        Size sampleSize;
+        // Grabbed for this composite, or null; owned by the source
+        Mat frame;
+        long frameNanos;
+        // Last processed cells, owned by the tile's processor
+        GrayFrame cells;
+        boolean updated;
+        long captureNanos;
+        int x;
+        int y;
+        int width;
+        int height;
+        
+        Tile(FrameSource source) {
+            this.source = source;
+        }
+    }
+    
+    private final Tile[] tiles;
+    private final ImageProcessor template;
+    private final RowBands rowBands;
+    private final int samplesPerCell;
+    private final RowBands.BandTask tileTask = this::processTiles;
+    private final GrayFrame output = new GrayFrame();
+    private volatile TileLayout.Mode mode;
+    private ASCIIConverter ditherer;
+    private StageMetrics metrics = StageMetrics.disabled();
+    
+    // Layout the tile rectangles were computed for
+    private TileLayout.Mode layoutMode;
+    private int layoutWidth = -1;
+    private int layoutHeight = -1;
+    private long lastCaptureNanos;
+    
+    /**
+     * @param template main processor whose settings and target size the tiles follow
+     * @param samplesPerCell pixels per cell side kept when sampling sources down; 0 reads every pixel
+     */
+    public TiledCompositor(List<FrameSource> sources, TileLayout.Mode mode, int samplesPerCell,
+                           ImageProcessor template, RowBands rowBands) {
+        this.tiles = new Tile[sources.size()];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = new Tile(sources.get(i));
+        }
+        this.mode = mode;
+        this.samplesPerCell = Math.max(0, samplesPerCell);
+        this.template = template;
+        this.rowBands = rowBands != null ? rowBands : RowBands.sequential();
+    }
+    
+    /**
+     * Dither every composite with the converter's current dither mode
+     */
+    public void ditherWith(ASCIIConverter converter) {
+        this.ditherer = converter;
+    }
+    
+    /**
+     * Take over a settings snapshot on the main processor the tiles follow.
+     * Process stage only, between frames.
+     */
+    public void applyConfig(PipelineConfig config) {
+        template.applyConfig(config);
+    }
+    
+    /**
+     * Record dithering, and grabs for sources with their own capture thread
+     */
+    public void setMetrics(StageMetrics metrics) {
+        this.metrics = metrics != null ? metrics : StageMetrics.disabled();
+        for (Tile tile : tiles) {
+            if (tile.source instanceof AsyncFrameSource) {
+                ((AsyncFrameSource) tile.source).setMetrics(this.metrics);
+            }
+        }
+    }
+    
+    /**
+     * Open every source. Returns false, with all of them released again, if any fails.
+     */
+    public boolean initialize() {
+        for (int i = 0; i < tiles.length; i++) {
+            if (!tiles[i].source.initialize()) {
+                logger.error("Failed to initialize tile source {}: {}", i, tiles[i].source.getName());
+                for (int j = 0; j < i; j++) {
+                    tiles[j].source.release();
+                }
+                return false;
+            }
+        }
+        logger.info("Compositing {} sources as {}", tiles.length, mode);
+        return tiles.length > 0;
+    }
+    
+    /**
+     * Capture and process every tile, then composite them. Returns null if
+     * no source had a new frame; otherwise the frame is only valid until
+     * the next call. Process stage only.
+     */
+    public GrayFrame compose() {
+        int[] size = template.targetSize();
+        if (size[0] != layoutWidth || size[1] != layoutHeight || mode != layoutMode) {
+            layout(size[0], size[1]);
+        }
+        for (Tile tile : tiles) {
+            tile.processor.copySettingsFrom(template);
+            grab(tile);
+        }
+        rowBands.run(tiles.length, rowBands.isParallel() ? tiles.length : 1, tileTask);
+        
+        boolean updated = false;
+        for (Tile tile : tiles) {
+            if (tile.updated) {
+                updated = true;
+                lastCaptureNanos = Math.max(lastCaptureNanos, tile.captureNanos);
+            }
+        }
+        if (!updated) {
+            return null;
+        }
+        
+        output.resize(layoutWidth, layoutHeight);
+        output.setColored(template.isColorSampling());
+        output.setEdged(template.isEdgeDetection());
+        for (Tile tile : tiles) {
+            blit(tile);
+        }
+        
+        ASCIIConverter converter = ditherer;
+        if (converter != null && converter.getDither() != ASCIIConverter.Dither.NONE) {
+            long start = System.nanoTime();
+            converter.dither(output);
+            metrics.recordSince(StageMetrics.Stage.DITHER, start);
+        }
+        return output;
+    }
+    
+    private void layout(int width, int height) {
+        TileLayout.Mode current = mode;
+        int[][] rects = TileLayout.compute(current, tiles.length, width, height);
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i].x = rects[i][0];
+            tiles[i].y = rects[i][1];
+            tiles[i].width = rects[i][2];
+            tiles[i].height = rects[i][3];
+            tiles[i].processor.setTargetDimensions(rects[i][2], rects[i][3]);
+        }
+        layoutMode = current;
+        layoutWidth = width;
+        layoutHeight = height;
+    }
+    
+    private void processTiles(int band, int start, int end) {
+        for (int i = start; i < end; i++) {
+            processTile(tiles[i]);
+        }
+    }
+    
+    /**
+     * Take the tile source's next frame, if it has one
+     */
+    private void grab(Tile tile) {
+        tile.updated = false;
+        Mat frame = tile.source.captureFrame();
+        if (frame == null || frame.empty()) {
+            tile.frame = null;
+            return;
+        }
+        tile.frame = frame;
+        tile.frameNanos = tile.source instanceof AsyncFrameSource
+            ? ((AsyncFrameSource) tile.source).getLastCaptureNanos() : System.nanoTime();
+    }
+    
+    /**
+     * Process the tile's grabbed frame at the tile's size
+     */
+    private void processTile(Tile tile) {
+        Mat frame = tile.frame;
+        if (frame == null) {
+            return;
+        }
+        tile.frame = null;
+        
+        GrayFrame cells = tile.processor.processFrame(sample(tile, frame));
+        if (cells != null) {
+            tile.cells = cells;
+            tile.captureNanos = tile.frameNanos;
+            tile.updated = true;
+        }
+    }
+    
+    /**
+     * The frame itself, or a nearest-neighbour sample of it with at most
+     * samplesPerCell pixels per cell side
+     */
+    private Mat sample(Tile tile, Mat frame) {
+        if (samplesPerCell == 0) {
+            return frame;
+        }
+        int[] cells = tile.processor.terminalSizeFor(frame.cols(), frame.rows());
+        int cols = Math.min(frame.cols(), Math.max(1, cells[0]) * samplesPerCell);
+        int rows = Math.min(frame.rows(), Math.max(1, cells[1]) * samplesPerCell);
+        if (cols == frame.cols() && rows == frame.rows()) {
+            return frame;
+        }
+        if (tile.sampleSize == null || tile.sampleSize.width() != cols || tile.sampleSize.height() != rows) {
+            if (tile.sampleSize != null) {
+                tile.sampleSize.close();
+            }
+            tile.sampleSize = new Size(cols, rows);
+        }
+        resize(frame, tile.sampled, tile.sampleSize, 0, 0, INTER_NEAREST);
+        return tile.sampled;
+    }
+    
+    /**
+     * Clear the tile's rectangle and copy its cells into the middle of it,
+     * cropping cells that do not fit
+     */
+    private void blit(Tile tile) {
+        byte[] data = output.getData();
+        int[] colors = output.getColors();
+        byte[] edges = output.getEdges();
+        int stride = output.getStride();
+        boolean colored = output.isColored();
+        boolean edged = output.hasEdges();
+        for (int y = tile.y; y < tile.y + tile.height; y++) {
+            int from = y * stride + tile.x;
+            Arrays.fill(data, from, from + tile.width, (byte) 0);
+            if (colored) {
+                Arrays.fill(colors, from, from + tile.width, 0);
+            }
+            if (edged) {
+                Arrays.fill(edges, from, from + tile.width, (byte) 0);
+            }
+        }
+        
+        GrayFrame cells = tile.cells;
+        if (cells == null) {
+            return;
+        }
+        int copyWidth = Math.min(cells.getWidth(), tile.width);
+        int copyHeight = Math.min(cells.getHeight(), tile.height);
+        int sourceX = (cells.getWidth() - copyWidth) / 2;
+        int sourceY = (cells.getHeight() - copyHeight) / 2;
+        int targetX = tile.x + (tile.width - copyWidth) / 2;
+        int targetY = tile.y + (tile.height - copyHeight) / 2;
+        boolean copyColors = colored && cells.isColored();
+        boolean copyEdges = edged && cells.hasEdges();
+        for (int row = 0; row < copyHeight; row++) {
+            int from = (sourceY + row) * cells.getStride() + sourceX;
+            int to = (targetY + row) * stride + targetX;
+            System.arraycopy(cells.getData(), from, data, to, copyWidth);
+            if (copyColors) {
+                System.arraycopy(cells.getColors(), from, colors, to, copyWidth);
+            }
+            if (copyEdges) {
+                System.arraycopy(cells.getEdges(), from, edges, to, copyWidth);
+            }
+        }
+    }
+    
+    public void setMode(TileLayout.Mode mode) {
+        this.mode = mode;
+    }
+    
+    public TileLayout.Mode getMode() {
+        return mode;
+    }
+    
+    public int getTileCount() {
+        return tiles.length;
+    }
+    
+    /**
+     * Capture time of the newest source frame in the last composite
+     */
+    public long getLastCaptureNanos() {
+        return lastCaptureNanos;
+    }
+    
+    /**
+     * Frames dropped by all sources' capture rings
+     */
+    public long getDroppedFrames() {
+        long dropped = 0;
+        for (Tile tile : tiles) {
+            if (tile.source instanceof AsyncFrameSource) {
+                dropped += ((AsyncFrameSource) tile.source).getDroppedFrames();
+            }
+        }
+        return dropped;
+    }
+    
+    /**
+     * Release every source and the tiles' native buffers
+     */
+    public void release() {
+        for (Tile tile : tiles) {
+            tile.source.release();
+            tile.processor.release();
+            tile.sampled.close();
+            if (tile.sampleSize != null) {
+                tile.sampleSize.close();
+            }
+        }
+    }
+}
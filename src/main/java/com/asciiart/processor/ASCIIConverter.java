@@ -3,6 +3,10 @@ package com.asciiart.processor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
 /**
  * Converts grayscale values to ASCII characters
  */
@@ -14,8 +18,256 @@ public class ASCIIConverter {
     public static final String EXTENDED_CHARSET = " .'`^\",:;Il!i><~+_-?][}{1)(|/tfjrxnuvczXYUJCLQ0OZmwqpdbkhao*#MW&8%B@$";
     public static final String BLOCK_CHARSET = " ░▒▓█";
     
+    /**
+     * How cells are spread over the charset levels. Dithering trades the
+     * banding of small charsets for a fine pattern that averages out to the
+     * original brightness.
+     */
+    public enum Dither {
+        NONE, BAYER, FLOYD_STEINBERG, ATKINSON;
+        
+        /**
+         * Parse a settings value: none, bayer, floyd-steinberg or atkinson
+         */
+        public static Dither parse(String value) {
+            switch (value.toLowerCase(Locale.ROOT)) {
+                case "bayer":
+                case "ordered":
+                    return BAYER;
+                case "floyd-steinberg":
+                case "floydsteinberg":
+                case "fs":
+                    return FLOYD_STEINBERG;
+                case "atkinson":
+                    return ATKINSON;
+                default:
+                    return NONE;
+            }
+        }
+        
+        public Dither next() {
+            Dither[] modes = values();
+            return modes[(ordinal() + 1) % modes.length];
+        }
+    }
+    
+    // 8x8 Bayer matrix, thresholds 0-63
+    private static final int[] BAYER_8X8 = {
+         0, 32,  8, 40,  2, 34, 10, 42,
+        48, 16, 56, 24, 50, 18, 58, 26,
+        12, 44,  4, 36, 14, 46,  6, 38,
+        60, 28, 52, 20, 62, 30, 54, 22,
+         3, 35, 11, 43,  1, 33,  9, 41,
+        51, 19, 59, 27, 49, 17, 57, 25,
+        15, 47,  7, 39, 13, 45,  5, 37,
+        63, 31, 55, 23, 61, 29, 53, 21
+    };
+    // Error diffusion works in sixteenths of a gray step
+    private static final int ERROR_SHIFT = 4;
+    // Error rows carry two cells of padding on either side
+    private static final int ERROR_PAD = 2;
+    
+    /**
+     * Immutable mapping from a raw gray byte to its glyph, with contrast,
+     * brightness and gamma already folded in. A new table is built whenever
+     * a parameter changes and published with a single volatile write.
+     *
+     * Entries past the 256 gray values hold the edge glyphs, so a cell's
+     * glyph is always found at {@link #codeOf} of its gray value and edge.
+     */
+    public static final class GlyphTable {
+        /** Glyphs for GrayFrame.EDGE_VERTICAL through EDGE_FALLING */
+        public static final String EDGE_GLYPHS = "|/-\\";
+        public static final int CODES = 256 + EDGE_GLYPHS.length();
+        
+        private final String charset;
+        private final char[] chars = new char[CODES];
+        private final byte[] encoded;
+        private final byte[] encodedLength = new byte[CODES];
+        private final int bytesPerGlyph;
+        // Dithering: adjusted value (0-255) per raw gray, and a raw gray showing each level
+        private final int levels;
+        private final int[] adjusted = new int[256];
+        private final byte[] levelGray;
+        
+        private GlyphTable(String charset, double contrast, int brightness, double gamma) {
+            this.charset = charset;
+            char[] charArray = charset.toCharArray();
+            this.levels = charArray.length;
+            this.levelGray = new byte[levels];
+            int[] firstGray = new int[levels];
+            Arrays.fill(firstGray, -1);
+            
+            byte[][] glyphBytes = new byte[charArray.length][];
+            int maxBytes = 1;
+            for (int i = 0; i < charArray.length; i++) {
+                glyphBytes[i] = String.valueOf(charArray[i]).getBytes(StandardCharsets.UTF_8);
+                maxBytes = Math.max(maxBytes, glyphBytes[i].length);
+            }
+            this.bytesPerGlyph = maxBytes;
+            this.encoded = new byte[CODES * maxBytes];
+            
+            for (int gray = 0; gray < 256; gray++) {
+                adjusted[gray] = adjustedValue(gray, contrast, brightness, gamma);
+                int index = (adjusted[gray] * (levels - 1)) / 255;
+                if (firstGray[index] < 0) {
+                    firstGray[index] = gray;
+                }
+                chars[gray] = charArray[index];
+                System.arraycopy(glyphBytes[index], 0, encoded, gray * maxBytes, glyphBytes[index].length);
+                encodedLength[gray] = (byte) glyphBytes[index].length;
+            }
+            for (int edge = 1; edge <= EDGE_GLYPHS.length(); edge++) {
+                int code = codeOf(0, edge);
+                chars[code] = EDGE_GLYPHS.charAt(edge - 1);
+                encoded[code * maxBytes] = (byte) chars[code];
+                encodedLength[code] = 1;
+            }
+            
+            // Levels no raw gray reaches under these adjustments show the nearest reachable one
+            for (int level = 0; level < levels; level++) {
+                int gray = -1;
+                for (int distance = 0; gray < 0; distance++) {
+                    if (level - distance >= 0 && firstGray[level - distance] >= 0) {
+                        gray = firstGray[level - distance];
+                    } else if (level + distance < levels && firstGray[level + distance] >= 0) {
+                        gray = firstGray[level + distance];
+                    }
+                }
+                levelGray[level] = (byte) gray;
+            }
+        }
+        
+        /**
+         * Table for a charset with contrast, brightness and gamma folded in
+         */
+        static GlyphTable of(String charset, double contrast, int brightness, double gamma) {
+            return new GlyphTable(charset, contrast, brightness, gamma);
+        }
+        
+        /**
+         * Table in which raw value i shows glyph i of the given list, e.g. for
+         * cells that already hold glyph indexes as in recordings. Values past
+         * the end of the list show the last glyph.
+         */
+        public static GlyphTable ofGlyphs(String glyphs) {
+            return new GlyphTable(glyphs);
+        }
+        
+        private GlyphTable(String glyphs) {
+            this.charset = glyphs;
+            this.levels = Math.max(1, Math.min(256, glyphs.length()));
+            this.levelGray = new byte[levels];
+            int maxBytes = 1;
+            for (int i = 0; i < levels && i < glyphs.length(); i++) {
+                maxBytes = Math.max(maxBytes, String.valueOf(glyphs.charAt(i)).getBytes(StandardCharsets.UTF_8).length);
+            }
+            this.bytesPerGlyph = maxBytes;
+            this.encoded = new byte[CODES * maxBytes];
+            
+            for (int code = 0; code < CODES; code++) {
+                char glyph;
+                if (code >= 256) {
+                    glyph = EDGE_GLYPHS.charAt(code - 256);
+                } else if (glyphs.isEmpty()) {
+                    glyph = ' ';
+                } else {
+                    glyph = glyphs.charAt(Math.min(code, levels - 1));
+                }
+                byte[] bytes = String.valueOf(glyph).getBytes(StandardCharsets.UTF_8);
+                chars[code] = glyph;
+                System.arraycopy(bytes, 0, encoded, code * maxBytes, bytes.length);
+                encodedLength[code] = (byte) bytes.length;
+            }
+            for (int gray = 0; gray < 256; gray++) {
+                adjusted[gray] = gray;
+            }
+            for (int level = 0; level < levels; level++) {
+                levelGray[level] = (byte) level;
+            }
+        }
+        
+        /**
+         * Table index of a cell: its gray value, or the edge glyph if it has an edge
+         */
+        public static int codeOf(int gray, int edge) {
+            return edge == 0 ? gray : 255 + edge;
+        }
+        
+        /**
+         * Adjust a raw gray value the way Mat.convertTo would, then apply gamma;
+         * the linear charset mapping of the result picks the glyph
+         */
+        private static int adjustedValue(int gray, double contrast, int brightness, double gamma) {
+            int value = (int) Math.round(gray * contrast + brightness);
+            value = Math.max(0, Math.min(255, value));
+            if (gamma != 1.0) {
+                value = (int) Math.round(255.0 * Math.pow(value / 255.0, 1.0 / gamma));
+            }
+            return value;
+        }
+        
+        public String getCharset() {
+            return charset;
+        }
+        
+        /**
+         * Glyph per raw gray value, then the edge glyphs; shared, must not be modified
+         */
+        public char[] getChars() {
+            return chars;
+        }
+        
+        /**
+         * UTF-8 bytes per raw gray value, {@link #getBytesPerGlyph()} bytes apart;
+         * shared, must not be modified
+         */
+        public byte[] getEncoded() {
+            return encoded;
+        }
+        
+        /**
+         * Number of valid UTF-8 bytes for each raw gray value
+         */
+        public byte[] getEncodedLength() {
+            return encodedLength;
+        }
+        
+        public int getBytesPerGlyph() {
+            return bytesPerGlyph;
+        }
+        
+        /**
+         * Number of brightness glyphs in the charset
+         */
+        public int getLevels() {
+            return levels;
+        }
+    }
+    
+    private volatile GlyphTable glyphTable;
+    
+    // Table parameters, only touched under the instance lock
     private String currentCharset;
-    private char[] charArray;
+    private String charsetOverride;
+    private double contrast = 1.0;
+    private int brightness = 0;
+    private double gamma = 1.0;
+    
+    private RowBands rowBands = RowBands.sequential();
+    
+    // Dithering state, only touched by the thread that calls dither()
+    private volatile Dither dither = Dither.NONE;
+    private int[] errorRows = new int[0];
+    private GrayFrame ditherFrame;
+    private GlyphTable ditherTable;
+    private final RowBands.BandTask bayerBandTask = this::ditherBayerBand;
+    
+    // String conversion state, only touched by the thread that calls convertToAscii()
+    private char[] convertText = new char[0];
+    private GrayFrame convertFrame;
+    private char[] convertLut;
+    private final RowBands.BandTask convertBandTask = this::convertBand;
     
     public ASCIIConverter() {
         this(SIMPLE_CHARSET);
@@ -28,10 +280,71 @@ public class ASCIIConverter {
     /**
      * Set the character set to use for conversion
      */
-    public void setCharset(String charset) {
+    public synchronized void setCharset(String charset) {
         this.currentCharset = charset;
-        this.charArray = charset.toCharArray();
-        logger.debug("Charset updated: {} characters", charArray.length);
+        rebuildTable();
+        logger.debug("Charset updated: {} characters", charset.length());
+    }
+    
+    /**
+     * Fold contrast and brightness into the lookup table. Called by
+     * {@link ImageProcessor} when it defers its adjustments to this converter.
+     */
+    public synchronized void setAdjustments(double contrast, int brightness) {
+        if (contrast != this.contrast || brightness != this.brightness) {
+            this.contrast = contrast;
+            this.brightness = brightness;
+            rebuildTable();
+        }
+    }
+    
+    /**
+     * Gamma applied after contrast and brightness; values above 1 lift mid-tones
+     */
+    public synchronized void setGamma(double gamma) {
+        if (gamma > 0 && gamma != this.gamma) {
+            this.gamma = gamma;
+            rebuildTable();
+        }
+    }
+    
+    /**
+     * Render with this charset instead of the selected one until cleared with
+     * null; used to fall back to a cheaper charset under load. The selected
+     * charset keeps cycling underneath. The table is built here, on the
+     * thread changing the override.
+     */
+    public synchronized void setCharsetOverride(String charset) {
+        if (charset == null ? charsetOverride != null : !charset.equals(charsetOverride)) {
+            charsetOverride = charset;
+            rebuildTable();
+        }
+    }
+    
+    /**
+     * Take over a settings snapshot and its prebuilt lookup table, the one
+     * for the charset override if one is active. Only swaps references, so
+     * it is cheap enough to call between frames.
+     */
+    public synchronized void applyConfig(PipelineConfig config) {
+        currentCharset = config.getCharset();
+        contrast = config.getContrast();
+        brightness = config.getBrightness();
+        gamma = config.getGamma();
+        dither = config.getDither();
+        glyphTable = charsetOverride == null ? config.getGlyphTable() : config.getGlyphTable(charsetOverride);
+    }
+    
+    private void rebuildTable() {
+        String charset = charsetOverride != null ? charsetOverride : currentCharset;
+        glyphTable = new GlyphTable(charset, contrast, brightness, gamma);
+    }
+    
+    /**
+     * Current lookup table; read it once per frame for a consistent snapshot
+     */
+    public GlyphTable getGlyphTable() {
+        return glyphTable;
     }
     
     /**
@@ -40,39 +353,202 @@ public class ASCIIConverter {
     public char grayscaleToChar(int grayValue) {
         // Ensure gray value is in valid range
         grayValue = Math.max(0, Math.min(255, grayValue));
+        return glyphTable.chars[grayValue];
+    }
+    
+    /**
+     * Convert a gray frame to an ASCII string. Large frames are converted in
+     * parallel row bands, each writing its own rows of a buffer reused from
+     * call to call, so only the String itself is allocated.
+     */
+    public String convertToAscii(GrayFrame frame) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int length = (width + 1) * height;
+        if (convertText.length < length) {
+            convertText = new char[length];
+        }
         
-        // Map gray value to character index
-        int index = (grayValue * (charArray.length - 1)) / 255;
-        return charArray[index];
+        convertFrame = frame;
+        convertLut = glyphTable.chars;
+        try {
+            rowBands.run(height, rowBands.bandCount(height, (long) width * height), convertBandTask);
+        } finally {
+            convertFrame = null;
+            convertLut = null;
+        }
+        return new String(convertText, 0, length);
+    }
+    
+    private void convertBand(int band, int startRow, int endRow) {
+        GrayFrame frame = convertFrame;
+        char[] lut = convertLut;
+        char[] text = convertText;
+        byte[] cells = frame.getData();
+        byte[] edges = frame.hasEdges() ? frame.getEdges() : null;
+        int width = frame.getWidth();
+        int stride = frame.getStride();
+        int out = startRow * (width + 1);
+        for (int y = startRow; y < endRow; y++) {
+            int rowStart = y * stride;
+            if (edges == null) {
+                for (int x = 0; x < width; x++) {
+                    text[out++] = lut[cells[rowStart + x] & 0xFF];
+                }
+            } else {
+                for (int x = 0; x < width; x++) {
+                    text[out++] = lut[GlyphTable.codeOf(cells[rowStart + x] & 0xFF, edges[rowStart + x])];
+                }
+            }
+            text[out++] = '\n';
+        }
+    }
+    
+    /**
+     * Rewrite the cells so their glyphs follow the dither mode: every cell
+     * gets a raw gray value showing the chosen charset level. Bayer dithering
+     * runs in parallel row bands; error diffusion runs row by row over
+     * reused error rows. Edge glyphs are left as they are.
+     */
+    public void dither(GrayFrame frame) {
+        Dither mode = dither;
+        GlyphTable table = glyphTable;
+        if (mode == Dither.NONE || frame.isEmpty() || table.levels < 2) {
+            return;
+        }
+        if (mode == Dither.BAYER) {
+            int height = frame.getHeight();
+            ditherFrame = frame;
+            ditherTable = table;
+            try {
+                rowBands.run(height, rowBands.bandCount(height, (long) frame.getWidth() * height), bayerBandTask);
+            } finally {
+                ditherFrame = null;
+                ditherTable = null;
+            }
+        } else {
+            diffuseErrors(frame, table, mode == Dither.ATKINSON);
+        }
     }
     
     /**
-     * Convert 2D array of grayscale values to ASCII string
+     * Ordered dithering: scaled to levels, each cell is offset by its Bayer
+     * threshold before rounding down, so a value 30% of the way between two
+     * levels shows the upper one on 30% of the matrix positions
      */
-    public String convertToAscii(int[][] grayValues) {
-        StringBuilder result = new StringBuilder();
+    private void ditherBayerBand(int band, int startRow, int endRow) {
+        GrayFrame frame = ditherFrame;
+        GlyphTable table = ditherTable;
+        byte[] cells = frame.getData();
+        int width = frame.getWidth();
+        int stride = frame.getStride();
+        int maxLevel = table.levels - 1;
+        int[] adjusted = table.adjusted;
+        byte[] levelGray = table.levelGray;
         
-        for (int y = 0; y < grayValues.length; y++) {
-            for (int x = 0; x < grayValues[y].length; x++) {
-                result.append(grayscaleToChar(grayValues[y][x]));
+        for (int y = startRow; y < endRow; y++) {
+            int row = y * stride;
+            int matrixRow = (y & 7) << 3;
+            for (int x = 0; x < width; x++) {
+                // level = floor(value * maxLevel / 255 + (threshold + 0.5) / 64)
+                int threshold = 2 * BAYER_8X8[matrixRow + (x & 7)] + 1;
+                int level = (adjusted[cells[row + x] & 0xFF] * maxLevel * 128 + threshold * 255) / (255 * 128);
+                cells[row + x] = levelGray[Math.min(level, maxLevel)];
             }
-            result.append('\n');
         }
+    }
+    
+    /**
+     * Error diffusion in raster order. Floyd-Steinberg passes all of a cell's
+     * error on to four neighbours; Atkinson passes on three quarters to six,
+     * which keeps highlights and shadows cleaner at the cost of some contrast.
+     */
+    private void diffuseErrors(GrayFrame frame, GlyphTable table, boolean atkinson) {
+        byte[] cells = frame.getData();
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int stride = frame.getStride();
+        int maxLevel = table.levels - 1;
+        int[] adjusted = table.adjusted;
+        byte[] levelGray = table.levelGray;
+        int full = 255 << ERROR_SHIFT;
+        
+        // Three error rows: this one, the next and (for Atkinson) the one after
+        int rowLength = width + 2 * ERROR_PAD;
+        if (errorRows.length < 3 * rowLength) {
+            errorRows = new int[3 * rowLength];
+        }
+        int[] errors = errorRows;
+        Arrays.fill(errors, 0, 3 * rowLength, 0);
+        int current = 0;
+        int next = rowLength;
+        int after = 2 * rowLength;
         
-        return result.toString();
+        for (int y = 0; y < height; y++) {
+            int row = y * stride;
+            for (int x = 0; x < width; x++) {
+                int at = x + ERROR_PAD;
+                int value = (adjusted[cells[row + x] & 0xFF] << ERROR_SHIFT) + errors[current + at];
+                value = Math.max(0, Math.min(full, value));
+                int level = (value * maxLevel + full / 2) / full;
+                cells[row + x] = levelGray[level];
+                int error = value - (level * full + maxLevel / 2) / maxLevel;
+                
+                if (atkinson) {
+                    int eighth = error / 8;
+                    errors[current + at + 1] += eighth;
+                    errors[current + at + 2] += eighth;
+                    errors[next + at - 1] += eighth;
+                    errors[next + at] += eighth;
+                    errors[next + at + 1] += eighth;
+                    errors[after + at] += eighth;
+                } else {
+                    errors[current + at + 1] += error * 7 / 16;
+                    errors[next + at - 1] += error * 3 / 16;
+                    errors[next + at] += error * 5 / 16;
+                    errors[next + at + 1] += error / 16;
+                }
+            }
+            
+            // Rotate the rows and clear the one that becomes the furthest ahead
+            int done = current;
+            current = next;
+            next = after;
+            after = done;
+            Arrays.fill(errors, after, after + rowLength, 0);
+        }
+    }
+    
+    public void setDither(Dither dither) {
+        this.dither = dither != null ? dither : Dither.NONE;
+    }
+    
+    public Dither getDither() {
+        return dither;
+    }
+    
+    /**
+     * Split large frames into row bands converted in parallel
+     */
+    public void setRowBands(RowBands rowBands) {
+        this.rowBands = rowBands != null ? rowBands : RowBands.sequential();
     }
     
     /**
      * Get current character set
      */
     public String getCurrentCharset() {
-        return currentCharset;
+        return glyphTable.charset;
+    }
+    
+    public double getGamma() {
+        return gamma;
     }
     
     /**
      * Cycle through available character sets
      */
-    public void cycleCharset() {
+    public synchronized void cycleCharset() {
         if (currentCharset.equals(SIMPLE_CHARSET)) {
             setCharset(EXTENDED_CHARSET);
             logger.info("Switched to extended charset");
@@ -84,4 +560,4 @@ public class ASCIIConverter {
             logger.info("Switched to simple charset");
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,157 @@
+package com.asciiart.processor;
+
+/**
+ * Reusable grid of 8-bit gray cells stored row-major in one flat array.
+ * Cell (x, y) lives at {@code data[y * stride + x]}. A colored frame also
+ * carries a packed 0xRRGGBB color per cell at the same index, and a frame
+ * with edges an edge direction per cell that replaces the cell's glyph.
+ */
+public class GrayFrame {
+    /** Edge directions; EDGE_NONE keeps the brightness glyph */
+    public static final int EDGE_NONE = 0;
+    public static final int EDGE_VERTICAL = 1;
+    public static final int EDGE_RISING = 2;
+    public static final int EDGE_HORIZONTAL = 3;
+    public static final int EDGE_FALLING = 4;
+    
+    private byte[] data = new byte[0];
+    private byte[] edges = new byte[0];
+    private boolean edged = false;
+    private int[] colors = new int[0];
+    private boolean colored = false;
+    private int width;
+    private int height;
+    private int stride;
+    
+    public GrayFrame() {
+    }
+    
+    public GrayFrame(int width, int height) {
+        resize(width, height);
+    }
+    
+    /**
+     * Set the dimensions, growing the backing array only when it is too small.
+     * Cell contents are undefined afterwards.
+     */
+    public void resize(int width, int height) {
+        int required = width * height;
+        if (data.length < required) {
+            data = new byte[required];
+        }
+        if (colored && colors.length < required) {
+            colors = new int[required];
+        }
+        if (edged && edges.length < required) {
+            edges = new byte[required];
+        }
+        this.width = width;
+        this.height = height;
+        this.stride = width;
+    }
+    
+    /**
+     * Unsigned gray value (0-255) of a cell
+     */
+    public int get(int x, int y) {
+        return data[y * stride + x] & 0xFF;
+    }
+    
+    public void set(int x, int y, int value) {
+        data[y * stride + x] = (byte) value;
+    }
+    
+    /**
+     * Packed 0xRRGGBB color of a cell; only meaningful for colored frames
+     */
+    public int getColor(int x, int y) {
+        return colors[y * stride + x];
+    }
+    
+    public void setColor(int x, int y, int rgb) {
+        colors[y * stride + x] = rgb;
+    }
+    
+    /**
+     * Whether cells carry colors; turning it on allocates the color plane
+     */
+    public void setColored(boolean colored) {
+        this.colored = colored;
+        if (colored && colors.length < width * height) {
+            colors = new int[width * height];
+        }
+    }
+    
+    public boolean isColored() {
+        return colored;
+    }
+    
+    /**
+     * Whether cells carry edge directions; turning it on allocates the edge plane
+     */
+    public void setEdged(boolean edged) {
+        this.edged = edged;
+        if (edged && edges.length < width * height) {
+            edges = new byte[width * height];
+        }
+    }
+    
+    public boolean hasEdges() {
+        return edged;
+    }
+    
+    /**
+     * Backing edge array, indexed like {@link #getData}; empty unless edged
+     */
+    public byte[] getEdges() {
+        return edges;
+    }
+    
+    /**
+     * Copy dimensions and cells, and colors and edges if any, from another frame
+     */
+    public void copyFrom(GrayFrame other) {
+        colored = other.colored;
+        edged = other.edged;
+        resize(other.width, other.height);
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(other.data, y * other.stride, data, y * stride, width);
+            if (colored) {
+                System.arraycopy(other.colors, y * other.stride, colors, y * stride, width);
+            }
+            if (edged) {
+                System.arraycopy(other.edges, y * other.stride, edges, y * stride, width);
+            }
+        }
+    }
+    
+    /**
+     * Backing array; may be longer than stride * height
+     */
+    public byte[] getData() {
+        return data;
+    }
+    
+    /**
+     * Backing color array, indexed like {@link #getData}; empty unless colored
+     */
+    public int[] getColors() {
+        return colors;
+    }
+    
+    public int getWidth() {
+        return width;
+    }
+    
+    public int getHeight() {
+        return height;
+    }
+    
+    public int getStride() {
+        return stride;
+    }
+    
+    public boolean isEmpty() {
+        return width == 0 || height == 0;
+    }
+}
@@ -1,58 +1,121 @@
 package com.asciiart.processor;
 
+import com.asciiart.metrics.StageMetrics;
+import org.bytedeco.javacpp.BytePointer;
 import org.bytedeco.opencv.opencv_core.Mat;
 import org.bytedeco.opencv.opencv_core.Size;
+import static org.bytedeco.opencv.global.opencv_core.CV_8U;
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC1;
 import static org.bytedeco.opencv.global.opencv_imgproc.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+
 /**
  * Processes images for ASCII conversion
  */
 public class ImageProcessor {
     private static final Logger logger = LoggerFactory.getLogger(ImageProcessor.class);
     
-    private int targetWidth = 80;  // Default terminal width
-    private int targetHeight = 24; // Default terminal height
+    // Written by the keyboard and terminal resize threads
+    private volatile int targetWidth = 80;  // Default terminal width
+    private volatile int targetHeight = 24; // Default terminal height
+    private volatile double detailScale = 1.0;
+    // Process stage only; other threads change them through applyConfig snapshots
     private double contrast = 1.0;
     private int brightness = 0;
+    private final MatPool matPool = new MatPool();
+    private ASCIIConverter adjustmentTarget;
+    private ASCIIConverter ditherTarget;
+    
+    private static final int MIN_TARGET_WIDTH = 16;
+    private static final int MIN_TARGET_HEIGHT = 6;
+    public static final int DEFAULT_EDGE_THRESHOLD = 40;
+    // tan(67.5) is about 12/5; steeper gradients count as purely horizontal or vertical
+    private static final int EDGE_AXIS_RATIO_NUM = 12;
+    private static final int EDGE_AXIS_RATIO_DEN = 5;
+    
+    // Output cells, reused for every frame
+    private final GrayFrame output = new GrayFrame();
+    
+    // Row copy out of a gray Mat: the target and one pointer per band, set before each run
+    private GrayFrame copyTarget;
+    private long copyStep;
+    private RowPointer[] copyPointers = new RowPointer[0];
+    private final RowBands.BandTask copyBandTask = this::copyBand;
+    
+    private RowBands rowBands = RowBands.sequential();
+    private StageMetrics metrics = StageMetrics.disabled();
+    
+    // Color sampling: source column and row read for each cell, rebuilt only when sizes change
+    private boolean colorSampling = false;
+    private int[] colorColumnOfCell = new int[0];
+    private int[] colorRowOfCell = new int[0];
+    private byte[] colorSourceRow = new byte[0];
+    private int colorSourceCols = -1;
+    private int colorSourceRows = -1;
+    
+    // Edge pass over output cells; reads a copy of the cells so bands can write in place
+    private volatile boolean edgeDetection = false;
+    private volatile int edgeThreshold = DEFAULT_EDGE_THRESHOLD;
+    private volatile int edgeBlendWeight = 0;
+    private byte[] edgeSource = new byte[0];
+    private GrayFrame edgeFrame;
+    private final RowBands.BandTask edgeBandTask = this::detectEdgeBand;
+    
+    /**
+     * Pointer into a Mat's pixels that one band moves along. It is aimed at
+     * each frame's data rather than allocated per band, and owns nothing.
+     */
+    private static final class RowPointer extends BytePointer {
+        void aimAt(BytePointer data) {
+            address = data.address();
+            position = 0;
+            limit = data.limit();
+            capacity = data.capacity();
+        }
+    }
     
     public ImageProcessor() {
         logger.debug("ImageProcessor initialized with default settings");
     }
     
     /**
-     * Convert color image to grayscale
+     * Convert color image to grayscale.
+     * Returns the input itself if it is already grayscale; otherwise the
+     * result belongs to the caller and should be handed back with {@link #recycle}.
      */
     public Mat toGrayscale(Mat colorImage) {
         if (colorImage == null) {
             return null;
         }
         
-        Mat grayImage = new Mat();
-        
         // Check if image is already grayscale
         if (colorImage.channels() == 1) {
             return colorImage;
         }
         
         // Convert to grayscale
+        Mat grayImage = matPool.acquire(colorImage.rows(), colorImage.cols(), CV_8UC1);
         cvtColor(colorImage, grayImage, COLOR_BGR2GRAY);
         return grayImage;
     }
     
     /**
-     * Resize image to target dimensions for terminal display
+     * Resize image to target dimensions for terminal display.
+     * The result belongs to the caller and should be handed back with {@link #recycle}.
      */
     public Mat resize(Mat image, int width, int height) {
         if (image == null) {
             return null;
         }
         
-        Mat resized = new Mat();
-        Size size = new Size(width, height);
-        // Use fully qualified OpenCV resize function to avoid naming conflict
-        org.bytedeco.opencv.global.opencv_imgproc.resize(image, resized, size, 0, 0, INTER_LINEAR);
+        Mat resized = matPool.acquire(height, width, image.type());
+        try (Size size = new Size(width, height)) {
+            // Use fully qualified OpenCV resize function to avoid naming conflict
+            org.bytedeco.opencv.global.opencv_imgproc.resize(image, resized, size, 0, 0, INTER_LINEAR);
+        }
         
         // logger.debug("Image resized to {}x{}", width, height); // Commented out for cleaner display
         return resized;
@@ -66,9 +129,21 @@ public class ImageProcessor {
             return null;
         }
         
+        int[] size = terminalSizeFor(image.cols(), image.rows());
+        return resize(image, size[0], size[1]);
+    }
+    
+    /**
+     * Output {width, height} in cells for a source image of the given size
+     */
+    public int[] terminalSizeFor(int cols, int rows) {
+        int[] target = targetSize();
+        int targetWidth = target[0];
+        int targetHeight = target[1];
+        
         // Calculate scaling to maintain aspect ratio
         // Account for terminal characters being taller than wide (roughly 2:1)
-        double imageAspect = (double) image.cols() / image.rows();
+        double imageAspect = (double) cols / rows;
         double terminalAspect = (double) targetWidth / (targetHeight * 2.0);
         
         int finalWidth, finalHeight;
@@ -83,71 +158,444 @@ public class ImageProcessor {
             finalWidth = (int) (targetHeight * imageAspect * 2.0);
         }
         
-        return resize(image, finalWidth, finalHeight);
+        return new int[]{finalWidth, finalHeight};
+    }
+    
+    /**
+     * Target {width, height} in cells after the detail scale, before fitting
+     * a source's aspect ratio
+     */
+    public int[] targetSize() {
+        // Reduced detail shrinks the target while keeping its shape
+        double scale = detailScale;
+        return new int[]{Math.max(MIN_TARGET_WIDTH, (int) Math.round(targetWidth * scale)),
+                         Math.max(MIN_TARGET_HEIGHT, (int) Math.round(targetHeight * scale))};
+    }
+    
+    /**
+     * Take over another processor's adjustments, edge and color settings,
+     * e.g. for per-tile processors that follow the main one. Target size,
+     * detail scale, dithering and metrics stay as they are, and a converter
+     * the adjustments are deferred to is not notified.
+     */
+    public void copySettingsFrom(ImageProcessor template) {
+        contrast = template.contrast;
+        brightness = template.brightness;
+        adjustmentTarget = template.adjustmentTarget;
+        colorSampling = template.colorSampling;
+        edgeDetection = template.edgeDetection;
+        edgeThreshold = template.edgeThreshold;
+        edgeBlendWeight = template.edgeBlendWeight;
+        rowBands = template.rowBands;
     }
     
     /**
-     * Apply contrast and brightness adjustments
+     * Take over a settings snapshot: adjustments and edge settings.
+     * Call it on the thread that processes frames, between frames. A
+     * converter the adjustments are deferred to takes the snapshot too,
+     * with its prebuilt lookup table.
+     */
+    public void applyConfig(PipelineConfig config) {
+        contrast = config.getContrast();
+        brightness = config.getBrightness();
+        edgeDetection = config.isEdgeDetection();
+        setEdgeThreshold(config.getEdgeThreshold());
+        setEdgeBlend(config.getEdgeBlend());
+        if (adjustmentTarget != null) {
+            adjustmentTarget.applyConfig(config);
+        }
+    }
+    
+    /**
+     * Apply contrast and brightness adjustments.
+     * The result belongs to the caller and should be handed back with {@link #recycle}.
      */
     public Mat adjustContrastBrightness(Mat image) {
         if (image == null) {
             return null;
         }
         
-        Mat adjusted = new Mat();
+        Mat adjusted = matPool.acquire(image.rows(), image.cols(), image.type());
         image.convertTo(adjusted, -1, contrast, brightness);
         return adjusted;
     }
     
     /**
-     * Convert Mat to 2D array of grayscale values
+     * Return an intermediate Mat produced by this processor to its pool
      */
-    public int[][] matToGrayscaleArray(Mat grayMat) {
+    public void recycle(Mat mat) {
+        matPool.recycle(mat);
+    }
+    
+    public MatPool getMatPool() {
+        return matPool;
+    }
+    
+    /**
+     * Free all pooled native memory. The processor must not be used afterwards.
+     */
+    public void release() {
+        matPool.close();
+    }
+    
+    /**
+     * Copy a single-channel 8-bit Mat into a gray frame, one bulk copy per row.
+     * Large frames are copied in parallel row bands.
+     */
+    public GrayFrame matToGrayFrame(Mat grayMat, GrayFrame target) {
         if (grayMat == null || grayMat.channels() != 1) {
             return null;
         }
         
         int rows = grayMat.rows();
         int cols = grayMat.cols();
-        int[][] result = new int[rows][cols];
+        target.resize(cols, rows);
+        
+        int bands = rowBands.bandCount(rows, (long) rows * cols);
+        if (copyPointers.length < bands) {
+            RowPointer[] grown = Arrays.copyOf(copyPointers, bands);
+            for (int i = copyPointers.length; i < bands; i++) {
+                grown[i] = new RowPointer();
+            }
+            copyPointers = grown;
+        }
+        BytePointer data = grayMat.data();
+        for (int i = 0; i < bands; i++) {
+            copyPointers[i].aimAt(data);
+        }
+        copyTarget = target;
+        copyStep = grayMat.step();
+        try {
+            rowBands.run(rows, bands, copyBandTask);
+        } finally {
+            copyTarget = null;
+        }
+        return target;
+    }
+    
+    private void copyBand(int band, int startRow, int endRow) {
+        RowPointer data = copyPointers[band];
+        byte[] cells = copyTarget.getData();
+        int stride = copyTarget.getStride();
+        int cols = copyTarget.getWidth();
+        for (int y = startRow; y < endRow; y++) {
+            data.position(y * copyStep).get(cells, y * stride, cols);
+        }
+    }
+    
+    /**
+     * Process complete pipeline: color -> grayscale -> resize -> adjust -> array.
+     * The adjust step is skipped when adjustments are deferred to a converter.
+     * Edges and dithering, when enabled, run over the finished cells.
+     * Returns the processor's output frame, valid until the next call.
+     */
+    public GrayFrame processFrame(Mat frame) {
+        GrayFrame result = processSteps(frame);
+        if (result != null) {
+            if (edgeDetection) {
+                long start = System.nanoTime();
+                detectEdges(result);
+                metrics.recordSince(StageMetrics.Stage.EDGES, start);
+            } else {
+                result.setEdged(false);
+            }
+            ASCIIConverter converter = ditherTarget;
+            if (converter != null && converter.getDither() != ASCIIConverter.Dither.NONE) {
+                long start = System.nanoTime();
+                converter.dither(result);
+                metrics.recordSince(StageMetrics.Stage.DITHER, start);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Sobel gradients over the cells themselves, so the cost depends on the
+     * output size only. Cells whose gradient magnitude reaches the threshold
+     * get an edge direction, shown as | / - or \; every cell's value is
+     * blended towards its magnitude so stronger gradients look denser.
+     * Frame borders are extended by repeating the outermost cells.
+     */
+    public void detectEdges(GrayFrame frame) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int cells = width * height;
+        frame.setEdged(true);
+        if (cells == 0) {
+            return;
+        }
+        if (edgeSource.length < cells) {
+            edgeSource = new byte[cells];
+        }
+        byte[] data = frame.getData();
+        int stride = frame.getStride();
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(data, y * stride, edgeSource, y * width, width);
+        }
         
-        byte[] data = new byte[rows * cols];
-        grayMat.data().get(data);
+        edgeFrame = frame;
+        try {
+            rowBands.run(height, rowBands.bandCount(height, cells), edgeBandTask);
+        } finally {
+            edgeFrame = null;
+        }
+    }
+    
+    private void detectEdgeBand(int band, int startRow, int endRow) {
+        GrayFrame frame = edgeFrame;
+        byte[] src = edgeSource;
+        byte[] out = frame.getData();
+        byte[] edges = frame.getEdges();
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int stride = frame.getStride();
+        int threshold = edgeThreshold;
+        int blend = edgeBlendWeight;
         
-        for (int y = 0; y < rows; y++) {
-            for (int x = 0; x < cols; x++) {
-                // Convert byte to unsigned int (0-255)
-                result[y][x] = data[y * cols + x] & 0xFF;
+        for (int y = startRow; y < endRow; y++) {
+            int above = Math.max(0, y - 1) * width;
+            int row = y * width;
+            int below = Math.min(height - 1, y + 1) * width;
+            int target = y * stride;
+            for (int x = 0; x < width; x++) {
+                int left = x > 0 ? x - 1 : 0;
+                int right = x < width - 1 ? x + 1 : x;
+                int topLeft = src[above + left] & 0xFF;
+                int top = src[above + x] & 0xFF;
+                int topRight = src[above + right] & 0xFF;
+                int midLeft = src[row + left] & 0xFF;
+                int midRight = src[row + right] & 0xFF;
+                int bottomLeft = src[below + left] & 0xFF;
+                int bottom = src[below + x] & 0xFF;
+                int bottomRight = src[below + right] & 0xFF;
+                
+                int gx = (topRight + 2 * midRight + bottomRight) - (topLeft + 2 * midLeft + bottomLeft);
+                int gy = (bottomLeft + 2 * bottom + bottomRight) - (topLeft + 2 * top + topRight);
+                int ax = Math.abs(gx);
+                int ay = Math.abs(gy);
+                // |gx| + |gy| is at most 2040
+                int magnitude = Math.min(255, (ax + ay) >> 3);
+                
+                int direction = GrayFrame.EDGE_NONE;
+                if (magnitude >= threshold) {
+                    if (ax * EDGE_AXIS_RATIO_DEN > ay * EDGE_AXIS_RATIO_NUM) {
+                        direction = GrayFrame.EDGE_VERTICAL;
+                    } else if (ay * EDGE_AXIS_RATIO_DEN > ax * EDGE_AXIS_RATIO_NUM) {
+                        direction = GrayFrame.EDGE_HORIZONTAL;
+                    } else {
+                        // Brighter towards bottom-right (or top-left) means the edge runs bottom-left to top-right
+                        direction = (gx ^ gy) >= 0 ? GrayFrame.EDGE_RISING : GrayFrame.EDGE_FALLING;
+                    }
+                }
+                edges[target + x] = (byte) direction;
+                if (blend != 0) {
+                    int gray = src[row + x] & 0xFF;
+                    out[target + x] = (byte) ((gray * (256 - blend) + magnitude * blend + 128) >> 8);
+                }
             }
         }
+    }
+    
+    /**
+     * Each step as a separate OpenCV pass over pooled Mats
+     */
+    private GrayFrame processSteps(Mat frame) {
+        long start = System.nanoTime();
+        Mat gray = toGrayscale(frame);
+        long grayDone = System.nanoTime();
+        metrics.record(StageMetrics.Stage.GRAYSCALE, grayDone - start);
+        Mat resized = resizeForTerminal(gray);
+        long resizeDone = System.nanoTime();
+        metrics.record(StageMetrics.Stage.RESIZE, resizeDone - grayDone);
+        Mat adjusted = adjustmentTarget == null ? adjustContrastBrightness(resized) : resized;
+        if (adjusted != resized) {
+            metrics.recordSince(StageMetrics.Stage.ADJUST, resizeDone);
+        }
+        GrayFrame result = matToGrayFrame(adjusted, output);
+        if (result != null) {
+            sampleColors(frame, result);
+        }
         
+        // Intermediates go straight back to the pool; the source frame is not ours
+        if (gray != frame) {
+            recycle(gray);
+        }
+        recycle(resized);
+        if (adjusted != resized) {
+            recycle(adjusted);
+        }
         return result;
     }
     
     /**
-     * Process complete pipeline: color -> grayscale -> resize -> adjust -> array
+     * Color of each cell: one source row per output row is copied and the
+     * pixel at each cell's center is taken from it
      */
-    public int[][] processFrame(Mat frame) {
-        Mat processed = toGrayscale(frame);
-        processed = resizeForTerminal(processed);
-        processed = adjustContrastBrightness(processed);
-        return matToGrayscaleArray(processed);
+    private void sampleColors(Mat frame, GrayFrame cells) {
+        int channels = frame.channels();
+        boolean samplable = colorSampling && frame.depth() == CV_8U
+                            && (channels == 1 || channels == 3 || channels == 4);
+        cells.setColored(samplable);
+        if (!samplable) {
+            return;
+        }
+        
+        int cols = frame.cols();
+        prepareColorSampling(cols, frame.rows(), cells.getWidth(), cells.getHeight());
+        if (colorSourceRow.length < cols * channels) {
+            colorSourceRow = new byte[cols * channels];
+        }
+        BytePointer data = frame.data();
+        long step = frame.step();
+        for (int oy = 0; oy < cells.getHeight(); oy++) {
+            data.position(colorRowOfCell[oy] * step).get(colorSourceRow, 0, cols * channels);
+            sampleRowColors(colorSourceRow, channels, oy);
+        }
+    }
+    
+    /**
+     * Take the color of the pixel at each cell's center column from a source
+     * row that crosses the cells' centers
+     */
+    private void sampleRowColors(byte[] row, int channels, int outRow) {
+        int[] colors = output.getColors();
+        int base = outRow * output.getStride();
+        int outWidth = output.getWidth();
+        for (int ox = 0; ox < outWidth; ox++) {
+            int i = colorColumnOfCell[ox] * channels;
+            int rgb;
+            if (channels == 1) {
+                rgb = (row[i] & 0xFF) * 0x010101;
+            } else {
+                rgb = ((row[i + 2] & 0xFF) << 16) | ((row[i + 1] & 0xFF) << 8) | (row[i] & 0xFF);
+            }
+            colors[base + ox] = rgb;
+        }
+    }
+    
+    private void prepareColorSampling(int cols, int rows, int outWidth, int outHeight) {
+        if (colorSourceCols == cols && colorSourceRows == rows
+                && colorColumnOfCell.length == outWidth && colorRowOfCell.length == outHeight) {
+            return;
+        }
+        colorColumnOfCell = new int[outWidth];
+        for (int ox = 0; ox < outWidth; ox++) {
+            colorColumnOfCell[ox] = Math.min(cols - 1, (int) ((ox + 0.5) * cols / outWidth));
+        }
+        // Middle of the source rows that fall into each cell
+        colorRowOfCell = new int[outHeight];
+        int[] lastRowOfCell = new int[outHeight];
+        Arrays.fill(lastRowOfCell, -1);
+        double scale = (double) rows / outHeight;
+        for (int y = rows - 1; y >= 0; y--) {
+            int cell = Math.min(outHeight - 1, (int) (y / scale));
+            if (lastRowOfCell[cell] < 0) {
+                lastRowOfCell[cell] = y;
+            }
+            colorRowOfCell[cell] = y;
+        }
+        for (int oy = 0; oy < outHeight; oy++) {
+            colorRowOfCell[oy] = (colorRowOfCell[oy] + lastRowOfCell[oy]) / 2;
+        }
+        colorSourceCols = cols;
+        colorSourceRows = rows;
     }
     
     // Getters and setters
+    
+    /**
+     * Also give every output cell the BGR color at its center, for colored
+     * output. Costs one extra read per cell from rows already being scanned.
+     */
+    public void setColorSampling(boolean colorSampling) {
+        this.colorSampling = colorSampling;
+    }
+    
+    public boolean isColorSampling() {
+        return colorSampling;
+    }
+    
     public void setTargetDimensions(int width, int height) {
         this.targetWidth = width;
         this.targetHeight = height;
     }
     
-    public void adjustContrast(double delta) {
-        this.contrast = Math.max(0.5, Math.min(3.0, contrast + delta));
-        logger.info("Contrast adjusted to {}", contrast);
+    /**
+     * Fraction (0-1] of the target dimensions actually produced; lowered by
+     * the frame scheduler when frames overrun their budget
+     */
+    public void setDetailScale(double detailScale) {
+        this.detailScale = Math.max(0.1, Math.min(1.0, detailScale));
+    }
+    
+    public double getDetailScale() {
+        return detailScale;
+    }
+    
+    /**
+     * Leave contrast and brightness to the converter's lookup table instead of
+     * applying them per frame. processFrame then returns unadjusted gray values.
+     */
+    public void deferAdjustmentsTo(ASCIIConverter converter) {
+        this.adjustmentTarget = converter;
+        notifyAdjustmentTarget();
+    }
+    
+    /**
+     * Dither every processed frame with the converter's current dither mode,
+     * so the work happens on the process stage rather than the render stage
+     */
+    public void ditherWith(ASCIIConverter converter) {
+        this.ditherTarget = converter;
+    }
+    
+    private void notifyAdjustmentTarget() {
+        if (adjustmentTarget != null) {
+            adjustmentTarget.setAdjustments(contrast, brightness);
+        }
+    }
+    
+    /**
+     * Split large frames into row bands processed in parallel
+     */
+    public void setRowBands(RowBands rowBands) {
+        this.rowBands = rowBands != null ? rowBands : RowBands.sequential();
+    }
+    
+    public RowBands getRowBands() {
+        return rowBands;
+    }
+    
+    /**
+     * Record the time spent in each processing step
+     */
+    public void setMetrics(StageMetrics metrics) {
+        this.metrics = metrics != null ? metrics : StageMetrics.disabled();
+    }
+    
+    /**
+     * Replace glyphs of cells on strong gradients with direction glyphs
+     */
+    public void setEdgeDetection(boolean edgeDetection) {
+        this.edgeDetection = edgeDetection;
     }
     
-    public void adjustBrightness(int delta) {
-        this.brightness = Math.max(-100, Math.min(100, brightness + delta));
-        logger.info("Brightness adjusted to {}", brightness);
+    public boolean isEdgeDetection() {
+        return edgeDetection;
+    }
+    
+    /**
+     * Gradient magnitude (0-255) from which a cell shows an edge glyph
+     */
+    public void setEdgeThreshold(int edgeThreshold) {
+        this.edgeThreshold = Math.max(1, Math.min(255, edgeThreshold));
+    }
+    
+    /**
+     * How far (0-1) cell brightness is pulled towards gradient magnitude in edge mode
+     */
+    public void setEdgeBlend(double edgeBlend) {
+        this.edgeBlendWeight = (int) Math.round(Math.max(0.0, Math.min(1.0, edgeBlend)) * 256);
     }
     
     public double getContrast() {
@@ -0,0 +1,99 @@
+package com.asciiart.processor;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pool of reusable Mats keyed by size and type.
+ *
+ * A Mat handed out by {@link #acquire} belongs to the caller until it is
+ * given back with {@link #recycle}; from then on the pool owns it and frees
+ * the native memory on {@link #close()}. Not thread-safe: each pipeline owns
+ * its own pool.
+ */
+public class MatPool implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(MatPool.class);
+    
+    private static final int MAX_PER_KEY = 2;
+    private static final int MAX_POOLED = 16;
+    
+    private final Map<Long, ArrayDeque<Mat>> free = new HashMap<>();
+    private int pooled = 0;
+    private long allocations = 0;
+    private long reuses = 0;
+    private boolean closed = false;
+    
+    private static long key(int rows, int cols, int type) {
+        return ((long) rows << 40) | ((long) cols << 16) | (type & 0xFFFF);
+    }
+    
+    /**
+     * Get a Mat with the given geometry, reusing a pooled one when possible.
+     * Contents are undefined.
+     */
+    public Mat acquire(int rows, int cols, int type) {
+        ArrayDeque<Mat> queue = free.get(key(rows, cols, type));
+        if (queue != null && !queue.isEmpty()) {
+            pooled--;
+            reuses++;
+            return queue.pop();
+        }
+        allocations++;
+        return new Mat(rows, cols, type);
+    }
+    
+    /**
+     * Hand a Mat back to the pool. Mats that do not fit are freed immediately.
+     */
+    public void recycle(Mat mat) {
+        if (mat == null || mat.isNull()) {
+            return;
+        }
+        if (closed || mat.empty() || pooled >= MAX_POOLED) {
+            mat.close();
+            return;
+        }
+        
+        ArrayDeque<Mat> queue = free.computeIfAbsent(key(mat.rows(), mat.cols(), mat.type()),
+                                                     k -> new ArrayDeque<>());
+        if (queue.size() >= MAX_PER_KEY) {
+            mat.close();
+            return;
+        }
+        queue.push(mat);
+        pooled++;
+    }
+    
+    public int getPooledCount() {
+        return pooled;
+    }
+    
+    public long getAllocations() {
+        return allocations;
+    }
+    
+    public long getReuses() {
+        return reuses;
+    }
+    
+    /**
+     * Free every pooled Mat. Mats still held by callers are not affected.
+     */
+    @Override
+    public void close() {
+        for (ArrayDeque<Mat> queue : free.values()) {
+            for (Mat mat : queue) {
+                mat.close();
+            }
+        }
+        free.clear();
+        pooled = 0;
+        closed = true;
+        logger.debug("Mat pool closed after {} allocations and {} reuses", allocations, reuses);
+    }
+}
@@ -0,0 +1,195 @@
+package com.asciiart.processor;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Locale;
+
+/**
+ * Immutable snapshot of the processing settings that can change while
+ * running: adjustments, charset, dithering and edge mode.
+ *
+ * Changes make a new snapshot rather than touching shared fields, and the
+ * glyph lookup tables, for the charset and for the simple charset used
+ * under load, are built with the snapshot, on the thread making the
+ * change. The process stage takes a snapshot over between frames with
+ * {@link ImageProcessor#applyConfig}, so the keyboard and reload threads
+ * never write fields it reads mid-frame.
+ */
+public final class PipelineConfig {
+    
+    public static final double MIN_CONTRAST = 0.5;
+    public static final double MAX_CONTRAST = 3.0;
+    public static final int MIN_BRIGHTNESS = -100;
+    public static final int MAX_BRIGHTNESS = 100;
+    
+    private final double contrast;
+    private final int brightness;
+    private final double gamma;
+    private final String charset;
+    private final ASCIIConverter.Dither dither;
+    private final boolean edgeDetection;
+    private final int edgeThreshold;
+    private final double edgeBlend;
+    private final ASCIIConverter.GlyphTable glyphTable;
+    private final ASCIIConverter.GlyphTable fallbackTable;
+    
+    /**
+     * @param tables snapshot whose lookup tables still apply, or null to build new ones
+     */
+    private PipelineConfig(double contrast, int brightness, double gamma, String charset,
+                           ASCIIConverter.Dither dither, boolean edgeDetection, int edgeThreshold,
+                           double edgeBlend, PipelineConfig tables) {
+        this.contrast = Math.max(MIN_CONTRAST, Math.min(MAX_CONTRAST, contrast));
+        this.brightness = Math.max(MIN_BRIGHTNESS, Math.min(MAX_BRIGHTNESS, brightness));
+        this.gamma = gamma > 0 ? gamma : 1.0;
+        this.charset = charset.isEmpty() ? ASCIIConverter.SIMPLE_CHARSET : charset;
+        this.dither = dither != null ? dither : ASCIIConverter.Dither.NONE;
+        this.edgeDetection = edgeDetection;
+        this.edgeThreshold = Math.max(1, Math.min(255, edgeThreshold));
+        this.edgeBlend = Math.max(0.0, Math.min(1.0, edgeBlend));
+        // Only changes to the tables' own inputs pay for new ones
+        if (tables != null) {
+            this.glyphTable = tables.glyphTable;
+            this.fallbackTable = tables.fallbackTable;
+        } else {
+            this.glyphTable = ASCIIConverter.GlyphTable.of(this.charset, this.contrast, this.brightness, this.gamma);
+            this.fallbackTable = this.charset.equals(ASCIIConverter.SIMPLE_CHARSET) ? glyphTable
+                : ASCIIConverter.GlyphTable.of(ASCIIConverter.SIMPLE_CHARSET, this.contrast, this.brightness,
+                                               this.gamma);
+        }
+    }
+    
+    /**
+     * Built-in defaults, the same as an empty settings file
+     */
+    public static PipelineConfig defaults() {
+        return new PipelineConfig(1.0, 0, 1.0, ASCIIConverter.SIMPLE_CHARSET, ASCIIConverter.Dither.NONE,
+                                  false, ImageProcessor.DEFAULT_EDGE_THRESHOLD, 0.5, null);
+    }
+    
+    /**
+     * Read the processing section and display.characterSet of a settings
+     * tree; missing values take their defaults
+     */
+    public static PipelineConfig fromSettings(JsonNode settings) {
+        JsonNode processing = settings.path("processing");
+        return new PipelineConfig(processing.path("contrast").asDouble(1.0),
+                                  processing.path("brightness").asInt(0),
+                                  processing.path("gamma").asDouble(1.0),
+                                  charsetNamed(settings.path("display").path("characterSet").asText("simple")),
+                                  ASCIIConverter.Dither.parse(processing.path("dither").asText("none")),
+                                  processing.path("edgeDetection").asBoolean(false),
+                                  processing.path("edgeThreshold").asInt(ImageProcessor.DEFAULT_EDGE_THRESHOLD),
+                                  processing.path("edgeBlend").asDouble(0.5),
+                                  null);
+    }
+    
+    /**
+     * Charset for a name: simple, extended or block; anything else is taken
+     * as the glyphs themselves, darkest first
+     */
+    public static String charsetNamed(String name) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "simple":
+                return ASCIIConverter.SIMPLE_CHARSET;
+            case "extended":
+                return ASCIIConverter.EXTENDED_CHARSET;
+            case "block":
+                return ASCIIConverter.BLOCK_CHARSET;
+            default:
+                return name;
+        }
+    }
+    
+    public PipelineConfig withContrast(double contrast) {
+        return new PipelineConfig(contrast, brightness, gamma, charset, dither, edgeDetection,
+                                  edgeThreshold, edgeBlend, null);
+    }
+    
+    public PipelineConfig withBrightness(int brightness) {
+        return new PipelineConfig(contrast, brightness, gamma, charset, dither, edgeDetection,
+                                  edgeThreshold, edgeBlend, null);
+    }
+    
+    public PipelineConfig withCharset(String charset) {
+        return new PipelineConfig(contrast, brightness, gamma, charset, dither, edgeDetection,
+                                  edgeThreshold, edgeBlend, null);
+    }
+    
+    /**
+     * Simple, extended, block, then back to simple; custom charsets go to simple
+     */
+    public PipelineConfig withNextCharset() {
+        if (charset.equals(ASCIIConverter.SIMPLE_CHARSET)) {
+            return withCharset(ASCIIConverter.EXTENDED_CHARSET);
+        } else if (charset.equals(ASCIIConverter.EXTENDED_CHARSET)) {
+            return withCharset(ASCIIConverter.BLOCK_CHARSET);
+        }
+        return withCharset(ASCIIConverter.SIMPLE_CHARSET);
+    }
+    
+    public PipelineConfig withDither(ASCIIConverter.Dither dither) {
+        return new PipelineConfig(contrast, brightness, gamma, charset, dither, edgeDetection,
+                                  edgeThreshold, edgeBlend, this);
+    }
+    
+    public PipelineConfig withEdgeDetection(boolean edgeDetection) {
+        return new PipelineConfig(contrast, brightness, gamma, charset, dither, edgeDetection,
+                                  edgeThreshold, edgeBlend, this);
+    }
+    
+    public double getContrast() {
+        return contrast;
+    }
+    
+    public int getBrightness() {
+        return brightness;
+    }
+    
+    public double getGamma() {
+        return gamma;
+    }
+    
+    public String getCharset() {
+        return charset;
+    }
+    
+    public ASCIIConverter.Dither getDither() {
+        return dither;
+    }
+    
+    public boolean isEdgeDetection() {
+        return edgeDetection;
+    }
+    
+    public int getEdgeThreshold() {
+        return edgeThreshold;
+    }
+    
+    public double getEdgeBlend() {
+        return edgeBlend;
+    }
+    
+    /**
+     * Lookup table for the charset with contrast, brightness and gamma folded in
+     */
+    public ASCIIConverter.GlyphTable getGlyphTable() {
+        return glyphTable;
+    }
+    
+    /**
+     * Lookup table for another charset with this snapshot's adjustments, e.g.
+     * a charset override. The simple charset, which the frame scheduler falls
+     * back to under load, is built with the snapshot; any other charset is
+     * built on the calling thread.
+     */
+    public ASCIIConverter.GlyphTable getGlyphTable(String charset) {
+        if (charset.equals(this.charset)) {
+            return glyphTable;
+        }
+        if (charset.equals(ASCIIConverter.SIMPLE_CHARSET)) {
+            return fallbackTable;
+        }
+        return ASCIIConverter.GlyphTable.of(charset, contrast, brightness, gamma);
+    }
+}
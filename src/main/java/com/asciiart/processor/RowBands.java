@@ -0,0 +1,148 @@
+package com.asciiart.processor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits row-oriented work into contiguous bands of rows and runs them on a
+ * ForkJoinPool. Every band only writes its own rows of the shared output, so
+ * there is nothing to merge afterwards. Frames whose work stays below the
+ * threshold run as a single band on the calling thread.
+ */
+public class RowBands implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(RowBands.class);
+    
+    /** Default minimum pixels per frame before work is split */
+    public static final long DEFAULT_THRESHOLD = 200_000;
+    
+    /**
+     * Work for the rows [startRow, endRow) of one band
+     */
+    public interface BandTask {
+        void run(int band, int startRow, int endRow);
+    }
+    
+    private final ForkJoinPool pool;
+    private final boolean ownsPool;
+    private final long threshold;
+    
+    /**
+     * Run bands on an existing pool; a null pool keeps everything on the calling thread
+     */
+    public RowBands(ForkJoinPool pool, long threshold) {
+        this(pool, threshold, false);
+    }
+    
+    private RowBands(ForkJoinPool pool, long threshold, boolean ownsPool) {
+        this.pool = pool;
+        this.threshold = Math.max(0, threshold);
+        this.ownsPool = ownsPool;
+    }
+    
+    /**
+     * Single-threaded instance
+     */
+    public static RowBands sequential() {
+        return new RowBands(null, Long.MAX_VALUE, false);
+    }
+    
+    /**
+     * Create a private worker pool. threads <= 0 uses one thread per core;
+     * a single thread means no pool at all.
+     */
+    public static RowBands create(int threads, long threshold) {
+        int parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        if (parallelism <= 1) {
+            logger.info("Frame conversion runs single-threaded");
+            return sequential();
+        }
+        
+        ForkJoinPool.ForkJoinWorkerThreadFactory factory = p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("Frame-Worker-" + thread.getPoolIndex());
+            return thread;
+        };
+        logger.info("Frame conversion uses {} worker threads above {} pixels", parallelism, threshold);
+        return new RowBands(new ForkJoinPool(parallelism, factory, null, false), threshold, true);
+    }
+    
+    /**
+     * Number of bands to use for the given rows and amount of work (pixels touched)
+     */
+    public int bandCount(int rows, long work) {
+        if (pool == null || work < threshold || rows < 2) {
+            return 1;
+        }
+        return Math.min(rows, pool.getParallelism());
+    }
+    
+    /**
+     * Run the task once per band and wait for all of them. Rows are split as
+     * evenly as possible; band b covers [b * rows / bands, (b + 1) * rows / bands).
+     */
+    public void run(int rows, int bands, BandTask task) {
+        if (bands <= 1 || pool == null) {
+            task.run(0, 0, rows);
+            return;
+        }
+        pool.invoke(new Split(task, rows, bands, 0, bands));
+    }
+    
+    public boolean isParallel() {
+        return pool != null;
+    }
+    
+    public int getParallelism() {
+        return pool == null ? 1 : pool.getParallelism();
+    }
+    
+    public long getThreshold() {
+        return threshold;
+    }
+    
+    /**
+     * Shut down the worker pool if this instance created it
+     */
+    @Override
+    public void close() {
+        if (ownsPool) {
+            pool.shutdown();
+        }
+    }
+    
+    /**
+     * Halves the band range until a single band is left
+     */
+    private static final class Split extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final BandTask task;
+        private final int rows;
+        private final int bands;
+        private final int from;
+        private final int to;
+        
+        Split(BandTask task, int rows, int bands, int from, int to) {
+            this.task = task;
+            this.rows = rows;
+            this.bands = bands;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                task.run(from, (int) ((long) from * rows / bands), (int) ((long) to * rows / bands));
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Split(task, rows, bands, from, middle),
+                      new Split(task, rows, bands, middle, to));
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.asciiart.recording;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of an ASCII recording (.asciv). All numbers are big-endian.
+ *
+ * <pre>
+ * header   magic "ASCV", version u16, width u16, height u16, fps f32,
+ *          start epoch millis i64, frame count i32, index offset i64,
+ *          glyph count u16, glyphs as UTF-16 chars
+ * record   type u8, millis since start u32, payload length i32, payload
+ * index    entry count i32, then per keyframe: frame number i32,
+ *          millis since start u32, record offset i64; then the final
+ *          glyph count u16 and glyphs, so a reader can seek straight to
+ *          any keyframe without replaying earlier GLYPHS records
+ * </pre>
+ *
+ * Cells are stored as one-byte indexes into the recording's glyph list,
+ * which starts with the header glyphs and grows through GLYPHS records
+ * whenever a frame uses a glyph not seen before. A KEYFRAME payload holds
+ * its width and height (u16 each) followed by (run length, glyph) pairs
+ * covering every cell. A DELTA payload holds (skip, run length, glyph)
+ * triples: skip unchanged cells, then set the next run length cells to
+ * the glyph. Run lengths and skips are unsigned LEB128 varints.
+ *
+ * Frame count and index offset are written when the recording is closed;
+ * an index offset of 0 marks a recording that was never closed, which can
+ * still be read front to back.
+ */
+public final class RecordingFormat {
+    public static final int MAGIC = 0x41534356;
+    public static final int VERSION = 1;
+    public static final String EXTENSION = ".asciv";
+    
+    /** Record types */
+    public static final byte KEYFRAME = 'K';
+    public static final byte DELTA = 'D';
+    public static final byte GLYPHS = 'G';
+    
+    public static final int MAX_GLYPHS = 256;
+    public static final int RECORD_HEADER_BYTES = 1 + 4 + 4;
+    public static final int INDEX_ENTRY_BYTES = 4 + 4 + 8;
+    
+    // Header fields patched on close
+    static final int FRAME_COUNT_OFFSET = 4 + 2 + 2 + 2 + 4 + 8;
+    static final int INDEX_OFFSET_OFFSET = FRAME_COUNT_OFFSET + 4;
+    static final int GLYPH_COUNT_OFFSET = INDEX_OFFSET_OFFSET + 8;
+    
+    private RecordingFormat() {
+    }
+    
+    /**
+     * Fixed header fields plus the initial glyph list
+     */
+    public static final class Header {
+        private final int width;
+        private final int height;
+        private final float fps;
+        private final long startMillis;
+        private final int frameCount;
+        private final long indexOffset;
+        private final String glyphs;
+        private final int length;
+        
+        Header(int width, int height, float fps, long startMillis, int frameCount, long indexOffset,
+               String glyphs) {
+            this.width = width;
+            this.height = height;
+            this.fps = fps;
+            this.startMillis = startMillis;
+            this.frameCount = frameCount;
+            this.indexOffset = indexOffset;
+            this.glyphs = glyphs;
+            this.length = GLYPH_COUNT_OFFSET + 2 + 2 * glyphs.length();
+        }
+        
+        /**
+         * Read a header from the buffer's position, leaving it at the first record
+         */
+        public static Header read(ByteBuffer in) throws IOException {
+            if (in.remaining() < GLYPH_COUNT_OFFSET + 2 || in.getInt() != MAGIC) {
+                throw new IOException("Not an ASCII recording");
+            }
+            int version = in.getShort() & 0xFFFF;
+            if (version != VERSION) {
+                throw new IOException("Unsupported recording version " + version);
+            }
+            int width = in.getShort() & 0xFFFF;
+            int height = in.getShort() & 0xFFFF;
+            float fps = in.getFloat();
+            long startMillis = in.getLong();
+            int frameCount = in.getInt();
+            long indexOffset = in.getLong();
+            int glyphCount = in.getShort() & 0xFFFF;
+            if (in.remaining() < 2 * glyphCount) {
+                throw new IOException("Truncated recording header");
+            }
+            char[] glyphs = new char[glyphCount];
+            for (int i = 0; i < glyphCount; i++) {
+                glyphs[i] = in.getChar();
+            }
+            return new Header(width, height, fps, startMillis, frameCount, indexOffset, new String(glyphs));
+        }
+        
+        void write(ByteBuffer out) {
+            out.putInt(MAGIC);
+            out.putShort((short) VERSION);
+            out.putShort((short) width);
+            out.putShort((short) height);
+            out.putFloat(fps);
+            out.putLong(startMillis);
+            out.putInt(frameCount);
+            out.putLong(indexOffset);
+            out.putShort((short) glyphs.length());
+            for (int i = 0; i < glyphs.length(); i++) {
+                out.putChar(glyphs.charAt(i));
+            }
+        }
+        
+        public int getWidth() {
+            return width;
+        }
+        
+        public int getHeight() {
+            return height;
+        }
+        
+        public float getFps() {
+            return fps;
+        }
+        
+        public long getStartMillis() {
+            return startMillis;
+        }
+        
+        /**
+         * Frames in the recording; 0 if it was never closed
+         */
+        public int getFrameCount() {
+            return frameCount;
+        }
+        
+        /**
+         * File offset of the keyframe index; 0 if the recording was never closed
+         */
+        public long getIndexOffset() {
+            return indexOffset;
+        }
+        
+        public String getGlyphs() {
+            return glyphs;
+        }
+        
+        /**
+         * Header size in bytes, i.e. the offset of the first record
+         */
+        public int getLength() {
+            return length;
+        }
+    }
+    
+    /**
+     * Largest KEYFRAME payload for the given number of cells
+     */
+    public static int maxKeyframeBytes(int cells) {
+        return 4 + 2 * cells;
+    }
+    
+    /**
+     * Largest DELTA payload for the given number of cells
+     */
+    public static int maxDeltaBytes(int cells) {
+        return 3 * cells + 8;
+    }
+    
+    /**
+     * Run-length encode all cells into a KEYFRAME payload
+     */
+    public static void encodeKeyframe(byte[] cells, int width, int height, ByteBuffer out) {
+        out.putShort((short) width);
+        out.putShort((short) height);
+        int count = width * height;
+        int i = 0;
+        while (i < count) {
+            byte glyph = cells[i];
+            int run = 1;
+            while (i + run < count && cells[i + run] == glyph) {
+                run++;
+            }
+            putVarint(out, run);
+            out.put(glyph);
+            i += run;
+        }
+    }
+    
+    /**
+     * Encode the cells that differ from the previous frame of the same size
+     * as a DELTA payload; an unchanged frame gives an empty payload
+     */
+    public static void encodeDelta(byte[] cells, byte[] previous, int count, ByteBuffer out) {
+        int i = 0;
+        int skip = 0;
+        while (i < count) {
+            if (cells[i] == previous[i]) {
+                skip++;
+                i++;
+                continue;
+            }
+            byte glyph = cells[i];
+            int run = 1;
+            while (i + run < count && cells[i + run] == glyph && previous[i + run] != glyph) {
+                run++;
+            }
+            putVarint(out, skip);
+            putVarint(out, run);
+            out.put(glyph);
+            i += run;
+            skip = 0;
+        }
+    }
+    
+    /**
+     * Decode a KEYFRAME payload (after its width and height) into cells
+     */
+    public static void decodeKeyframe(ByteBuffer in, byte[] cells, int count) throws IOException {
+        int i = 0;
+        while (i < count) {
+            int run = getVarint(in);
+            byte glyph = in.get();
+            if (run > count - i) {
+                throw new IOException("Keyframe run past end of frame");
+            }
+            for (int end = i + run; i < end; i++) {
+                cells[i] = glyph;
+            }
+        }
+    }
+    
+    /**
+     * Apply a DELTA payload, which ends at the buffer's limit, to the previous cells
+     */
+    public static void decodeDelta(ByteBuffer in, byte[] cells, int count) throws IOException {
+        int i = 0;
+        while (in.hasRemaining()) {
+            i += getVarint(in);
+            int run = getVarint(in);
+            byte glyph = in.get();
+            if (i < 0 || run > count - i) {
+                throw new IOException("Delta run past end of frame");
+            }
+            for (int end = i + run; i < end; i++) {
+                cells[i] = glyph;
+            }
+        }
+    }
+    
+    /**
+     * Unsigned LEB128
+     */
+    public static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+    
+    public static int getVarint(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,339 @@
+package com.asciiart.recording;
+
+import com.asciiart.processor.ASCIIConverter;
+import com.asciiart.processor.GrayFrame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads an ASCII recording through a memory-mapped window and rebuilds its
+ * frames into a single reused {@link GrayFrame} whose cells hold glyph
+ * indexes; draw it with {@link #getGlyphTable()}.
+ *
+ * Seeking jumps through the keyframe index to the closest keyframe at or
+ * before the target and replays the deltas after it, so its cost is
+ * bounded by the keyframe interval rather than the position in the file.
+ * Recordings that were never closed have no index; one is built by a
+ * single scan when they are opened.
+ *
+ * Files larger than the window are mapped piece by piece, so the heap only
+ * ever holds the index and one frame whatever the file size. Not thread-safe.
+ */
+public class RecordingPlayer implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(RecordingPlayer.class);
+    
+    /** Bytes mapped at a time; a record never straddles two windows */
+    static final long WINDOW_BYTES = 256L * 1024 * 1024;
+    
+    private final Path path;
+    private final FileChannel channel;
+    private final long fileSize;
+    private final RecordingFormat.Header header;
+    private final long recordsEnd;
+    private final ASCIIConverter.GlyphTable glyphTable;
+    
+    // Mapped window [windowStart, windowStart + window.capacity())
+    private MappedByteBuffer window;
+    private long windowStart = -1;
+    
+    // Keyframe index
+    private int[] keyframeNumbers;
+    private int[] keyframeMillis;
+    private long[] keyframeOffsets;
+    private int keyframes;
+    private int frameCount;
+    
+    // Playback position: the frame in the cells and the offset of the record after it
+    private final GrayFrame frame = new GrayFrame();
+    private int frameNumber = -1;
+    private long frameMillis;
+    private long nextOffset;
+    
+    public RecordingPlayer(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            this.fileSize = channel.size();
+            ByteBuffer start = map(0, (int) Math.min(fileSize, 64 * 1024));
+            this.header = RecordingFormat.Header.read(start);
+            
+            String glyphs;
+            if (header.getIndexOffset() > 0) {
+                this.recordsEnd = header.getIndexOffset();
+                this.frameCount = header.getFrameCount();
+                glyphs = readIndex();
+            } else {
+                this.recordsEnd = fileSize;
+                glyphs = scanRecords();
+                logger.info("{} has no index; scanned {} frames", path, frameCount);
+            }
+            this.glyphTable = ASCIIConverter.GlyphTable.ofGlyphs(glyphs);
+            rewind();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Buffer over [offset, offset + length), remapping the window if the range is outside it
+     */
+    private ByteBuffer map(long offset, int length) throws IOException {
+        if (offset < 0 || offset + length > fileSize) {
+            throw new IOException("Recording truncated at offset " + offset);
+        }
+        if (windowStart < 0 || offset < windowStart || offset + length > windowStart + window.capacity()) {
+            long size = Math.min(fileSize - offset, Math.max(WINDOW_BYTES, length));
+            window = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+            windowStart = offset;
+        }
+        ByteBuffer view = window.duplicate();
+        view.position((int) (offset - windowStart));
+        view.limit(view.position() + length);
+        return view.slice();
+    }
+    
+    /**
+     * Load the keyframe index and the final glyph list written on close
+     */
+    private String readIndex() throws IOException {
+        ByteBuffer count = map(header.getIndexOffset(), 4);
+        keyframes = count.getInt();
+        if (keyframes < 0) {
+            throw new IOException("Corrupt recording index");
+        }
+        int entries = keyframes * RecordingFormat.INDEX_ENTRY_BYTES;
+        ByteBuffer index = map(header.getIndexOffset() + 4, entries + 2);
+        keyframeNumbers = new int[keyframes];
+        keyframeMillis = new int[keyframes];
+        keyframeOffsets = new long[keyframes];
+        for (int i = 0; i < keyframes; i++) {
+            keyframeNumbers[i] = index.getInt();
+            keyframeMillis[i] = index.getInt();
+            keyframeOffsets[i] = index.getLong();
+        }
+        int glyphCount = index.getShort() & 0xFFFF;
+        ByteBuffer glyphs = map(header.getIndexOffset() + 4 + entries + 2, 2 * glyphCount);
+        char[] chars = new char[glyphCount];
+        for (int i = 0; i < glyphCount; i++) {
+            chars[i] = glyphs.getChar();
+        }
+        return new String(chars);
+    }
+    
+    /**
+     * Walk the record headers of an unclosed recording, collecting keyframes
+     * and glyphs; a record cut short by a crash ends the recording
+     */
+    private String scanRecords() throws IOException {
+        StringBuilder glyphs = new StringBuilder(header.getGlyphs());
+        keyframeNumbers = new int[64];
+        keyframeMillis = new int[64];
+        keyframeOffsets = new long[64];
+        long offset = header.getLength();
+        while (offset + RecordingFormat.RECORD_HEADER_BYTES <= fileSize) {
+            ByteBuffer record = map(offset, RecordingFormat.RECORD_HEADER_BYTES);
+            byte type = record.get();
+            int millis = record.getInt();
+            int length = record.getInt();
+            long payload = offset + RecordingFormat.RECORD_HEADER_BYTES;
+            if (length < 0 || payload + length > fileSize) {
+                break;
+            }
+            if (type == RecordingFormat.GLYPHS) {
+                ByteBuffer added = map(payload, length);
+                for (int i = added.getShort() & 0xFFFF; i > 0; i--) {
+                    glyphs.append(added.getChar());
+                }
+            } else {
+                if (type == RecordingFormat.KEYFRAME) {
+                    if (keyframes == keyframeNumbers.length) {
+                        keyframeNumbers = Arrays.copyOf(keyframeNumbers, keyframes * 2);
+                        keyframeMillis = Arrays.copyOf(keyframeMillis, keyframes * 2);
+                        keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframes * 2);
+                    }
+                    keyframeNumbers[keyframes] = frameCount;
+                    keyframeMillis[keyframes] = millis;
+                    keyframeOffsets[keyframes] = offset;
+                    keyframes++;
+                }
+                frameCount++;
+            }
+            offset = payload + length;
+        }
+        return glyphs.toString();
+    }
+    
+    /**
+     * Go back to before the first frame; the next {@link #next()} shows it
+     */
+    public void rewind() {
+        frameNumber = -1;
+        frameMillis = 0;
+        nextOffset = keyframes > 0 ? keyframeOffsets[0] : recordsEnd;
+    }
+    
+    /**
+     * Advance to the next frame. Returns false at the end of the recording.
+     */
+    public boolean next() throws IOException {
+        while (nextOffset + RecordingFormat.RECORD_HEADER_BYTES <= recordsEnd) {
+            ByteBuffer record = map(nextOffset, RecordingFormat.RECORD_HEADER_BYTES);
+            byte type = record.get();
+            long millis = record.getInt() & 0xFFFFFFFFL;
+            int length = record.getInt();
+            long payloadOffset = nextOffset + RecordingFormat.RECORD_HEADER_BYTES;
+            if (length < 0 || payloadOffset + length > recordsEnd) {
+                return false;
+            }
+            nextOffset = payloadOffset + length;
+            
+            if (type == RecordingFormat.KEYFRAME) {
+                ByteBuffer payload = map(payloadOffset, length);
+                int width = payload.getShort() & 0xFFFF;
+                int height = payload.getShort() & 0xFFFF;
+                frame.resize(width, height);
+                RecordingFormat.decodeKeyframe(payload, frame.getData(), width * height);
+            } else if (type == RecordingFormat.DELTA) {
+                if (frameNumber < 0) {
+                    throw new IOException("Delta frame without a keyframe before it");
+                }
+                RecordingFormat.decodeDelta(map(payloadOffset, length), frame.getData(),
+                                            frame.getWidth() * frame.getHeight());
+            } else {
+                // Glyphs are all known from the index or the opening scan
+                continue;
+            }
+            frameNumber++;
+            frameMillis = millis;
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Show the given frame (clamped to the recording). Jumps to the closest
+     * keyframe at or before it unless the target is just ahead of the
+     * current frame, then replays deltas up to it.
+     */
+    public void seek(int target) throws IOException {
+        target = Math.max(0, Math.min(frameCount - 1, target));
+        int keyframe = Arrays.binarySearch(keyframeNumbers, 0, keyframes, target);
+        if (keyframe < 0) {
+            keyframe = -keyframe - 2;
+        }
+        if (keyframe < 0) {
+            return;
+        }
+        if (target < frameNumber || frameNumber < keyframeNumbers[keyframe]) {
+            frameNumber = keyframeNumbers[keyframe] - 1;
+            nextOffset = keyframeOffsets[keyframe];
+        }
+        while (frameNumber < target && next()) {
+            // Replay deltas up to the target
+        }
+    }
+    
+    /**
+     * Show the last frame recorded at or before the given time since the
+     * start, or the first frame for earlier times
+     */
+    public void seekMillis(long millis) throws IOException {
+        if (keyframes == 0) {
+            return;
+        }
+        // Last keyframe not later than the target
+        int low = 0;
+        int high = keyframes - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if ((keyframeMillis[middle] & 0xFFFFFFFFL) <= millis) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        seek(keyframeNumbers[low]);
+        long upcoming;
+        while ((upcoming = peekNextMillis()) >= 0 && upcoming <= millis) {
+            next();
+        }
+    }
+    
+    /**
+     * Recording time of the next frame without moving to it, or -1 at the end
+     */
+    private long peekNextMillis() throws IOException {
+        long offset = nextOffset;
+        while (offset + RecordingFormat.RECORD_HEADER_BYTES <= recordsEnd) {
+            ByteBuffer record = map(offset, RecordingFormat.RECORD_HEADER_BYTES);
+            byte type = record.get();
+            long millis = record.getInt() & 0xFFFFFFFFL;
+            int length = record.getInt();
+            if (type != RecordingFormat.GLYPHS) {
+                return millis;
+            }
+            offset += RecordingFormat.RECORD_HEADER_BYTES + length;
+        }
+        return -1;
+    }
+    
+    /**
+     * Current frame; cells are glyph indexes for {@link #getGlyphTable()}
+     */
+    public GrayFrame getFrame() {
+        return frame;
+    }
+    
+    /**
+     * Number of the current frame, or -1 before the first one
+     */
+    public int getFrameNumber() {
+        return frameNumber;
+    }
+    
+    /**
+     * Recording time of the current frame in milliseconds since the start
+     */
+    public long getFrameMillis() {
+        return frameMillis;
+    }
+    
+    public int getFrameCount() {
+        return frameCount;
+    }
+    
+    public int getKeyframeCount() {
+        return keyframes;
+    }
+    
+    public RecordingFormat.Header getHeader() {
+        return header;
+    }
+    
+    /**
+     * Table showing every glyph of the recording, for rendering {@link #getFrame()}
+     */
+    public ASCIIConverter.GlyphTable getGlyphTable() {
+        return glyphTable;
+    }
+    
+    public Path getPath() {
+        return path;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
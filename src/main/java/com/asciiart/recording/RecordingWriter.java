@@ -0,0 +1,295 @@
+package com.asciiart.recording;
+
+import com.asciiart.processor.ASCIIConverter;
+import com.asciiart.processor.GrayFrame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Appends displayed frames to an ASCII recording (see {@link RecordingFormat}).
+ *
+ * Every frame becomes a delta against the previous one, except for a
+ * keyframe every keyframeInterval frames, on a size change, and whenever
+ * the delta would not be much smaller than the keyframe. Records are
+ * collected in a direct buffer and written through a FileChannel once it
+ * fills up, so a frame costs one pass over its cells and no system call
+ * most of the time. Closing writes the keyframe index and patches the header.
+ *
+ * Not thread-safe; frames come from the render thread.
+ */
+public class RecordingWriter implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(RecordingWriter.class);
+    
+    private static final int BUFFER_BYTES = 256 * 1024;
+    // Payloads larger than this fraction of the cell count are written as keyframes
+    private static final int DELTA_KEYFRAME_DIVISOR = 2;
+    
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final int keyframeInterval;
+    private final long startNanos;
+    private long position;
+    
+    // Glyph list of the recording, and the glyph index of every code of the current table
+    private final char[] glyphs = new char[RecordingFormat.MAX_GLYPHS];
+    private int glyphCount;
+    private final byte[] indexOfCode = new byte[ASCIIConverter.GlyphTable.CODES];
+    private ASCIIConverter.GlyphTable mappedTable;
+    
+    // Glyph indexes of this frame and the previous one, and the payload being built
+    private byte[] cells = new byte[0];
+    private byte[] previous = new byte[0];
+    private int previousWidth = -1;
+    private int previousHeight = -1;
+    private ByteBuffer payload = ByteBuffer.allocate(0);
+    
+    // Keyframe index: frame number, millis and record offset per keyframe
+    private int[] keyframeNumbers = new int[64];
+    private int[] keyframeMillis = new int[64];
+    private long[] keyframeOffsets = new long[64];
+    private int keyframes;
+    private int frameCount;
+    private int framesSinceKeyframe;
+    private boolean closed;
+    
+    /**
+     * Create the file and write its header. The header glyphs are the
+     * charset in use; glyphs used later are appended as they show up.
+     */
+    public RecordingWriter(Path path, String charset, int width, int height, double fps,
+                           int keyframeInterval) throws IOException {
+        this.path = path;
+        this.keyframeInterval = Math.max(1, keyframeInterval);
+        this.startNanos = System.nanoTime();
+        
+        for (int i = 0; i < charset.length() && glyphCount < glyphs.length; i++) {
+            if (findGlyph(charset.charAt(i)) < 0) {
+                glyphs[glyphCount++] = charset.charAt(i);
+            }
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        RecordingFormat.Header header = new RecordingFormat.Header(width, height, (float) fps,
+                                                                   System.currentTimeMillis(), 0, 0,
+                                                                   new String(glyphs, 0, glyphCount));
+        header.write(buffer);
+        logger.info("Recording to {}", path);
+    }
+    
+    /**
+     * Append a frame as drawn with the given table, timestamped from
+     * System.nanoTime() relative to the start of the recording
+     */
+    public void writeFrame(GrayFrame frame, ASCIIConverter.GlyphTable table, long nanos) throws IOException {
+        if (closed) {
+            throw new IOException("Recording is closed");
+        }
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int count = width * height;
+        int millis = (int) Math.max(0, Math.min(0xFFFFFFFFL, (nanos - startNanos) / 1_000_000L));
+        if (table != mappedTable) {
+            mapGlyphs(table, millis);
+        }
+        if (cells.length < count) {
+            cells = new byte[count];
+            previous = new byte[count];
+        }
+        int maxPayload = Math.max(RecordingFormat.maxKeyframeBytes(count), RecordingFormat.maxDeltaBytes(count));
+        if (payload.capacity() < maxPayload) {
+            payload = ByteBuffer.allocate(maxPayload);
+        }
+        
+        byte[] data = frame.getData();
+        byte[] edges = frame.hasEdges() ? frame.getEdges() : null;
+        int stride = frame.getStride();
+        int i = 0;
+        for (int y = 0; y < height; y++) {
+            int row = y * stride;
+            for (int x = 0; x < width; x++) {
+                int edge = edges == null ? 0 : edges[row + x];
+                cells[i++] = indexOfCode[ASCIIConverter.GlyphTable.codeOf(data[row + x] & 0xFF, edge)];
+            }
+        }
+        
+        boolean keyframe = width != previousWidth || height != previousHeight
+                           || framesSinceKeyframe + 1 >= keyframeInterval;
+        payload.clear();
+        if (!keyframe) {
+            RecordingFormat.encodeDelta(cells, previous, count, payload);
+            if (payload.position() > count / DELTA_KEYFRAME_DIVISOR) {
+                keyframe = true;
+                payload.clear();
+            }
+        }
+        if (keyframe) {
+            RecordingFormat.encodeKeyframe(cells, width, height, payload);
+            addKeyframe(millis);
+            framesSinceKeyframe = 0;
+        } else {
+            framesSinceKeyframe++;
+        }
+        payload.flip();
+        putRecord(keyframe ? RecordingFormat.KEYFRAME : RecordingFormat.DELTA, millis, payload);
+        
+        byte[] swap = previous;
+        previous = cells;
+        cells = swap;
+        previousWidth = width;
+        previousHeight = height;
+        frameCount++;
+    }
+    
+    /**
+     * Map every code of a new table to a glyph index, appending unseen
+     * glyphs to the recording's list with a GLYPHS record
+     */
+    private void mapGlyphs(ASCIIConverter.GlyphTable table, int millis) throws IOException {
+        char[] chars = table.getChars();
+        int firstNew = glyphCount;
+        for (int code = 0; code < chars.length; code++) {
+            int index = findGlyph(chars[code]);
+            if (index < 0) {
+                if (glyphCount == glyphs.length) {
+                    throw new IOException("Recording uses more than " + glyphs.length + " glyphs");
+                }
+                index = glyphCount;
+                glyphs[glyphCount++] = chars[code];
+            }
+            indexOfCode[code] = (byte) index;
+        }
+        if (glyphCount > firstNew) {
+            ByteBuffer added = ByteBuffer.allocate(2 + 2 * (glyphCount - firstNew));
+            added.putShort((short) (glyphCount - firstNew));
+            for (int i = firstNew; i < glyphCount; i++) {
+                added.putChar(glyphs[i]);
+            }
+            added.flip();
+            putRecord(RecordingFormat.GLYPHS, millis, added);
+        }
+        mappedTable = table;
+    }
+    
+    private int findGlyph(char glyph) {
+        for (int i = 0; i < glyphCount; i++) {
+            if (glyphs[i] == glyph) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private void addKeyframe(int millis) {
+        if (keyframes == keyframeNumbers.length) {
+            keyframeNumbers = Arrays.copyOf(keyframeNumbers, keyframes * 2);
+            keyframeMillis = Arrays.copyOf(keyframeMillis, keyframes * 2);
+            keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframes * 2);
+        }
+        keyframeNumbers[keyframes] = frameCount;
+        keyframeMillis[keyframes] = millis;
+        keyframeOffsets[keyframes] = position + buffer.position();
+        keyframes++;
+    }
+    
+    private void putRecord(byte type, int millis, ByteBuffer content) throws IOException {
+        ensureSpace(RecordingFormat.RECORD_HEADER_BYTES);
+        buffer.put(type);
+        buffer.putInt(millis);
+        buffer.putInt(content.remaining());
+        if (content.remaining() > buffer.remaining()) {
+            flush();
+            if (content.remaining() > buffer.capacity()) {
+                writeFully(content);
+                return;
+            }
+        }
+        buffer.put(content);
+    }
+    
+    private void ensureSpace(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+    
+    /**
+     * Write buffered records to the file
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+    
+    private void writeFully(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            position += channel.write(source);
+        }
+    }
+    
+    /**
+     * Write the keyframe index, patch frame count and index offset into the
+     * header and close the file
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+            long indexOffset = position;
+            ByteBuffer index = ByteBuffer.allocate(4 + keyframes * RecordingFormat.INDEX_ENTRY_BYTES
+                                                   + 2 + 2 * glyphCount);
+            index.putInt(keyframes);
+            for (int i = 0; i < keyframes; i++) {
+                index.putInt(keyframeNumbers[i]);
+                index.putInt(keyframeMillis[i]);
+                index.putLong(keyframeOffsets[i]);
+            }
+            index.putShort((short) glyphCount);
+            for (int i = 0; i < glyphCount; i++) {
+                index.putChar(glyphs[i]);
+            }
+            index.flip();
+            writeFully(index);
+            
+            ByteBuffer patch = ByteBuffer.allocate(4 + 8);
+            patch.putInt(frameCount);
+            patch.putLong(indexOffset);
+            patch.flip();
+            long at = RecordingFormat.FRAME_COUNT_OFFSET;
+            while (patch.hasRemaining()) {
+                at += channel.write(patch, at);
+            }
+            logger.info("Recorded {} frames ({} keyframes, {} bytes) to {}", frameCount, keyframes,
+                        position, path);
+        } finally {
+            channel.close();
+        }
+    }
+    
+    public Path getPath() {
+        return path;
+    }
+    
+    public int getFrameCount() {
+        return frameCount;
+    }
+    
+    /**
+     * Bytes written so far, including records still buffered
+     */
+    public long getBytesWritten() {
+        return position + buffer.position();
+    }
+}
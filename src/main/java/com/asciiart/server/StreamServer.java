@@ -0,0 +1,808 @@
+package com.asciiart.server;
+
+import com.asciiart.metrics.StageMetrics;
+import com.asciiart.processor.ASCIIConverter;
+import com.asciiart.processor.GrayFrame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streams the displayed frames to any number of viewers from one selector
+ * thread. A viewer can be a raw TCP or telnet connection (anything that
+ * does not start with an HTTP request within a short time), a browser
+ * following GET /events as server-sent events, or a WebSocket; GET /
+ * serves a small page that shows the event stream.
+ *
+ * The render thread only copies the cells of each frame into a handoff
+ * frame. The server thread encodes the newest frame once per protocol in
+ * use into a shared buffer, and every viewer sends from that buffer at
+ * its own offset, so the cost of a frame does not grow with the number of
+ * viewers. Frames are full repaints: a viewer still busy with one frame
+ * when newer ones arrive continues with the newest once it is done, so a
+ * slow viewer skips frames instead of queueing them, and never holds more
+ * than the one frame it is sending.
+ *
+ * Frames are sent as plain glyphs (and edge glyphs) without colors.
+ */
+public class StreamServer implements StreamServerMXBean, Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(StreamServer.class);
+    
+    static final String OBJECT_NAME = "com.asciiart:type=StreamServer";
+    
+    private static final long SELECT_MILLIS = 100;
+    private static final int REQUEST_BYTES = 4096;
+    private static final long RATE_WINDOW_NANOS = 1_000_000_000L;
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    
+    private static final byte ESC = 0x1B;
+    private static final byte[] CLEAR_SCREEN = {ESC, '[', '2', 'J'};
+    private static final byte[] CURSOR_HOME = {ESC, '[', 'H'};
+    private static final byte[] CLEAR_LINE_END = {ESC, '[', 'K'};
+    private static final byte[] CLEAR_BELOW = {ESC, '[', 'J'};
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] SSE_DATA = "data: ".getBytes(StandardCharsets.US_ASCII);
+    // Largest WebSocket frame header: opcode, length marker, 64-bit length
+    private static final int WEBSOCKET_HEADER_BYTES = 10;
+    
+    private static final String PAGE =
+        "<!DOCTYPE html>\n<html><head><meta charset=\"utf-8\"><title>ASCII Art Camera</title></head>\n"
+        + "<body style=\"margin:0;background:#000;color:#ccc\">\n"
+        + "<pre id=\"frame\" style=\"margin:0;font:12px/1 monospace\"></pre>\n"
+        + "<script>\nnew EventSource('/events').onmessage = function (e) {\n"
+        + "  document.getElementById('frame').textContent = e.data;\n};\n</script>\n</body></html>\n";
+    
+    /**
+     * How a client is served. Only the first three receive frames; the
+     * ordinal of those indexes the per-protocol encodings of a frame.
+     */
+    enum Protocol {
+        RAW, SSE, WEBSOCKET, PAGE, PENDING;
+        
+        static final int STREAMING = 3;
+        
+        boolean isStreaming() {
+            return ordinal() < STREAMING;
+        }
+    }
+    
+    /**
+     * One frame encoded for each streaming protocol on demand; reused once
+     * it is neither the newest frame nor being sent to anyone
+     */
+    private static final class EncodedFrame {
+        final ByteBuffer[] buffers = new ByteBuffer[Protocol.STREAMING];
+        final int[] start = new int[Protocol.STREAMING];
+        final int[] end = new int[Protocol.STREAMING];
+        final boolean[] encoded = new boolean[Protocol.STREAMING];
+        long sequence;
+        int senders;
+    }
+    
+    private static final class Client {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final long connectedNanos;
+        Protocol protocol = Protocol.PENDING;
+        ByteBuffer request = ByteBuffer.allocate(REQUEST_BYTES);
+        // Response headers or page, sent before any frame
+        ByteBuffer preamble;
+        boolean closeWhenSent;
+        // Frame being sent and the progress through its encoding
+        EncodedFrame sending;
+        int position;
+        int end;
+        long lastSequence = -1;
+        long lastProgressNanos;
+        
+        Client(SocketChannel channel, SelectionKey key, long now) {
+            this.channel = channel;
+            this.key = key;
+            this.connectedNanos = now;
+            this.lastProgressNanos = now;
+        }
+    }
+    
+    private final String host;
+    private final int port;
+    private final int maxClients;
+    private long detectNanos = 300_000_000L;
+    private long stallNanos = 30_000_000_000L;
+    private int sendBufferBytes = 65536;
+    private StageMetrics metrics = StageMetrics.disabled();
+    
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread serverThread;
+    private volatile boolean running = false;
+    private ObjectName registeredName;
+    
+    // Handoff from the render thread; the server thread swaps it with workingCells
+    private final Object handoffLock = new Object();
+    private GrayFrame handoffCells = new GrayFrame();
+    private ASCIIConverter.GlyphTable handoffTable;
+    private boolean handoffReady = false;
+    
+    // Server thread state; workingCells hold the newest frame until the next handoff
+    private final List<Client> clients = new ArrayList<>();
+    private final List<EncodedFrame> framePool = new ArrayList<>();
+    private GrayFrame workingCells = new GrayFrame();
+    private ASCIIConverter.GlyphTable workingTable;
+    private EncodedFrame latest;
+    private long nextSequence = 0;
+    private long rateWindowStart;
+    private long rateWindowBytes;
+    private MessageDigest sha1;
+    
+    // Written by the server thread only, read anywhere
+    private volatile int streamingClients = 0;
+    private final int[] protocolClients = new int[Protocol.values().length];
+    private volatile int clientCount = 0;
+    private volatile long connectionsAccepted = 0;
+    private volatile long connectionsRejected = 0;
+    private volatile long framesEncoded = 0;
+    private volatile long framesSent = 0;
+    private volatile long framesSkipped = 0;
+    private volatile long bytesSent = 0;
+    private volatile double bytesPerSecond = 0.0;
+    
+    /**
+     * @param port TCP port, or 0 for any free one (see {@link #getPort()})
+     * @param maxClients connections beyond this are closed straight away
+     */
+    public StreamServer(String host, int port, int maxClients) {
+        this.host = host;
+        this.port = port;
+        this.maxClients = Math.max(1, maxClients);
+    }
+    
+    /**
+     * Time a new connection gets to send an HTTP request before it is
+     * treated as a raw viewer
+     */
+    public void setDetectMillis(long millis) {
+        this.detectNanos = millis * 1_000_000L;
+    }
+    
+    /**
+     * Close viewers that have taken no bytes of their frame for this long
+     */
+    public void setStallMillis(long millis) {
+        this.stallNanos = millis * 1_000_000L;
+    }
+    
+    /**
+     * Socket send buffer per viewer. Kept small so a slow viewer is noticed
+     * and skips frames instead of the kernel queueing seconds of them;
+     * 0 leaves the system default.
+     */
+    public void setSendBufferBytes(int bytes) {
+        this.sendBufferBytes = Math.max(0, bytes);
+    }
+    
+    /**
+     * Record the time taken to encode each frame as STREAM
+     */
+    public void setMetrics(StageMetrics metrics) {
+        this.metrics = metrics != null ? metrics : StageMetrics.disabled();
+    }
+    
+    public void start() throws IOException {
+        try {
+            sha1 = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-1 not available for WebSocket handshakes", e);
+        }
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(new InetSocketAddress(host, port), 128);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+        rateWindowStart = System.nanoTime();
+        running = true;
+        serverThread = new Thread(this::serveLoop, "Stream-Server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+        logger.info("Streaming frames on {}:{}", host, getPort());
+    }
+    
+    /**
+     * Port the server listens on, once started
+     */
+    public int getPort() {
+        if (serverChannel == null || !serverChannel.isOpen()) {
+            return port;
+        }
+        try {
+            return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            return port;
+        }
+    }
+    
+    /**
+     * Offer a displayed frame to the viewers. Copies the cells and returns
+     * without waiting; does nothing while no one is watching. A frame not
+     * yet picked up by the server thread is replaced by the next one.
+     */
+    public void publish(GrayFrame frame, ASCIIConverter.GlyphTable table) {
+        if (streamingClients == 0 || !running) {
+            return;
+        }
+        synchronized (handoffLock) {
+            handoffCells.copyFrom(frame);
+            handoffTable = table;
+            handoffReady = true;
+        }
+        selector.wakeup();
+    }
+    
+    private void serveLoop() {
+        while (running) {
+            try {
+                selector.select(SELECT_MILLIS);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Client client = (Client) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                read(client);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                pump(client);
+                            }
+                        } catch (IOException e) {
+                            logger.debug("Viewer connection failed: {}", e.getMessage());
+                            disconnect(client);
+                        }
+                    }
+                }
+                takeHandoff();
+                housekeeping(System.nanoTime());
+            } catch (IOException e) {
+                logger.warn("Stream server error: {}", e.getMessage());
+            }
+        }
+        for (int i = clients.size() - 1; i >= 0; i--) {
+            disconnect(clients.get(i));
+        }
+        logger.debug("Stream server stopped");
+    }
+    
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            if (clients.size() >= maxClients) {
+                connectionsRejected++;
+                channel.close();
+                continue;
+            }
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            if (sendBufferBytes > 0) {
+                channel.setOption(StandardSocketOptions.SO_SNDBUF, sendBufferBytes);
+            }
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            Client client = new Client(channel, key, System.nanoTime());
+            key.attach(client);
+            clients.add(client);
+            clientCount = clients.size();
+            protocolClients[Protocol.PENDING.ordinal()]++;
+            connectionsAccepted++;
+        }
+    }
+    
+    private void read(Client client) throws IOException {
+        if (client.protocol != Protocol.PENDING) {
+            // Viewers have nothing to say; drain input and notice when they leave
+            ByteBuffer scratch = client.request;
+            scratch.clear();
+            int n;
+            while ((n = client.channel.read(scratch)) > 0) {
+                // A WebSocket close frame (opcode 8) ends the stream
+                if (client.protocol == Protocol.WEBSOCKET && (scratch.get(0) & 0x0F) == 8) {
+                    disconnect(client);
+                    return;
+                }
+                scratch.clear();
+            }
+            if (n < 0) {
+                disconnect(client);
+            }
+            return;
+        }
+        
+        int n = client.channel.read(client.request);
+        if (n < 0) {
+            disconnect(client);
+            return;
+        }
+        ByteBuffer request = client.request;
+        if (request.position() == 0) {
+            return;
+        }
+        // Telnet option negotiation or keystrokes rather than an HTTP request
+        if (request.get(0) != 'G') {
+            begin(client, Protocol.RAW, null);
+            return;
+        }
+        String text = new String(request.array(), 0, request.position(), StandardCharsets.ISO_8859_1);
+        int headersEnd = text.indexOf("\r\n\r\n");
+        if (headersEnd < 0) {
+            if (!request.hasRemaining()) {
+                disconnect(client);
+            }
+            return;
+        }
+        handleRequest(client, text.substring(0, headersEnd));
+    }
+    
+    /**
+     * Answer a GET: WebSocket upgrade, event stream or the viewer page
+     */
+    private void handleRequest(Client client, String head) throws IOException {
+        String[] lines = head.split("\r\n");
+        String[] requestLine = lines[0].split(" ");
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0) {
+                headers.put(lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                            lines[i].substring(colon + 1).trim());
+            }
+        }
+        String path = requestLine.length > 1 ? requestLine[1] : "/";
+        
+        if (!requestLine[0].equals("GET")) {
+            begin(client, Protocol.PAGE, response("405 Method Not Allowed", "text/plain", "GET only\n"));
+            return;
+        }
+        String upgrade = headers.getOrDefault("upgrade", "");
+        String key = headers.get("sec-websocket-key");
+        if (upgrade.equalsIgnoreCase("websocket") && key != null) {
+            String accept = Base64.getEncoder().encodeToString(
+                sha1.digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.US_ASCII)));
+            begin(client, Protocol.WEBSOCKET, ascii("HTTP/1.1 101 Switching Protocols\r\n"
+                                                     + "Upgrade: websocket\r\nConnection: Upgrade\r\n"
+                                                     + "Sec-WebSocket-Accept: " + accept + "\r\n\r\n"));
+        } else if (path.startsWith("/events") || headers.getOrDefault("accept", "").contains("text/event-stream")) {
+            begin(client, Protocol.SSE, ascii("HTTP/1.1 200 OK\r\nContent-Type: text/event-stream; charset=utf-8\r\n"
+                                              + "Cache-Control: no-cache\r\nConnection: keep-alive\r\n\r\n"));
+        } else if (path.equals("/") || path.startsWith("/index")) {
+            begin(client, Protocol.PAGE, response("200 OK", "text/html; charset=utf-8", PAGE));
+        } else {
+            begin(client, Protocol.PAGE, response("404 Not Found", "text/plain", "Not found\n"));
+        }
+    }
+    
+    private static ByteBuffer response(String status, String contentType, String body) {
+        byte[] content = body.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ascii("HTTP/1.1 " + status + "\r\nContent-Type: " + contentType
+                                  + "\r\nContent-Length: " + content.length + "\r\nConnection: close\r\n\r\n",
+                                  content.length);
+        buffer.put(content).flip();
+        return buffer;
+    }
+    
+    private static ByteBuffer ascii(String text) {
+        ByteBuffer buffer = ascii(text, 0);
+        buffer.flip();
+        return buffer;
+    }
+    
+    private static ByteBuffer ascii(String text, int extra) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + extra);
+        buffer.put(bytes);
+        return buffer;
+    }
+    
+    /**
+     * Settle a pending client on a protocol and send what it gets first
+     */
+    private void begin(Client client, Protocol protocol, ByteBuffer preamble) throws IOException {
+        protocolClients[client.protocol.ordinal()]--;
+        protocolClients[protocol.ordinal()]++;
+        client.protocol = protocol;
+        client.request.clear();
+        client.lastProgressNanos = System.nanoTime();
+        if (protocol == Protocol.RAW) {
+            preamble = ByteBuffer.wrap(CLEAR_SCREEN);
+        }
+        client.preamble = preamble;
+        if (protocol.isStreaming()) {
+            streamingClients++;
+        } else {
+            client.closeWhenSent = true;
+        }
+        pump(client);
+    }
+    
+    /**
+     * Write as much as the socket takes: the preamble, then the frame in
+     * progress, then the newest frame if it has not been sent yet. Waits
+     * for OP_WRITE only while bytes are left over.
+     */
+    private void pump(Client client) throws IOException {
+        while (true) {
+            if (client.preamble != null) {
+                bytesSent += client.channel.write(client.preamble);
+                if (client.preamble.hasRemaining()) {
+                    interest(client, SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                client.preamble = null;
+                if (client.closeWhenSent) {
+                    disconnect(client);
+                    return;
+                }
+            }
+            if (client.sending == null) {
+                if (latest == null || latest.sequence <= client.lastSequence || !client.protocol.isStreaming()) {
+                    interest(client, SelectionKey.OP_READ);
+                    return;
+                }
+                if (client.lastSequence >= 0) {
+                    framesSkipped += latest.sequence - client.lastSequence - 1;
+                }
+                int p = client.protocol.ordinal();
+                if (!latest.encoded[p]) {
+                    encode(latest, client.protocol);
+                }
+                client.sending = latest;
+                client.position = latest.start[p];
+                client.end = latest.end[p];
+                latest.senders++;
+            }
+            
+            // Every client of a protocol shares the buffer; only this thread moves its position
+            ByteBuffer buffer = client.sending.buffers[client.protocol.ordinal()];
+            buffer.limit(client.end).position(client.position);
+            int written = client.channel.write(buffer);
+            if (written > 0) {
+                client.position += written;
+                client.lastProgressNanos = System.nanoTime();
+                bytesSent += written;
+            }
+            if (client.position < client.end) {
+                interest(client, SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            client.lastSequence = client.sending.sequence;
+            client.sending.senders--;
+            client.sending = null;
+            framesSent++;
+        }
+    }
+    
+    private static void interest(Client client, int ops) {
+        if (client.key.isValid() && client.key.interestOps() != ops) {
+            client.key.interestOps(ops);
+        }
+    }
+    
+    /**
+     * Make the newest handed-off frame the one viewers get next and start
+     * sending it to everyone who is idle
+     */
+    private void takeHandoff() {
+        synchronized (handoffLock) {
+            if (!handoffReady) {
+                return;
+            }
+            GrayFrame swap = workingCells;
+            workingCells = handoffCells;
+            handoffCells = swap;
+            workingTable = handoffTable;
+            handoffReady = false;
+        }
+        
+        EncodedFrame next = null;
+        for (EncodedFrame candidate : framePool) {
+            if (candidate.senders == 0 && candidate != latest) {
+                next = candidate;
+                break;
+            }
+        }
+        if (next == null) {
+            next = new EncodedFrame();
+            framePool.add(next);
+        }
+        next.sequence = nextSequence++;
+        for (int p = 0; p < Protocol.STREAMING; p++) {
+            next.encoded[p] = false;
+        }
+        latest = next;
+        framesEncoded++;
+        
+        for (int i = clients.size() - 1; i >= 0; i--) {
+            Client client = clients.get(i);
+            if (client.sending == null && client.preamble == null && client.protocol.isStreaming()) {
+                try {
+                    pump(client);
+                } catch (IOException e) {
+                    logger.debug("Viewer connection failed: {}", e.getMessage());
+                    disconnect(client);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Encode the newest cells for one protocol into the frame's buffer. Only
+     * ever called for {@link #latest}, whose cells are still in workingCells.
+     */
+    private void encode(EncodedFrame frame, Protocol protocol) {
+        long start = System.nanoTime();
+        GrayFrame cells = workingCells;
+        ASCIIConverter.GlyphTable table = workingTable;
+        int width = cells.getWidth();
+        int height = cells.getHeight();
+        int p = protocol.ordinal();
+        int capacity = width * height * table.getBytesPerGlyph() + height * (SSE_DATA.length + 2)
+                       + WEBSOCKET_HEADER_BYTES + CURSOR_HOME.length + CLEAR_BELOW.length;
+        ByteBuffer out = frame.buffers[p];
+        if (out == null || out.capacity() < capacity) {
+            out = ByteBuffer.allocateDirect(capacity + capacity / 4);
+            frame.buffers[p] = out;
+        }
+        out.clear();
+        
+        int first = 0;
+        if (protocol == Protocol.RAW) {
+            out.put(CURSOR_HOME);
+            for (int y = 0; y < height; y++) {
+                if (y > 0) {
+                    out.put(CRLF);
+                }
+                putRow(cells, table, y, out);
+                out.put(CLEAR_LINE_END);
+            }
+            out.put(CLEAR_BELOW);
+        } else if (protocol == Protocol.SSE) {
+            for (int y = 0; y < height; y++) {
+                out.put(SSE_DATA);
+                putRow(cells, table, y, out);
+                out.put((byte) '\n');
+            }
+            out.put((byte) '\n');
+        } else {
+            // Rows first, then the header right before them once the length is known
+            out.position(WEBSOCKET_HEADER_BYTES);
+            for (int y = 0; y < height; y++) {
+                if (y > 0) {
+                    out.put((byte) '\n');
+                }
+                putRow(cells, table, y, out);
+            }
+            int length = out.position() - WEBSOCKET_HEADER_BYTES;
+            if (length < 126) {
+                first = WEBSOCKET_HEADER_BYTES - 2;
+                out.put(first + 1, (byte) length);
+            } else if (length < 65536) {
+                first = WEBSOCKET_HEADER_BYTES - 4;
+                out.put(first + 1, (byte) 126);
+                out.putShort(first + 2, (short) length);
+            } else {
+                first = 0;
+                out.put(first + 1, (byte) 127);
+                out.putLong(first + 2, length);
+            }
+            // Final text frame
+            out.put(first, (byte) 0x81);
+        }
+        frame.start[p] = first;
+        frame.end[p] = out.position();
+        frame.encoded[p] = true;
+        metrics.recordSince(StageMetrics.Stage.STREAM, start);
+    }
+    
+    private static void putRow(GrayFrame cells, ASCIIConverter.GlyphTable table, int y, ByteBuffer out) {
+        byte[] gray = cells.getData();
+        byte[] edges = cells.hasEdges() ? cells.getEdges() : null;
+        byte[] encoded = table.getEncoded();
+        byte[] length = table.getEncodedLength();
+        int stride = table.getBytesPerGlyph();
+        for (int i = y * cells.getStride(), end = i + cells.getWidth(); i < end; i++) {
+            int code = edges != null ? ASCIIConverter.GlyphTable.codeOf(gray[i] & 0xFF, edges[i])
+                                     : gray[i] & 0xFF;
+            out.put(encoded, code * stride, length[code]);
+        }
+    }
+    
+    /**
+     * Settle clients that never sent a request, drop stalled ones and roll
+     * the throughput window
+     */
+    private void housekeeping(long now) {
+        for (int i = clients.size() - 1; i >= 0; i--) {
+            Client client = clients.get(i);
+            try {
+                if (client.protocol == Protocol.PENDING && client.request.position() == 0
+                    && now - client.connectedNanos >= detectNanos) {
+                    begin(client, Protocol.RAW, null);
+                } else if (client.protocol == Protocol.PENDING && now - client.connectedNanos >= stallNanos) {
+                    disconnect(client);
+                } else if ((client.sending != null || client.preamble != null)
+                           && now - client.lastProgressNanos >= stallNanos) {
+                    logger.info("Dropping stalled viewer {}", client.channel.getRemoteAddress());
+                    disconnect(client);
+                }
+            } catch (IOException e) {
+                disconnect(client);
+            }
+        }
+        
+        if (now - rateWindowStart >= RATE_WINDOW_NANOS) {
+            long bytes = bytesSent;
+            bytesPerSecond = (bytes - rateWindowBytes) * 1e9 / (now - rateWindowStart);
+            rateWindowBytes = bytes;
+            rateWindowStart = now;
+        }
+    }
+    
+    private void disconnect(Client client) {
+        if (!clients.remove(client)) {
+            return;
+        }
+        clientCount = clients.size();
+        protocolClients[client.protocol.ordinal()]--;
+        if (client.protocol.isStreaming()) {
+            streamingClients--;
+        }
+        if (client.sending != null) {
+            client.sending.senders--;
+            client.sending = null;
+        }
+        client.key.cancel();
+        try {
+            client.channel.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close viewer connection: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Expose the server metrics through the platform MBean server
+     */
+    public void register() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            registeredName = name;
+        } catch (Exception e) {
+            logger.warn("Could not register stream server MBean: {}", e.getMessage());
+        }
+    }
+    
+    public void unregister() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+        } catch (Exception e) {
+            logger.warn("Could not unregister stream server MBean: {}", e.getMessage());
+        }
+        registeredName = null;
+    }
+    
+    /**
+     * Disconnect every viewer and stop listening
+     */
+    @Override
+    public void close() throws IOException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            serverThread.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        serverChannel.close();
+        selector.close();
+        unregister();
+    }
+    
+    /**
+     * One-line summary for the status line
+     */
+    public String summary() {
+        return String.format("Viewers: %d (%.0fKB/s, skip %d)", streamingClients, bytesPerSecond / 1024,
+                             framesSkipped);
+    }
+    
+    @Override
+    public int getClients() {
+        return clientCount;
+    }
+    
+    /**
+     * Connections receiving frames
+     */
+    public int getStreamingClients() {
+        return streamingClients;
+    }
+    
+    @Override
+    public Map<String, Integer> getClientsByProtocol() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (Protocol protocol : Protocol.values()) {
+            counts.put(protocol.name().toLowerCase(Locale.ROOT), protocolClients[protocol.ordinal()]);
+        }
+        return counts;
+    }
+    
+    @Override
+    public long getConnectionsAccepted() {
+        return connectionsAccepted;
+    }
+    
+    @Override
+    public long getConnectionsRejected() {
+        return connectionsRejected;
+    }
+    
+    @Override
+    public long getFramesEncoded() {
+        return framesEncoded;
+    }
+    
+    @Override
+    public long getFramesSent() {
+        return framesSent;
+    }
+    
+    @Override
+    public long getFramesSkipped() {
+        return framesSkipped;
+    }
+    
+    @Override
+    public long getBytesSent() {
+        return bytesSent;
+    }
+    
+    @Override
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+}
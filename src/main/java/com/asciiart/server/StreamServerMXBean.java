@@ -0,0 +1,48 @@
+package com.asciiart.server;
+
+import java.util.Map;
+
+/**
+ * JMX view of the streaming server, registered as com.asciiart:type=StreamServer
+ */
+public interface StreamServerMXBean {
+    
+    /**
+     * Open connections, including ones whose protocol is not known yet
+     */
+    int getClients();
+    
+    /**
+     * Open connections per protocol
+     */
+    Map<String, Integer> getClientsByProtocol();
+    
+    long getConnectionsAccepted();
+    
+    /**
+     * Connections closed straight away because the client limit was reached
+     */
+    long getConnectionsRejected();
+    
+    /**
+     * Frames encoded for clients; frames published while no one is watching are not counted
+     */
+    long getFramesEncoded();
+    
+    /**
+     * Frames sent in full, summed over all clients
+     */
+    long getFramesSent();
+    
+    /**
+     * Frames clients missed because they were still busy with an earlier one
+     */
+    long getFramesSkipped();
+    
+    long getBytesSent();
+    
+    /**
+     * Bytes sent per second over the last complete window
+     */
+    double getBytesPerSecond();
+}
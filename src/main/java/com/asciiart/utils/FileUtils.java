@@ -6,6 +6,11 @@ import org.slf4j.LoggerFactory;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -15,6 +20,46 @@ import java.time.format.DateTimeFormatter;
 public class FileUtils {
     private static final Logger logger = LoggerFactory.getLogger(FileUtils.class);
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+    private static final DateTimeFormatter recordingFormatter = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss_SSS");
+    
+    /**
+     * Path for a new recording in the given directory, which is created if needed
+     */
+    public static Path newRecordingPath(String directory, String extension) throws IOException {
+        Path dir = Paths.get(directory.isEmpty() ? "." : directory);
+        Files.createDirectories(dir);
+        return dir.resolve("ascii_rec_" + LocalDateTime.now().format(recordingFormatter) + extension);
+    }
+    
+    /**
+     * Unique path for a saved frame: capture time to the millisecond plus a
+     * sequence number, so names sort in capture order. Creates the directory.
+     */
+    public static Path newSavePath(String directory, LocalDateTime captureTime, long sequence) throws IOException {
+        Path dir = Paths.get(directory.isEmpty() ? "." : directory);
+        Files.createDirectories(dir);
+        return dir.resolve(String.format("ascii_art_%s_%06d.txt", captureTime.format(recordingFormatter), sequence));
+    }
+    
+    /**
+     * Write a saved frame with its metadata; fails rather than overwrite an existing file
+     */
+    public static void writeAsciiArtWithMetadata(Path file, FrameSaver.Snapshot snapshot) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                                                             StandardOpenOption.CREATE_NEW)) {
+            writer.write("ASCII Art Camera - Captured Frame\n");
+            writer.write("=====================================\n");
+            writer.write("Timestamp: " + snapshot.getCaptureTime() + "\n");
+            writer.write("Sequence: " + snapshot.getSequence() + "\n");
+            writer.write("Resolution: " + snapshot.getWidth() + "x" + snapshot.getHeight() + "\n");
+            writer.write("Character Set: " + snapshot.getCharset() + "\n");
+            writer.write("Contrast: " + snapshot.getContrast() + "\n");
+            writer.write("Brightness: " + snapshot.getBrightness() + "\n");
+            writer.write("=====================================\n\n");
+            writer.write(snapshot.getAsciiArt());
+            writer.write("\n=====================================\n");
+        }
+    }
     
     /**
      * Save ASCII art to a text file
@@ -31,18 +76,17 @@ public class FileUtils {
             writer.write("\n=====================================\n");
             
             logger.info("ASCII art saved to {}", filename);
-            System.out.println("\n>>> Frame saved to: " + filename);
             return true;
             
         } catch (IOException e) {
             logger.error("Failed to save ASCII art", e);
-            System.err.println(">>> Error saving frame: " + e.getMessage());
             return false;
         }
     }
     
     /**
-     * Save ASCII art with metadata
+     * Save ASCII art with metadata synchronously; the camera loop uses
+     * {@link FrameSaver} instead so rendering never waits on the disk
      */
     public static boolean saveAsciiArtWithMetadata(String asciiArt, String charset, 
                                                   double contrast, int brightness,
@@ -63,12 +107,10 @@ public class FileUtils {
             writer.write("\n=====================================\n");
             
             logger.info("ASCII art with metadata saved to {}", filename);
-            System.out.println("\n>>> Frame saved to: " + filename);
             return true;
             
         } catch (IOException e) {
             logger.error("Failed to save ASCII art with metadata", e);
-            System.err.println(">>> Error saving frame: " + e.getMessage());
             return false;
         }
     }
@@ -0,0 +1,234 @@
+package com.asciiart.utils;
+
+import com.asciiart.metrics.StageMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Saves frames on a background thread so the render thread never touches
+ * the disk. Frames are handed over as immutable snapshots through a
+ * bounded queue; when the queue is full the snapshot is dropped and
+ * counted rather than waiting. The writer drains whatever has piled up and
+ * writes it as one batch, reporting one status message per batch instead
+ * of one per file.
+ *
+ * File names carry the capture time to the millisecond plus a sequence
+ * number, so they are unique and sort in capture order even for bursts.
+ */
+public class FrameSaver {
+    private static final Logger logger = LoggerFactory.getLogger(FrameSaver.class);
+    
+    private static final int MAX_BATCH = 64;
+    
+    /**
+     * One frame as it was displayed, with the settings it was drawn with
+     */
+    public static final class Snapshot {
+        private final String asciiArt;
+        private final String charset;
+        private final double contrast;
+        private final int brightness;
+        private final int width;
+        private final int height;
+        private final LocalDateTime captureTime;
+        private final long sequence;
+        
+        Snapshot(String asciiArt, String charset, double contrast, int brightness, int width, int height,
+                 LocalDateTime captureTime, long sequence) {
+            this.asciiArt = asciiArt;
+            this.charset = charset;
+            this.contrast = contrast;
+            this.brightness = brightness;
+            this.width = width;
+            this.height = height;
+            this.captureTime = captureTime;
+            this.sequence = sequence;
+        }
+        
+        public String getAsciiArt() {
+            return asciiArt;
+        }
+        
+        public String getCharset() {
+            return charset;
+        }
+        
+        public double getContrast() {
+            return contrast;
+        }
+        
+        public int getBrightness() {
+            return brightness;
+        }
+        
+        public int getWidth() {
+            return width;
+        }
+        
+        public int getHeight() {
+            return height;
+        }
+        
+        public LocalDateTime getCaptureTime() {
+            return captureTime;
+        }
+        
+        public long getSequence() {
+            return sequence;
+        }
+    }
+    
+    private final String directory;
+    private final BlockingQueue<Snapshot> queue;
+    private final List<Snapshot> batch = new ArrayList<>(MAX_BATCH);
+    private Thread writerThread;
+    private volatile boolean running = false;
+    private Consumer<String> statusListener = message -> { };
+    private StageMetrics metrics = StageMetrics.disabled();
+    
+    // Sequence is assigned on the submitting thread; counters are read anywhere
+    private long nextSequence = 0;
+    private volatile long savedFrames = 0;
+    private volatile long droppedFrames = 0;
+    private volatile long failedFrames = 0;
+    
+    /**
+     * @param capacity snapshots that may wait for the writer
+     */
+    public FrameSaver(String directory, int capacity) {
+        this.directory = directory;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    }
+    
+    /**
+     * Called on the writer thread with a short message after every batch
+     */
+    public void setStatusListener(Consumer<String> statusListener) {
+        this.statusListener = statusListener != null ? statusListener : message -> { };
+    }
+    
+    /**
+     * Record the time taken to write each file as SAVE
+     */
+    public void setMetrics(StageMetrics metrics) {
+        this.metrics = metrics != null ? metrics : StageMetrics.disabled();
+    }
+    
+    public void start() {
+        running = true;
+        writerThread = new Thread(this::writeLoop, "Frame-Saver");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        logger.info("Frame saver started, writing to {}", directory);
+    }
+    
+    /**
+     * Queue a frame for saving without waiting. Returns false if the queue
+     * was full and the frame was dropped. Render thread only.
+     */
+    public boolean submit(String asciiArt, String charset, double contrast, int brightness,
+                          int width, int height) {
+        Snapshot snapshot = new Snapshot(asciiArt, charset, contrast, brightness, width, height,
+                                         LocalDateTime.now(), nextSequence);
+        if (!queue.offer(snapshot)) {
+            droppedFrames++;
+            return false;
+        }
+        nextSequence++;
+        return true;
+    }
+    
+    private void writeLoop() {
+        while (running || !queue.isEmpty()) {
+            try {
+                Snapshot first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                writeBatch();
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        logger.debug("Frame saver stopped");
+    }
+    
+    private void writeBatch() {
+        int saved = 0;
+        Path last = null;
+        for (Snapshot snapshot : batch) {
+            long start = System.nanoTime();
+            try {
+                last = FileUtils.newSavePath(directory, snapshot.getCaptureTime(), snapshot.getSequence());
+                FileUtils.writeAsciiArtWithMetadata(last, snapshot);
+                saved++;
+            } catch (IOException e) {
+                failedFrames++;
+                logger.error("Failed to save frame {}", snapshot.getSequence(), e);
+            }
+            metrics.recordSince(StageMetrics.Stage.SAVE, start);
+        }
+        savedFrames += saved;
+        int failed = batch.size() - saved;
+        batch.clear();
+        
+        if (failed > 0) {
+            statusListener.accept("Save failed for " + failed + " frame(s)");
+        } else if (saved == 1) {
+            statusListener.accept("Frame saved to " + last.getFileName());
+        } else if (saved > 1) {
+            statusListener.accept("Saved " + saved + " frames, last " + last.getFileName());
+        }
+        logger.info("Saved {} frame(s) to {}", saved, directory);
+    }
+    
+    /**
+     * Finish writing queued frames, waiting at most the given time, and stop
+     */
+    public void stop(long timeoutMillis) {
+        running = false;
+        if (writerThread == null) {
+            return;
+        }
+        try {
+            writerThread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            logger.warn("Frame saver still had {} frames queued at shutdown", queue.size());
+            writerThread.interrupt();
+        }
+    }
+    
+    public long getSavedFrames() {
+        return savedFrames;
+    }
+    
+    /**
+     * Frames not saved because the queue was full
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+    
+    public long getFailedFrames() {
+        return failedFrames;
+    }
+    
+    public int getPendingFrames() {
+        return queue.size();
+    }
+}
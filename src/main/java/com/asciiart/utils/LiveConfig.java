@@ -0,0 +1,147 @@
+package com.asciiart.utils;
+
+import com.asciiart.processor.PipelineConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * The current {@link PipelineConfig}. Changes from the keyboard and from
+ * reloads of the settings file each swap in a new snapshot atomically;
+ * readers take one volatile read per frame and keep that snapshot for the
+ * whole frame.
+ *
+ * Reloading replaces the snapshot with the file's values, including ones
+ * changed from the keyboard since. A file that cannot be read or parsed is
+ * ignored and the current snapshot stays.
+ */
+public class LiveConfig implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(LiveConfig.class);
+    
+    // Editors often write a file in several steps; wait for them to finish
+    private static final long SETTLE_MILLIS = 100;
+    
+    private final AtomicReference<PipelineConfig> current;
+    private volatile Consumer<String> reloadListener = message -> { };
+    private WatchService watchService;
+    private Thread watchThread;
+    
+    public LiveConfig(PipelineConfig initial) {
+        this.current = new AtomicReference<>(initial);
+    }
+    
+    /**
+     * Current snapshot
+     */
+    public PipelineConfig get() {
+        return current.get();
+    }
+    
+    public void set(PipelineConfig config) {
+        current.set(config);
+    }
+    
+    /**
+     * Apply a change to the current snapshot, retrying if another thread
+     * swapped it meanwhile; the change may therefore run more than once.
+     * Returns the snapshot it produced.
+     */
+    public PipelineConfig update(UnaryOperator<PipelineConfig> change) {
+        return current.updateAndGet(change);
+    }
+    
+    /**
+     * Told about reloads and reload failures, e.g. to show them on the status line
+     */
+    public void setReloadListener(Consumer<String> reloadListener) {
+        this.reloadListener = reloadListener != null ? reloadListener : message -> { };
+    }
+    
+    /**
+     * Reload the snapshot whenever the settings file changes, on a
+     * "Config-Watcher" thread
+     */
+    public void watch(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        Path directory = absolute.getParent();
+        Path name = absolute.getFileName();
+        watchService = FileSystems.getDefault().newWatchService();
+        // Editors that save by renaming a new file over the old one create it
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+        
+        watchThread = new Thread(() -> watchLoop(absolute, name), "Config-Watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+        logger.info("Watching {} for settings changes", absolute);
+    }
+    
+    private void watchLoop(Path file, Path name) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= name.equals(event.context());
+                }
+                key.reset();
+                if (changed) {
+                    Thread.sleep(SETTLE_MILLIS);
+                    // Events for the same save that came in while settling
+                    WatchKey more;
+                    while ((more = watchService.poll()) != null) {
+                        more.pollEvents();
+                        more.reset();
+                    }
+                    reload(file);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            logger.debug("Settings watcher stopped");
+        }
+    }
+    
+    /**
+     * Replace the snapshot with the file's settings. Returns false, keeping
+     * the current snapshot, if the file cannot be read.
+     */
+    public boolean reload(Path file) {
+        JsonNode settings;
+        try {
+            settings = SettingsLoader.read(file);
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable settings {}: {}", file, e.getMessage());
+            reloadListener.accept("Settings not reloaded: " + e.getMessage());
+            return false;
+        }
+        set(PipelineConfig.fromSettings(settings));
+        logger.info("Reloaded settings from {}", file);
+        reloadListener.accept("Settings reloaded");
+        return true;
+    }
+    
+    /**
+     * Stop watching the settings file
+     */
+    @Override
+    public void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+        if (watchThread != null) {
+            watchThread.interrupt();
+        }
+    }
+}
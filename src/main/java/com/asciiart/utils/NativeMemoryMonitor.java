@@ -0,0 +1,51 @@
+package com.asciiart.utils;
+
+import com.asciiart.processor.MatPool;
+import org.bytedeco.javacpp.Pointer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Debug reporting of native memory tracked by JavaCPP
+ */
+public class NativeMemoryMonitor {
+    private static final Logger logger = LoggerFactory.getLogger(NativeMemoryMonitor.class);
+    
+    private static final long LOG_INTERVAL_MS = 10_000;
+    
+    private final MatPool matPool;
+    private long lastLogTime = 0;
+    private long baselineBytes = -1;
+    
+    public NativeMemoryMonitor(MatPool matPool) {
+        this.matPool = matPool;
+    }
+    
+    /**
+     * Compact summary for the status line, e.g. "Native: 12.5M/31 RSS: 210M Pool: 3"
+     */
+    public String summary() {
+        return "Native: " + Pointer.formatBytes(Pointer.totalBytes()) + "/" + Pointer.totalCount()
+               + " RSS: " + Pointer.formatBytes(Pointer.physicalBytes())
+               + " Pool: " + matPool.getPooledCount();
+    }
+    
+    /**
+     * Log the native memory state every few seconds, including growth since the first call
+     */
+    public void maybeLog() {
+        long now = System.currentTimeMillis();
+        if (now - lastLogTime < LOG_INTERVAL_MS) {
+            return;
+        }
+        lastLogTime = now;
+        
+        long total = Pointer.totalBytes();
+        if (baselineBytes < 0) {
+            baselineBytes = total;
+        }
+        logger.info("{} (growth {}, pool allocations {}, reuses {})", summary(),
+                   Pointer.formatBytes(total - baselineBytes),
+                   matPool.getAllocations(), matPool.getReuses());
+    }
+}
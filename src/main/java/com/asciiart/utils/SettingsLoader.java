@@ -0,0 +1,72 @@
+package com.asciiart.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Loads settings.json from an external file or the bundled resource
+ */
+public class SettingsLoader {
+    private static final Logger logger = LoggerFactory.getLogger(SettingsLoader.class);
+    
+    /** System property pointing at an external settings file */
+    public static final String CONFIG_PROPERTY = "asciiart.config";
+    public static final String DEFAULT_RESOURCE = "/config/settings.json";
+    
+    private static final ObjectMapper mapper = new ObjectMapper();
+    
+    /**
+     * Load settings, preferring -Dasciiart.config over the bundled defaults.
+     * Never returns null; missing or broken files yield an empty tree so
+     * every caller falls back to its own defaults.
+     */
+    public static JsonNode load() {
+        Path external = externalPath();
+        if (external != null) {
+            try {
+                JsonNode settings = read(external);
+                logger.info("Loaded settings from {}", external);
+                return settings;
+            } catch (IOException e) {
+                logger.error("Failed to read settings from {}, using bundled defaults", external, e);
+            }
+        }
+        
+        try (InputStream in = SettingsLoader.class.getResourceAsStream(DEFAULT_RESOURCE)) {
+            if (in != null) {
+                return mapper.readTree(in);
+            }
+            logger.warn("Bundled settings {} not found", DEFAULT_RESOURCE);
+        } catch (IOException e) {
+            logger.error("Failed to read bundled settings", e);
+        }
+        return mapper.createObjectNode();
+    }
+    
+    /**
+     * External settings file given with -Dasciiart.config, or null when the
+     * bundled defaults are used
+     */
+    public static Path externalPath() {
+        String external = System.getProperty(CONFIG_PROPERTY);
+        return external != null && !external.isEmpty() ? Paths.get(external) : null;
+    }
+    
+    /**
+     * Read a settings file, failing on missing files and broken JSON
+     */
+    public static JsonNode read(Path file) throws IOException {
+        JsonNode settings = mapper.readTree(file.toFile());
+        if (settings == null || !settings.isObject()) {
+            throw new IOException("Not a settings object: " + file);
+        }
+        return settings;
+    }
+}
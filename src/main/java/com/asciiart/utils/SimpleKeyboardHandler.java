@@ -2,33 +2,45 @@ package com.asciiart.utils;
 
 import com.asciiart.processor.ImageProcessor;
 import com.asciiart.processor.ASCIIConverter;
+import com.asciiart.processor.PipelineConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Locale;
 import java.util.Scanner;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Simple keyboard handler using a separate input thread
+ * Simple keyboard handler using a separate input thread. Processing
+ * settings change by swapping in new {@link PipelineConfig} snapshots;
+ * only the target size is set on the processor directly.
  */
 public class SimpleKeyboardHandler implements Runnable {
     private static final Logger logger = LoggerFactory.getLogger(SimpleKeyboardHandler.class);
     
     private final ImageProcessor imageProcessor;
-    private final ASCIIConverter asciiConverter;
+    private final LiveConfig config;
     private final AtomicBoolean running;
     private final LinkedBlockingQueue<String> commandQueue;
     private Thread inputThread;
     private volatile String lastMessage = "";
     private volatile long messageTime = 0;
-    private boolean saveNextFrame = false;
+    private volatile boolean saveNextFrame = false;
+    // Frames still to save in the current burst, and the length of a burst
+    private volatile int burstRemaining = 0;
+    private volatile int burstFrames = 30;
+    private volatile boolean toggleRecording = false;
+    private volatile boolean compactStatus = false;
+    // Size restored by 'r' and '0'; follows the terminal when it is detected
+    private volatile int defaultWidth = 80;
+    private volatile int defaultHeight = 24;
     
     public SimpleKeyboardHandler(ImageProcessor imageProcessor, 
-                                ASCIIConverter asciiConverter,
+                                LiveConfig config,
                                 AtomicBoolean running) {
         this.imageProcessor = imageProcessor;
-        this.asciiConverter = asciiConverter;
+        this.config = config;
         this.running = running;
         this.commandQueue = new LinkedBlockingQueue<>();
     }
@@ -99,28 +111,34 @@ public class SimpleKeyboardHandler implements Runnable {
      */
     private void handleCommand(char key) {
         String message = "";
+        PipelineConfig changed;
         
         switch (Character.toLowerCase(key)) {
             case '+':
-                imageProcessor.adjustContrast(0.2);
+                config.update(c -> c.withContrast(c.getContrast() + 0.2));
                 message = "Contrast increased";
                 break;
             case '-':
-                imageProcessor.adjustContrast(-0.2);
+                config.update(c -> c.withContrast(c.getContrast() - 0.2));
                 message = "Contrast decreased";
                 break;
             case '[':
-                imageProcessor.adjustBrightness(-20);
+                config.update(c -> c.withBrightness(c.getBrightness() - 20));
                 message = "Brightness decreased";
                 break;
             case ']':
-                imageProcessor.adjustBrightness(20);
+                config.update(c -> c.withBrightness(c.getBrightness() + 20));
                 message = "Brightness increased";
                 break;
             case 'c':
-                asciiConverter.cycleCharset();
+                config.update(PipelineConfig::withNextCharset);
                 message = "Character set changed";
                 break;
+            case '0':
+                commandQueue.clear();  // Just clear the queue
+                imageProcessor.setTargetDimensions(defaultWidth, defaultHeight);
+                message = "Fit terminal (" + defaultWidth + "x" + defaultHeight + ")";
+                break;
             case '1':
                 commandQueue.clear();  // Just clear the queue
                 imageProcessor.setTargetDimensions(40, 15);
@@ -141,10 +159,30 @@ public class SimpleKeyboardHandler implements Runnable {
                 imageProcessor.setTargetDimensions(160, 50);
                 message = "Ultra resolution (160x50)";
                 break;
+            case 'e':
+                changed = config.update(c -> c.withEdgeDetection(!c.isEdgeDetection()));
+                message = changed.isEdgeDetection() ? "Edge mode on" : "Edge mode off";
+                break;
+            case 'd':
+                changed = config.update(c -> c.withDither(c.getDither().next()));
+                message = "Dithering: " + changed.getDither().name().toLowerCase(Locale.ROOT);
+                break;
             case 's':
                 saveNextFrame = true;
                 message = "Saving next frame...";
                 break;
+            case 'b':
+                burstRemaining = burstFrames;
+                message = "Saving next " + burstFrames + " frames...";
+                break;
+            case 'v':
+                toggleRecording = true;
+                message = "Toggling recording...";
+                break;
+            case 'm':
+                compactStatus = !compactStatus;
+                message = compactStatus ? "Compact metrics status" : "Full status";
+                break;
             case 'r':
                 resetSettings();
                 message = "Settings reset";
@@ -171,21 +209,25 @@ public class SimpleKeyboardHandler implements Runnable {
      * Reset settings to default
      */
     private void resetSettings() {
-        imageProcessor.setTargetDimensions(80, 24);
-        // Reset contrast to 1.0
-        double currentContrast = imageProcessor.getContrast();
-        imageProcessor.adjustContrast(1.0 - currentContrast);
-        // Reset brightness to 0
-        int currentBrightness = imageProcessor.getBrightness();
-        imageProcessor.adjustBrightness(0 - currentBrightness);
-        asciiConverter.setCharset(ASCIIConverter.SIMPLE_CHARSET);
+        imageProcessor.setTargetDimensions(defaultWidth, defaultHeight);
+        // Contrast 1.0, brightness 0 and the simple charset in one snapshot
+        config.update(c -> c.withContrast(1.0).withBrightness(0).withCharset(ASCIIConverter.SIMPLE_CHARSET));
+    }
+    
+    /**
+     * Size used by reset and the fit-terminal command
+     */
+    public void setDefaultDimensions(int width, int height) {
+        this.defaultWidth = width;
+        this.defaultHeight = height;
     }
     
     /**
      * Print help to console (will be visible after quit)
      */
     private void printHelp() {
-        setMessage("Controls: +/- contrast, [/] brightness, c charset, 1-4 resolution, s save, r reset, q quit");
+        setMessage("Controls: +/- contrast, [/] brightness, c charset, 0-4 resolution, e edges, d dither, s save, b burst, v record, "
+                   + "m metrics, r reset, q quit");
     }
     
     /**
@@ -208,13 +250,55 @@ public class SimpleKeyboardHandler implements Runnable {
     }
     
     /**
-     * Check if should save frame
+     * Whether the status line shows per-stage metrics instead of the full status
+     */
+    public boolean isCompactStatus() {
+        return compactStatus;
+    }
+    
+    public void setCompactStatus(boolean compactStatus) {
+        this.compactStatus = compactStatus;
+    }
+    
+    /**
+     * Whether the current frame should be saved, either once or as part of a burst.
+     * Render thread only.
      */
     public boolean shouldSaveFrame() {
         if (saveNextFrame) {
             saveNextFrame = false;
             return true;
         }
+        int remaining = burstRemaining;
+        if (remaining > 0) {
+            burstRemaining = remaining - 1;
+            return true;
+        }
         return false;
     }
-}
\ No newline at end of file
+    
+    /**
+     * Number of consecutive frames saved by 'b'
+     */
+    public void setBurstFrames(int burstFrames) {
+        this.burstFrames = Math.max(1, burstFrames);
+    }
+    
+    /**
+     * Whether recording should be started or stopped, clearing the request
+     */
+    public boolean shouldToggleRecording() {
+        if (toggleRecording) {
+            toggleRecording = false;
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Show a message from outside, e.g. where a recording went
+     */
+    public void showMessage(String message) {
+        setMessage(message);
+    }
+}
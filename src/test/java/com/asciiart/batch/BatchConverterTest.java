@@ -0,0 +1,179 @@
+package com.asciiart.batch;
+
+import com.asciiart.camera.FrameSource;
+import com.asciiart.processor.ASCIIConverter;
+import com.asciiart.processor.GrayFrame;
+import com.asciiart.processor.ImageProcessor;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that frames keep their order per file and that files fail on their own
+ */
+public class BatchConverterTest {
+    
+    private static final String GLYPHS = "0123456789";
+    
+    /**
+     * A fixed number of flat frames, each brighter than the last, in one reused Mat
+     */
+    private static final class FlatSource implements FrameSource {
+        private final int frames;
+        private final boolean opens;
+        private Mat frame;
+        private int index = 0;
+        
+        FlatSource(int frames, boolean opens) {
+            this.frames = frames;
+            this.opens = opens;
+        }
+        
+        @Override
+        public boolean initialize() {
+            frame = new Mat(48, 64, CV_8UC3);
+            return opens;
+        }
+        
+        @Override
+        public Mat captureFrame() {
+            if (index == frames) {
+                return null;
+            }
+            int gray = grayOf(index++);
+            frame.put(new Scalar(gray, gray, gray, 0));
+            return frame;
+        }
+        
+        @Override
+        public int getFrameWidth() {
+            return 64;
+        }
+        
+        @Override
+        public int getFrameHeight() {
+            return 48;
+        }
+        
+        @Override
+        public String getName() {
+            return "flat";
+        }
+        
+        @Override
+        public void release() {
+            frame.close();
+        }
+    }
+    
+    private static int grayOf(int index) {
+        return index * 255 / 29 % 256;
+    }
+    
+    private static BatchConverter converter(int threads, int framesInFlight) {
+        return new BatchConverter(threads, framesInFlight, () -> {
+            ImageProcessor processor = new ImageProcessor();
+            processor.setTargetDimensions(20, 8);
+            return processor;
+        }, () -> new ASCIIConverter(GLYPHS));
+    }
+    
+    @Test
+    public void framesOfEachFileAreWrittenInOrder() throws Exception {
+        Path dir = Files.createTempDirectory("batch");
+        List<BatchConverter.Job> jobs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            jobs.add(new BatchConverter.Job("clip" + i, () -> new FlatSource(30, true),
+                                            dir.resolve("clip" + i + ".txt")));
+        }
+        
+        BatchConverter.Result result = converter(4, 3).run(jobs);
+        assertEquals(3, result.getFiles());
+        assertEquals(0, result.getFailedFiles());
+        assertEquals(90, result.getFrames());
+        
+        ASCIIConverter reference = new ASCIIConverter(GLYPHS);
+        for (BatchConverter.Job job : jobs) {
+            String text = new String(Files.readAllBytes(job.getOutput()), StandardCharsets.UTF_8);
+            String[] frames = text.split(BatchConverter.FRAME_SEPARATOR);
+            assertEquals(30, frames.length);
+            for (int i = 0; i < frames.length; i++) {
+                char expected = reference.grayscaleToChar(grayOf(i));
+                for (String row : frames[i].split("\n")) {
+                    assertFalse(row.isEmpty());
+                    assertTrue(row.chars().allMatch(c -> c == expected), "frame " + i + ": " + row);
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void failedFileDoesNotStopTheOthers() throws Exception {
+        Path dir = Files.createTempDirectory("batch");
+        List<BatchConverter.Job> jobs = Arrays.asList(
+            new BatchConverter.Job("good", () -> new FlatSource(5, true), dir.resolve("good.txt")),
+            new BatchConverter.Job("broken", () -> new FlatSource(5, false), dir.resolve("broken.txt")),
+            new BatchConverter.Job("empty", () -> new FlatSource(0, true), dir.resolve("empty.txt")));
+        
+        BatchConverter.Result result = converter(2, 0).run(jobs);
+        assertEquals(2, result.getFailedFiles());
+        assertEquals(5, result.getFrames());
+        assertTrue(Files.exists(dir.resolve("good.txt")));
+        assertFalse(Files.exists(dir.resolve("broken.txt")));
+        assertFalse(Files.exists(dir.resolve("empty.txt")));
+    }
+    
+    @Test
+    public void errorInAWorkerFailsTheFileWithoutHanging() throws Exception {
+        Path dir = Files.createTempDirectory("batch");
+        BatchConverter converter = new BatchConverter(2, 2, () -> new ImageProcessor() {
+            private int calls = 0;
+            
+            @Override
+            public GrayFrame processFrame(Mat frame) {
+                if (++calls == 3) {
+                    throw new LinkageError("native library went away");
+                }
+                return super.processFrame(frame);
+            }
+        }, () -> new ASCIIConverter(GLYPHS));
+        List<BatchConverter.Job> jobs = Arrays.asList(
+            new BatchConverter.Job("clip", () -> new FlatSource(10, true), dir.resolve("clip.txt")));
+        
+        BatchConverter.Result result = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> converter.run(jobs));
+        assertEquals(1, result.getFailedFiles());
+        assertFalse(Files.exists(dir.resolve("clip.txt")));
+    }
+    
+    @Test
+    public void directoriesKeepTheirLayout() throws IOException {
+        Path input = Files.createTempDirectory("archive");
+        Files.createDirectories(input.resolve("sub"));
+        Files.createFile(input.resolve("a.png"));
+        Files.createFile(input.resolve("sub").resolve("b.mp4"));
+        Files.createFile(input.resolve("notes.txt"));
+        Path out = Files.createTempDirectory("out");
+        
+        List<BatchConverter.Job> jobs = BatchConverter.jobsFor(Arrays.asList(input, input.resolve("a.png")), out);
+        assertEquals(3, jobs.size());
+        Path base = out.resolve(input.getFileName().toString());
+        assertEquals(base.resolve("a.png.txt"), jobs.get(0).getOutput());
+        assertEquals(base.resolve("sub").resolve("b.mp4.txt"), jobs.get(1).getOutput());
+        assertEquals(out.resolve("a.png.txt"), jobs.get(2).getOutput());
+    }
+}
@@ -0,0 +1,91 @@
+package com.asciiart.camera;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that release never frees a source its capture thread is still using
+ */
+public class AsyncFrameSourceTest {
+    
+    /**
+     * Source whose grab blocks until unblocked, ignoring interrupts like a
+     * native grabber would
+     */
+    private static final class StuckSource implements FrameSource {
+        final CountDownLatch grabbing = new CountDownLatch(1);
+        final CountDownLatch unblock = new CountDownLatch(1);
+        final AtomicBoolean released = new AtomicBoolean(false);
+        
+        @Override
+        public boolean initialize() {
+            return true;
+        }
+        
+        @Override
+        public Mat captureFrame() {
+            grabbing.countDown();
+            while (true) {
+                try {
+                    unblock.await();
+                    return null;
+                } catch (InterruptedException e) {
+                    // Keep waiting
+                }
+            }
+        }
+        
+        @Override
+        public int getFrameWidth() {
+            return 8;
+        }
+        
+        @Override
+        public int getFrameHeight() {
+            return 4;
+        }
+        
+        @Override
+        public String getName() {
+            return "stuck";
+        }
+        
+        @Override
+        public void release() {
+            released.set(true);
+        }
+    }
+    
+    @Test
+    public void sourceStuckInAGrabIsNotReleased() throws InterruptedException {
+        StuckSource stuck = new StuckSource();
+        AsyncFrameSource source = new AsyncFrameSource(stuck, FrameRingBuffer.MIN_CAPACITY,
+                                                       FrameRingBuffer.OverflowPolicy.DROP_OLDEST, 10);
+        assertTrue(source.initialize());
+        assertTrue(stuck.grabbing.await(5, TimeUnit.SECONDS));
+        
+        source.release();
+        assertFalse(stuck.released.get(), "released while the capture thread was inside a grab");
+        stuck.unblock.countDown();
+    }
+    
+    @Test
+    public void sourceBetweenGrabsIsReleased() throws InterruptedException {
+        StuckSource idle = new StuckSource();
+        idle.unblock.countDown();
+        AsyncFrameSource source = new AsyncFrameSource(idle, FrameRingBuffer.MIN_CAPACITY,
+                                                       FrameRingBuffer.OverflowPolicy.DROP_OLDEST, 10);
+        assertTrue(source.initialize());
+        assertTrue(idle.grabbing.await(5, TimeUnit.SECONDS));
+        
+        source.release();
+        assertTrue(idle.released.get());
+    }
+}
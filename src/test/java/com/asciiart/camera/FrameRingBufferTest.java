@@ -0,0 +1,181 @@
+package com.asciiart.camera;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks slot reuse, overflow handling and the hand-off between capture and consumer threads
+ */
+public class FrameRingBufferTest {
+    
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 4;
+    private static final long MS = 1_000_000L;
+    
+    private static Mat frameOf(int value) {
+        Mat frame = new Mat(HEIGHT, WIDTH, CV_8UC3);
+        frame.put(new Scalar(value, value, value, 0));
+        return frame;
+    }
+    
+    private static int valueOf(Mat frame) {
+        return frame.data().get(0) & 0xFF;
+    }
+    
+    @Test
+    public void slotsAreReusedAcrossWrapAround() {
+        FrameRingBuffer ring = new FrameRingBuffer(FrameRingBuffer.MIN_CAPACITY, WIDTH, HEIGHT,
+                                                   FrameRingBuffer.OverflowPolicy.DROP_OLDEST);
+        Mat frame = frameOf(0);
+        try {
+            for (int i = 0; i < 4 * ring.getCapacity() + 1; i++) {
+                frame.put(new Scalar(i, i, i, 0));
+                assertTrue(ring.publish(frame, 1000 + i));
+                Mat taken = ring.takeLatest(0);
+                assertNotNull(taken);
+                assertEquals(i, valueOf(taken));
+                assertEquals(i, ring.getLastSequence());
+                assertEquals(1000 + i, ring.getLastCaptureNanos());
+            }
+            assertEquals(0, ring.getDroppedFrames());
+            assertEquals(4 * ring.getCapacity() + 1, ring.getPublishedFrames());
+            
+            // Nothing newer than the last take
+            assertNull(ring.takeLatest(0));
+            assertEquals(1, ring.getStaleFrames());
+        } finally {
+            frame.close();
+            ring.release();
+        }
+    }
+    
+    @Test
+    public void fullRingDropsTheOldestFrames() {
+        FrameRingBuffer ring = new FrameRingBuffer(FrameRingBuffer.MIN_CAPACITY, WIDTH, HEIGHT,
+                                                   FrameRingBuffer.OverflowPolicy.DROP_OLDEST);
+        Mat frame = frameOf(0);
+        try {
+            assertTrue(ring.publish(frame, 0));
+            assertEquals(0, valueOf(ring.takeLatest(0)));
+            
+            // The held slot stays untouched while the producer laps the others
+            for (int i = 1; i <= 10; i++) {
+                frame.put(new Scalar(i, i, i, 0));
+                assertTrue(ring.publish(frame, i));
+            }
+            Mat taken = ring.takeLatest(0);
+            assertEquals(10, valueOf(taken));
+            assertEquals(10, ring.getLastSequence());
+            assertEquals(9, ring.getDroppedFrames());
+        } finally {
+            frame.close();
+            ring.release();
+        }
+    }
+    
+    @Test
+    public void fullBlockingRingRefusesUntilTheConsumerTakes() throws InterruptedException {
+        FrameRingBuffer ring = new FrameRingBuffer(FrameRingBuffer.MIN_CAPACITY, WIDTH, HEIGHT,
+                                                   FrameRingBuffer.OverflowPolicy.BLOCK);
+        Mat frame = frameOf(0);
+        try {
+            assertTrue(ring.publish(frame, 0));
+            assertEquals(0, valueOf(ring.takeLatest(0)));
+            for (int i = 1; i <= 2; i++) {
+                frame.put(new Scalar(i, i, i, 0));
+                assertTrue(ring.publish(frame, i));
+            }
+            
+            // Held, latest and one unconsumed frame: no slot is free for a fourth
+            Mat blocked = frameOf(3);
+            CountDownLatch published = new CountDownLatch(1);
+            Thread producer = new Thread(() -> {
+                if (ring.publish(blocked, 3)) {
+                    published.countDown();
+                }
+            });
+            producer.start();
+            assertFalse(published.await(100, TimeUnit.MILLISECONDS), "published into a full ring");
+            
+            assertEquals(2, valueOf(ring.takeLatest(0)));
+            assertTrue(published.await(5, TimeUnit.SECONDS), "producer stayed blocked");
+            producer.join();
+            blocked.close();
+            assertEquals(3, valueOf(ring.takeLatest(0)));
+            assertEquals(1, ring.getDroppedFrames());
+            
+            // A closed ring refuses frames instead of blocking the producer
+            for (int i = 4; i <= 5; i++) {
+                frame.put(new Scalar(i, i, i, 0));
+                assertTrue(ring.publish(frame, i));
+            }
+            ring.close();
+            assertFalse(ring.publish(frame, 6));
+        } finally {
+            frame.close();
+            ring.release();
+        }
+    }
+    
+    @Test
+    public void consumerSeesEveryFrameOnceAndInOrder() throws InterruptedException {
+        int frames = 2000;
+        FrameRingBuffer ring = new FrameRingBuffer(4, WIDTH, HEIGHT, FrameRingBuffer.OverflowPolicy.DROP_OLDEST);
+        AtomicBoolean producerFailed = new AtomicBoolean(false);
+        Thread producer = new Thread(() -> {
+            Mat frame = frameOf(0);
+            try {
+                for (int i = 0; i < frames; i++) {
+                    int value = i % 256;
+                    frame.put(new Scalar(value, value, value, 0));
+                    if (!ring.publish(frame, i)) {
+                        producerFailed.set(true);
+                        return;
+                    }
+                }
+            } finally {
+                frame.close();
+            }
+        }, "Ring-Producer");
+        producer.start();
+        
+        long lastSequence = -1;
+        long taken = 0;
+        try {
+            while (lastSequence < frames - 1) {
+                Mat frame = ring.takeLatest(5000 * MS);
+                assertNotNull(frame, "producer stalled");
+                long sequence = ring.getLastSequence();
+                assertTrue(sequence > lastSequence, "frame " + sequence + " after " + lastSequence);
+                // Timestamp and pixels must belong to the same publish, and stay put while held
+                assertEquals(sequence, ring.getLastCaptureNanos());
+                assertEquals(sequence % 256, valueOf(frame));
+                Thread.yield();
+                assertEquals(sequence % 256, valueOf(frame), "held slot was overwritten");
+                lastSequence = sequence;
+                taken++;
+            }
+            producer.join();
+        } finally {
+            ring.close();
+            producer.join();
+            ring.release();
+        }
+        
+        assertFalse(producerFailed.get());
+        assertEquals(frames, ring.getPublishedFrames());
+        assertEquals(frames, taken + ring.getDroppedFrames());
+    }
+}
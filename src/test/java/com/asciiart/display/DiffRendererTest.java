@@ -0,0 +1,315 @@
+package com.asciiart.display;
+
+import com.asciiart.processor.ASCIIConverter;
+import com.asciiart.processor.GrayFrame;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Replays encoder output on a minimal virtual terminal
+ */
+public class DiffRendererTest {
+    
+    private static final int WIDTH = 40;
+    private static final int HEIGHT = 12;
+    
+    /**
+     * Applies the escapes DiffRenderer emits: cursor position, home, clear, CR and LF
+     */
+    private static void apply(String output, char[] screen, int width) {
+        int row = 0;
+        int col = 0;
+        int i = 0;
+        while (i < output.length()) {
+            char c = output.charAt(i);
+            if (c == '\033') {
+                int end = i + 2;
+                while (!Character.isLetter(output.charAt(end))) {
+                    end++;
+                }
+                String params = output.substring(i + 2, end);
+                char command = output.charAt(end);
+                if (command == 'H') {
+                    if (params.isEmpty()) {
+                        row = 0;
+                        col = 0;
+                    } else {
+                        String[] parts = params.split(";");
+                        row = Integer.parseInt(parts[0]) - 1;
+                        col = Integer.parseInt(parts[1]) - 1;
+                    }
+                } else if (command == 'J') {
+                    Arrays.fill(screen, '?');
+                }
+                i = end + 1;
+            } else if (c == '\r') {
+                col = 0;
+                i++;
+            } else if (c == '\n') {
+                row++;
+                i++;
+            } else {
+                screen[row * width + col++] = c;
+                i++;
+            }
+        }
+    }
+    
+    /**
+     * Like {@link #apply} but also tracks the foreground of every written
+     * cell from 38;5 / 38;2 / 39 SGR escapes; returns the final foreground
+     */
+    private static int applyColored(String output, char[] screen, int[] foreground, int width, int pen) {
+        int row = 0;
+        int col = 0;
+        int i = 0;
+        while (i < output.length()) {
+            char c = output.charAt(i);
+            if (c == '\033') {
+                int end = i + 2;
+                while (!Character.isLetter(output.charAt(end))) {
+                    end++;
+                }
+                String params = output.substring(i + 2, end);
+                char command = output.charAt(end);
+                if (command == 'm') {
+                    String[] parts = params.split(";");
+                    if (parts[0].equals("39")) {
+                        pen = AnsiColor.DEFAULT;
+                    } else if (parts[1].equals("5")) {
+                        pen = Integer.parseInt(parts[2]);
+                    } else {
+                        pen = (Integer.parseInt(parts[2]) << 16) | (Integer.parseInt(parts[3]) << 8)
+                              | Integer.parseInt(parts[4]);
+                    }
+                } else if (command == 'H') {
+                    if (params.isEmpty()) {
+                        row = 0;
+                        col = 0;
+                    } else {
+                        String[] parts = params.split(";");
+                        row = Integer.parseInt(parts[0]) - 1;
+                        col = Integer.parseInt(parts[1]) - 1;
+                    }
+                } else if (command == 'J') {
+                    Arrays.fill(screen, '?');
+                }
+                i = end + 1;
+            } else if (c == '\r') {
+                col = 0;
+                i++;
+            } else if (c == '\n') {
+                row++;
+                i++;
+            } else {
+                foreground[row * width + col] = pen;
+                screen[row * width + col++] = c;
+                i++;
+            }
+        }
+        return pen;
+    }
+    
+    private static GrayFrame randomFrame(Random random) {
+        GrayFrame frame = new GrayFrame(WIDTH, HEIGHT);
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            frame.getData()[i] = (byte) random.nextInt(256);
+        }
+        return frame;
+    }
+    
+    private static char[] expectedCells(GrayFrame frame, ASCIIConverter.GlyphTable table) {
+        char[] cells = new char[frame.getWidth() * frame.getHeight()];
+        for (int y = 0; y < frame.getHeight(); y++) {
+            for (int x = 0; x < frame.getWidth(); x++) {
+                cells[y * frame.getWidth() + x] = table.getChars()[frame.get(x, y)];
+            }
+        }
+        return cells;
+    }
+    
+    private static ByteBuffer buffer(ASCIIConverter.GlyphTable table) {
+        return ByteBuffer.allocate(DiffRenderer.maxEncodedBytes(WIDTH, HEIGHT, table.getBytesPerGlyph())
+                                   + WIDTH * HEIGHT * AnsiColor.MAX_SGR_BYTES + 8);
+    }
+    
+    private static String encode(DiffRenderer renderer, GrayFrame frame, ASCIIConverter.GlyphTable table) {
+        ByteBuffer out = buffer(table);
+        int bytes = renderer.encode(frame, table, out);
+        assertEquals(out.position(), bytes);
+        return new String(out.array(), 0, bytes, StandardCharsets.UTF_8);
+    }
+    
+    @Test
+    public void replayedOutputReproducesEveryFrame() {
+        Random random = new Random(7);
+        DiffRenderer renderer = new DiffRenderer();
+        ASCIIConverter converter = new ASCIIConverter(ASCIIConverter.BLOCK_CHARSET);
+        char[] screen = new char[WIDTH * HEIGHT];
+        GrayFrame frame = randomFrame(random);
+        
+        for (int n = 0; n < 50; n++) {
+            // Change a varying share of cells, from a few to nearly all
+            int changes = n % 10 == 0 ? WIDTH * HEIGHT : 1 + random.nextInt(40);
+            for (int i = 0; i < changes; i++) {
+                frame.getData()[random.nextInt(WIDTH * HEIGHT)] = (byte) random.nextInt(256);
+            }
+            // Switching charsets changes glyphs without changing gray values
+            if (n == 25) {
+                converter.setCharset(ASCIIConverter.EXTENDED_CHARSET);
+            }
+            
+            ASCIIConverter.GlyphTable table = converter.getGlyphTable();
+            apply(encode(renderer, frame, table), screen, WIDTH);
+            assertArrayEquals(expectedCells(frame, table), screen, "frame " + n);
+        }
+    }
+    
+    @Test
+    public void coloredOutputReproducesGlyphsAndColors() {
+        for (AnsiColor.Mode mode : new AnsiColor.Mode[]{AnsiColor.Mode.ANSI256, AnsiColor.Mode.TRUECOLOR}) {
+            Random random = new Random(11);
+            DiffRenderer renderer = new DiffRenderer();
+            AnsiColor color = new AnsiColor(mode, 0);
+            renderer.setColor(color);
+            ASCIIConverter.GlyphTable table = new ASCIIConverter(ASCIIConverter.BLOCK_CHARSET).getGlyphTable();
+            char[] screen = new char[WIDTH * HEIGHT];
+            int[] foreground = new int[WIDTH * HEIGHT];
+            int[] palette = {0xFF0000, 0x00FF00, 0x0000FF, 0x808080};
+            GrayFrame frame = randomFrame(random);
+            frame.setColored(true);
+            for (int i = 0; i < WIDTH * HEIGHT; i++) {
+                frame.getColors()[i] = palette[random.nextInt(palette.length)];
+            }
+            
+            for (int n = 0; n < 40; n++) {
+                // Change glyphs, colors, or both
+                for (int i = 0; i < 1 + random.nextInt(30); i++) {
+                    int cell = random.nextInt(WIDTH * HEIGHT);
+                    if (random.nextBoolean()) {
+                        frame.getData()[cell] = (byte) random.nextInt(256);
+                    } else {
+                        frame.getColors()[cell] = palette[random.nextInt(palette.length)];
+                    }
+                }
+                int pen = applyColored(encode(renderer, frame, table), screen, foreground, WIDTH,
+                                       AnsiColor.DEFAULT);
+                assertEquals(AnsiColor.DEFAULT, pen, "foreground left set after frame " + n);
+                assertArrayEquals(expectedCells(frame, table), screen, mode + " frame " + n);
+                for (int i = 0; i < WIDTH * HEIGHT; i++) {
+                    if (screen[i] != ' ') {
+                        assertEquals(color.keyOf(frame.getColors()[i]), foreground[i], mode + " color of cell " + i);
+                    }
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void uniformColorNeedsOneEscape() {
+        DiffRenderer renderer = new DiffRenderer();
+        renderer.setColor(new AnsiColor(AnsiColor.Mode.ANSI256, 0));
+        ASCIIConverter.GlyphTable table = new ASCIIConverter().getGlyphTable();
+        GrayFrame frame = randomFrame(new Random(5));
+        frame.setColored(true);
+        Arrays.fill(frame.getColors(), 0xFF0000);
+        
+        String output = encode(renderer, frame, table);
+        assertEquals(1, output.split("\033\\[38;5;196m", -1).length - 1);
+        assertTrue(output.endsWith("\033[39m"));
+    }
+    
+    @Test
+    public void coloredDiffFallingBackToRepaintKeepsItsColors() {
+        DiffRenderer renderer = new DiffRenderer();
+        AnsiColor color = new AnsiColor(AnsiColor.Mode.ANSI256, 0);
+        renderer.setColor(color);
+        ASCIIConverter.GlyphTable table = new ASCIIConverter().getGlyphTable();
+        char[] screen = new char[WIDTH * HEIGHT];
+        int[] foreground = new int[WIDTH * HEIGHT];
+        GrayFrame frame = new GrayFrame(WIDTH, HEIGHT);
+        Arrays.fill(frame.getData(), (byte) 255);
+        frame.setColored(true);
+        Arrays.fill(frame.getColors(), 0xFF0000);
+        applyColored(encode(renderer, frame, table), screen, foreground, WIDTH, AnsiColor.DEFAULT);
+        
+        // Every cell changes color, so the diff is abandoned for a full repaint
+        Arrays.fill(frame.getColors(), 0x0000FF);
+        String output = encode(renderer, frame, table);
+        assertTrue(renderer.wasFullRepaint());
+        assertTrue(output.startsWith("\033[H\033[38;5;21m"), "repaint starts without its color");
+        applyColored(output, screen, foreground, WIDTH, AnsiColor.DEFAULT);
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            assertEquals(color.keyOf(0x0000FF), foreground[i], "color of cell " + i);
+        }
+    }
+    
+    @Test
+    public void edgeGlyphsReplaceBrightnessGlyphs() {
+        DiffRenderer renderer = new DiffRenderer();
+        ASCIIConverter converter = new ASCIIConverter();
+        ASCIIConverter.GlyphTable table = converter.getGlyphTable();
+        char[] screen = new char[WIDTH * HEIGHT];
+        GrayFrame frame = randomFrame(new Random(9));
+        frame.setEdged(true);
+        apply(encode(renderer, frame, table), screen, WIDTH);
+        
+        frame.getEdges()[3] = GrayFrame.EDGE_VERTICAL;
+        frame.getEdges()[WIDTH + 1] = GrayFrame.EDGE_FALLING;
+        apply(encode(renderer, frame, table), screen, WIDTH);
+        char[] expected = expectedCells(frame, table);
+        expected[3] = '|';
+        expected[WIDTH + 1] = '\\';
+        assertArrayEquals(expected, screen);
+        assertEquals(new String(expected, 0, WIDTH), converter.convertToAscii(frame).substring(0, WIDTH));
+    }
+    
+    @Test
+    public void unchangedFrameWritesNothing() {
+        DiffRenderer renderer = new DiffRenderer();
+        ASCIIConverter.GlyphTable table = new ASCIIConverter().getGlyphTable();
+        GrayFrame frame = randomFrame(new Random(1));
+        
+        encode(renderer, frame, table);
+        assertTrue(renderer.wasFullRepaint());
+        
+        assertEquals("", encode(renderer, frame, table));
+        assertFalse(renderer.wasFullRepaint());
+    }
+    
+    @Test
+    public void singleChangeIsOneCursorMoveAndOneCell() {
+        DiffRenderer renderer = new DiffRenderer();
+        ASCIIConverter.GlyphTable table = new ASCIIConverter().getGlyphTable();
+        GrayFrame frame = new GrayFrame(WIDTH, HEIGHT);
+        encode(renderer, frame, table);
+        
+        frame.set(17, 5, 255);
+        assertEquals("\033[6;18H@", encode(renderer, frame, table));
+    }
+    
+    @Test
+    public void resizeAndInvalidateForceFullRepaint() {
+        DiffRenderer renderer = new DiffRenderer();
+        ASCIIConverter.GlyphTable table = new ASCIIConverter().getGlyphTable();
+        GrayFrame frame = randomFrame(new Random(3));
+        encode(renderer, frame, table);
+        
+        frame.resize(WIDTH / 2, HEIGHT);
+        assertTrue(encode(renderer, frame, table).startsWith("\033[2J"));
+        assertTrue(renderer.wasFullRepaint());
+        
+        renderer.invalidate();
+        encode(renderer, frame, table);
+        assertTrue(renderer.wasFullRepaint());
+    }
+}
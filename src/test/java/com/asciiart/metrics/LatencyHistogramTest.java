@@ -0,0 +1,111 @@
+package com.asciiart.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+
+import javax.management.ObjectName;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks bucket layout, percentile accuracy and concurrent recording
+ */
+public class LatencyHistogramTest {
+    
+    @Test
+    public void bucketsAreContiguousAndBounded() {
+        for (int i = 1; i < LatencyHistogram.BUCKETS; i++) {
+            long lower = LatencyHistogram.upperBound(i - 1) + 1;
+            assertEquals(i, LatencyHistogram.indexOf(lower), "gap before bucket " + i);
+            assertEquals(i, LatencyHistogram.indexOf(LatencyHistogram.upperBound(i)));
+            // Width never exceeds an eighth of the bucket's lower bound
+            assertTrue(LatencyHistogram.upperBound(i) - lower + 1 <= Math.max(1, lower / 8));
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.indexOf(Long.MAX_VALUE));
+    }
+    
+    @Test
+    public void percentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1000);
+        }
+        
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10_000, snapshot.getCount());
+        assertEquals(10_000_000, snapshot.getMaxNanos());
+        assertEquals(5_000_500, snapshot.getMeanNanos());
+        assertWithin(5_000_000, snapshot.getP50Nanos());
+        assertWithin(9_900_000, snapshot.getP99Nanos());
+    }
+    
+    @Test
+    public void intervalSnapshotsOnlySeeNewValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(50_000_000);
+        assertEquals(1, histogram.intervalSnapshot().getCount());
+        
+        histogram.record(1_000);
+        histogram.record(2_000);
+        LatencyHistogram.Snapshot interval = histogram.intervalSnapshot();
+        assertEquals(2, interval.getCount());
+        assertEquals(2_000, interval.getMaxNanos());
+        assertEquals(0, histogram.intervalSnapshot().getCount());
+        assertEquals(3, histogram.snapshot().getCount());
+    }
+    
+    @Test
+    public void concurrentRecordsAreNotLost() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int threads = 4;
+        int perThread = 50_000;
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    histogram.record(i);
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals((long) threads * perThread, snapshot.getCount());
+        assertEquals(perThread - 1, snapshot.getMaxNanos());
+    }
+    
+    @Test
+    public void stageMetricsRegistersAsMXBean() throws Exception {
+        StageMetrics metrics = new StageMetrics(true, 0);
+        ObjectName name = new ObjectName("com.asciiart:type=StageMetrics");
+        metrics.register();
+        try {
+            assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+            metrics.record(StageMetrics.Stage.GRAB, 1_000_000);
+            Object frames = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "FramesRendered");
+            assertEquals(0L, frames);
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+    
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected + expected / 8,
+                   "expected about " + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,120 @@
+package com.asciiart.pipeline;
+
+import com.asciiart.camera.AsyncFrameSource;
+import com.asciiart.camera.FrameRingBuffer;
+import com.asciiart.camera.SyntheticFrameSource;
+import com.asciiart.processor.ImageProcessor;
+import com.asciiart.processor.PipelineConfig;
+import com.asciiart.utils.LiveConfig;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks ordering and bounded hand-off between the pipeline stages
+ */
+public class FramePipelineTest {
+    
+    @Test
+    public void queueIsBoundedAndFifo() {
+        SpscQueue<Integer> queue = new SpscQueue<>(3);
+        assertTrue(queue.offer(1));
+        assertTrue(queue.offer(2));
+        assertTrue(queue.offer(3));
+        assertFalse(queue.offer(4));
+        assertEquals(1, queue.poll());
+        assertTrue(queue.offer(4));
+        assertEquals(2, queue.poll());
+        assertEquals(3, queue.poll());
+        assertEquals(4, queue.poll());
+        assertNull(queue.poll());
+    }
+    
+    @Test
+    public void slowRenderStageSkipsFramesInOrder() throws InterruptedException {
+        SyntheticFrameSource synthetic = new SyntheticFrameSource(SyntheticFrameSource.Pattern.MOVING, 320, 240);
+        AsyncFrameSource source = new AsyncFrameSource(synthetic, FrameRingBuffer.MIN_CAPACITY,
+                                                       FrameRingBuffer.OverflowPolicy.DROP_OLDEST, 100);
+        assertTrue(source.initialize());
+        ImageProcessor processor = new ImageProcessor();
+        FramePipeline pipeline = new FramePipeline(source, processor, 1, true, new FrameScheduler(500, 0));
+        pipeline.start();
+        
+        long lastSequence = -1;
+        int rendered = 0;
+        try {
+            // The first frame pays for native warm-up and may miss a 2 ms frame interval
+            ProcessedFrame first = null;
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            while (first == null && System.nanoTime() - deadline < 0) {
+                first = pipeline.takeLatest();
+            }
+            ProcessedFrame frame = first;
+            while (rendered < 30) {
+                if (frame == null) {
+                    frame = pipeline.takeLatest();
+                }
+                assertNotNull(frame);
+                assertTrue(frame.getSequence() > lastSequence, "sequence went backwards");
+                assertTrue(frame.getCaptureNanos() <= frame.getProcessedNanos());
+                assertFalse(frame.getCells().isEmpty());
+                lastSequence = frame.getSequence();
+                
+                // Render far slower than capture and processing
+                Thread.sleep(10);
+                pipeline.release(frame);
+                frame = null;
+                rendered++;
+            }
+        } finally {
+            pipeline.stop();
+            source.release();
+            processor.release();
+        }
+        
+        assertEquals(30, pipeline.getRenderedFrames());
+        // Capture kept running, so frames were dropped rather than queued
+        assertTrue(lastSequence > rendered, "no frames were dropped");
+        assertTrue(pipeline.getSkippedFrames() > 0, "render stage never skipped ahead");
+        assertTrue(pipeline.getLastLatencyNanos() > 0);
+    }
+    
+    @Test
+    public void framesCarryTheSnapshotTheyWereProcessedWith() throws Exception {
+        SyntheticFrameSource source = new SyntheticFrameSource(SyntheticFrameSource.Pattern.MOVING, 160, 120);
+        assertTrue(source.initialize());
+        ImageProcessor processor = new ImageProcessor();
+        LiveConfig config = new LiveConfig(PipelineConfig.defaults());
+        FramePipeline pipeline = new FramePipeline(source, processor, 1, false, new FrameScheduler(1000, 0));
+        pipeline.followConfig(config);
+        pipeline.start();
+        try {
+            PipelineConfig first = config.get();
+            ProcessedFrame frame = pipeline.takeLatest();
+            assertNotNull(frame);
+            assertSame(first, frame.getConfig());
+            
+            // A change after processing does not rewrite the frame already handed over
+            PipelineConfig second = config.update(c -> c.withContrast(2.0).withBrightness(30));
+            assertSame(first, frame.getConfig());
+            pipeline.release(frame);
+            
+            frame = pipeline.takeLatest();
+            assertNotNull(frame);
+            assertSame(second, frame.getConfig());
+            assertEquals(2.0, frame.getConfig().getContrast());
+            assertEquals(30, frame.getConfig().getBrightness());
+            pipeline.release(frame);
+        } finally {
+            pipeline.stop();
+            config.close();
+            source.release();
+            processor.release();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.asciiart.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks pacing and the degrade/recover hysteresis of the frame scheduler
+ */
+public class FrameSchedulerTest {
+    
+    private static void recordWindows(FrameScheduler scheduler, int windows, double load, int fps) {
+        long busy = Math.round(scheduler.getFrameIntervalNanos() * load);
+        for (int i = 0; i < windows * fps; i++) {
+            scheduler.recordFrame(busy);
+        }
+    }
+    
+    @Test
+    public void sustainedOverloadDegradesAndHeadroomRecovers() {
+        FrameScheduler scheduler = new FrameScheduler(10, 2);
+        List<Integer> levels = new ArrayList<>();
+        scheduler.setLevelListener(levels::add);
+        
+        // A single slow window is not enough
+        recordWindows(scheduler, 1, 1.5, 10);
+        recordWindows(scheduler, 1, 0.7, 10);
+        assertEquals(0, scheduler.getLevel());
+        
+        recordWindows(scheduler, FrameScheduler.DEGRADE_AFTER_WINDOWS, 1.5, 10);
+        assertEquals(1, scheduler.getLevel());
+        recordWindows(scheduler, 10, 1.5, 10);
+        assertEquals(2, scheduler.getLevel(), "level is capped");
+        
+        // Load between the two thresholds holds the level
+        recordWindows(scheduler, 20, 0.7, 10);
+        assertEquals(2, scheduler.getLevel());
+        
+        recordWindows(scheduler, FrameScheduler.RECOVER_AFTER_WINDOWS - 1, 0.2, 10);
+        assertEquals(2, scheduler.getLevel());
+        recordWindows(scheduler, 1, 0.2, 10);
+        assertEquals(1, scheduler.getLevel());
+        recordWindows(scheduler, FrameScheduler.RECOVER_AFTER_WINDOWS, 0.2, 10);
+        assertEquals(0, scheduler.getLevel());
+        
+        assertEquals(List.of(1, 2, 1, 0), levels);
+    }
+    
+    @Test
+    public void pacesAtTargetRateWithoutDrift() throws InterruptedException {
+        // Every park oversleeps by 1.3 ms
+        long[] now = {1_000_000_000L};
+        long overshoot = 1_300_000L;
+        FrameScheduler scheduler = new FrameScheduler(200, 0, () -> now[0], nanos -> now[0] += nanos + overshoot);
+        long interval = scheduler.getFrameIntervalNanos();
+        assertEquals(5_000_000L, interval);
+        
+        scheduler.awaitNextFrame();
+        long start = now[0];
+        for (int i = 1; i <= 40; i++) {
+            scheduler.awaitNextFrame();
+            // Deadlines are absolute, so the overshoot does not add up
+            assertEquals(start + i * interval + overshoot, now[0], "frame " + i);
+        }
+    }
+    
+    @Test
+    public void overrunRestartsTheScheduleInsteadOfBursting() throws InterruptedException {
+        long[] now = {0};
+        List<Long> parks = new ArrayList<>();
+        FrameScheduler scheduler = new FrameScheduler(100, 0, () -> now[0], nanos -> {
+            parks.add(nanos);
+            now[0] += nanos;
+        });
+        long interval = scheduler.getFrameIntervalNanos();
+        
+        scheduler.awaitNextFrame();
+        scheduler.awaitNextFrame();
+        assertEquals(List.of(interval), parks);
+        
+        // A frame three intervals long: the next one is due at once, the one after a full interval later
+        now[0] += 3 * interval;
+        long late = now[0];
+        scheduler.awaitNextFrame();
+        assertEquals(late, now[0]);
+        scheduler.awaitNextFrame();
+        assertEquals(late + interval, now[0]);
+        assertEquals(List.of(interval, interval), parks);
+    }
+}
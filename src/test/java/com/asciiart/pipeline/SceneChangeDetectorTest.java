@@ -0,0 +1,123 @@
+package com.asciiart.pipeline;
+
+import com.asciiart.processor.ASCIIConverter;
+import com.asciiart.processor.GrayFrame;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks which frames the static-scene detector lets through
+ */
+public class SceneChangeDetectorTest {
+    
+    private static final long MS = 1_000_000L;
+    
+    private static GrayFrame filled(int width, int height, int gray) {
+        GrayFrame frame = new GrayFrame(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                frame.set(x, y, gray);
+            }
+        }
+        return frame;
+    }
+    
+    @Test
+    public void smallNoiseIsSkippedAndLocalChangeIsShown() {
+        SceneChangeDetector detector = new SceneChangeDetector(true, 3, 0);
+        ASCIIConverter.GlyphTable table = new ASCIIConverter().getGlyphTable();
+        GrayFrame frame = filled(41, 13, 100);
+        assertFalse(detector.isUnchanged(frame, table, 0), "first frame is always shown");
+        
+        // Noise of +-2 on alternating cells averages out within a block
+        for (int x = 0; x < 41; x++) {
+            frame.set(x, 5, 100 + (x % 2 == 0 ? 2 : -2));
+        }
+        assertTrue(detector.isUnchanged(frame, table, 10 * MS));
+        
+        // One block in the bottom-right corner, a partial block, turns bright
+        frame.set(40, 12, 200);
+        assertFalse(detector.isUnchanged(frame, table, 20 * MS));
+        assertTrue(detector.isUnchanged(frame, table, 30 * MS));
+        assertEquals(2, detector.getUnchangedFrames());
+    }
+    
+    @Test
+    public void slowDriftAddsUpAgainstTheLastShownFrame() {
+        SceneChangeDetector detector = new SceneChangeDetector(true, 3, 0);
+        ASCIIConverter.GlyphTable table = new ASCIIConverter().getGlyphTable();
+        assertFalse(detector.isUnchanged(filled(16, 8, 100), table, 0));
+        assertTrue(detector.isUnchanged(filled(16, 8, 102), table, MS));
+        assertTrue(detector.isUnchanged(filled(16, 8, 103), table, 2 * MS));
+        assertFalse(detector.isUnchanged(filled(16, 8, 104), table, 3 * MS));
+    }
+    
+    @Test
+    public void refreshSizeTableAndInvalidateForceAFrame() {
+        SceneChangeDetector detector = new SceneChangeDetector(true, 3, 500);
+        ASCIIConverter converter = new ASCIIConverter();
+        GrayFrame frame = filled(16, 8, 100);
+        assertFalse(detector.isUnchanged(frame, converter.getGlyphTable(), 0));
+        assertTrue(detector.isUnchanged(frame, converter.getGlyphTable(), 499 * MS));
+        assertFalse(detector.isUnchanged(frame, converter.getGlyphTable(), 500 * MS), "refresh interval");
+        
+        converter.cycleCharset();
+        assertFalse(detector.isUnchanged(frame, converter.getGlyphTable(), 600 * MS), "new glyph table");
+        assertFalse(detector.isUnchanged(filled(17, 8, 100), converter.getGlyphTable(), 700 * MS), "new size");
+        
+        detector.invalidate();
+        assertFalse(detector.isUnchanged(filled(17, 8, 100), converter.getGlyphTable(), 800 * MS));
+        assertTrue(detector.isUnchanged(filled(17, 8, 100), converter.getGlyphTable(), 900 * MS));
+    }
+    
+    @Test
+    public void colorOnlyChangeIsShown() {
+        SceneChangeDetector detector = new SceneChangeDetector(true, 3, 0);
+        ASCIIConverter.GlyphTable table = new ASCIIConverter().getGlyphTable();
+        GrayFrame frame = filled(16, 8, 100);
+        frame.setColored(true);
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 16; x++) {
+                frame.setColor(x, y, 0x646464);
+            }
+        }
+        assertFalse(detector.isUnchanged(frame, table, 0));
+        assertTrue(detector.isUnchanged(frame, table, MS));
+        
+        // Same gray cells, one block turns from gray to red
+        for (int y = 2; y < 4; y++) {
+            for (int x = 8; x < 12; x++) {
+                frame.setColor(x, y, 0xC83232);
+            }
+        }
+        assertFalse(detector.isUnchanged(frame, table, 2 * MS), "hue change");
+        assertTrue(detector.isUnchanged(frame, table, 3 * MS));
+    }
+    
+    @Test
+    public void edgeOnlyChangeIsShown() {
+        SceneChangeDetector detector = new SceneChangeDetector(true, 3, 0);
+        ASCIIConverter.GlyphTable table = new ASCIIConverter().getGlyphTable();
+        GrayFrame frame = filled(16, 8, 100);
+        frame.setEdged(true);
+        frame.getEdges()[3 * frame.getStride() + 5] = GrayFrame.EDGE_VERTICAL;
+        assertFalse(detector.isUnchanged(frame, table, 0));
+        assertTrue(detector.isUnchanged(frame, table, MS));
+        
+        // Same cells and edge count, only the direction turns
+        frame.getEdges()[3 * frame.getStride() + 5] = GrayFrame.EDGE_HORIZONTAL;
+        assertFalse(detector.isUnchanged(frame, table, 2 * MS), "edge direction change");
+    }
+    
+    @Test
+    public void disabledDetectorShowsEveryFrame() {
+        SceneChangeDetector detector = new SceneChangeDetector(false, 3, 0);
+        ASCIIConverter.GlyphTable table = new ASCIIConverter().getGlyphTable();
+        GrayFrame frame = filled(16, 8, 100);
+        assertFalse(detector.isUnchanged(frame, table, 0));
+        assertFalse(detector.isUnchanged(frame, table, MS));
+    }
+}
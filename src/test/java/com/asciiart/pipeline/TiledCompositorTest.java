@@ -0,0 +1,194 @@
+package com.asciiart.pipeline;
+
+import com.asciiart.camera.FrameSource;
+import com.asciiart.camera.SyntheticFrameSource;
+import com.asciiart.processor.GrayFrame;
+import com.asciiart.processor.ImageProcessor;
+import com.asciiart.processor.RowBands;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks tile placement and that every source ends up in its own tile
+ */
+public class TiledCompositorTest {
+    
+    /**
+     * Delivers one synthetic frame and then nothing, like a stalled camera
+     */
+    private static final class OneShotSource implements FrameSource {
+        private final SyntheticFrameSource delegate;
+        private boolean delivered = false;
+        
+        OneShotSource(SyntheticFrameSource.Pattern pattern, int width, int height) {
+            this.delegate = new SyntheticFrameSource(pattern, width, height);
+        }
+        
+        @Override
+        public boolean initialize() {
+            return delegate.initialize();
+        }
+        
+        @Override
+        public Mat captureFrame() {
+            if (delivered) {
+                return null;
+            }
+            delivered = true;
+            return delegate.captureFrame();
+        }
+        
+        @Override
+        public int getFrameWidth() {
+            return delegate.getFrameWidth();
+        }
+        
+        @Override
+        public int getFrameHeight() {
+            return delegate.getFrameHeight();
+        }
+        
+        @Override
+        public String getName() {
+            return "one-shot " + delegate.getName();
+        }
+        
+        @Override
+        public void release() {
+            delegate.release();
+        }
+    }
+    
+    /**
+     * Remembers the threads its frames were grabbed on
+     */
+    private static final class ThreadRecordingSource extends SyntheticFrameSource {
+        final Set<Thread> grabThreads = ConcurrentHashMap.newKeySet();
+        
+        ThreadRecordingSource(Pattern pattern) {
+            super(pattern, 320, 240);
+        }
+        
+        @Override
+        public Mat captureFrame() {
+            grabThreads.add(Thread.currentThread());
+            return super.captureFrame();
+        }
+    }
+    
+    private static long sum(GrayFrame frame, int x, int y, int width, int height) {
+        long sum = 0;
+        for (int row = y; row < y + height; row++) {
+            for (int column = x; column < x + width; column++) {
+                sum += frame.get(column, row);
+            }
+        }
+        return sum;
+    }
+    
+    @Test
+    public void gridSplitsTheFrameWithoutGapsOrOverlap() {
+        int[][] rects = TileLayout.compute(TileLayout.Mode.GRID, 3, 81, 25);
+        assertArrayEquals(new int[]{0, 0, 40, 12}, rects[0]);
+        assertArrayEquals(new int[]{40, 0, 41, 12}, rects[1]);
+        assertArrayEquals(new int[]{0, 12, 40, 13}, rects[2]);
+        
+        int[][] single = TileLayout.compute(TileLayout.Mode.GRID, 1, 80, 24);
+        assertArrayEquals(new int[]{0, 0, 80, 24}, single[0]);
+    }
+    
+    @Test
+    public void pictureInPictureStacksInsetsBottomRight() {
+        int[][] rects = TileLayout.compute(TileLayout.Mode.PIP, 3, 90, 30);
+        assertArrayEquals(new int[]{0, 0, 90, 30}, rects[0]);
+        assertArrayEquals(new int[]{60, 20, 30, 10}, rects[1]);
+        assertArrayEquals(new int[]{30, 20, 30, 10}, rects[2]);
+        assertEquals(TileLayout.Mode.PIP, TileLayout.Mode.parse("pip"));
+        assertEquals(TileLayout.Mode.GRID, TileLayout.Mode.parse("unknown"));
+    }
+    
+    @Test
+    public void eachSourceFillsItsOwnTile() {
+        ImageProcessor main = new ImageProcessor();
+        main.setTargetDimensions(80, 24);
+        List<FrameSource> sources = Arrays.asList(
+            new SyntheticFrameSource(SyntheticFrameSource.Pattern.GRADIENT, 640, 480),
+            new OneShotSource(SyntheticFrameSource.Pattern.NOISE, 1280, 720));
+        TiledCompositor compositor = new TiledCompositor(sources, TileLayout.Mode.GRID,
+                                                         TiledCompositor.DEFAULT_SAMPLES_PER_CELL, main, null);
+        assertTrue(compositor.initialize());
+        try {
+            GrayFrame frame = compositor.compose();
+            assertNotNull(frame);
+            assertEquals(80, frame.getWidth());
+            assertEquals(24, frame.getHeight());
+            assertTrue(sum(frame, 0, 0, 40, 24) > 0, "left tile empty");
+            assertTrue(sum(frame, 40, 0, 40, 24) > 0, "right tile empty");
+            long right = sum(frame, 40, 0, 40, 24);
+            
+            // The stalled source keeps its last frame while the other one moves on
+            frame = compositor.compose();
+            assertNotNull(frame);
+            assertEquals(right, sum(frame, 40, 0, 40, 24));
+        } finally {
+            compositor.release();
+        }
+    }
+    
+    @Test
+    public void sourcesAreGrabbedOutsideTheBandPool() {
+        ImageProcessor main = new ImageProcessor();
+        main.setTargetDimensions(80, 24);
+        List<ThreadRecordingSource> sources = Arrays.asList(
+            new ThreadRecordingSource(SyntheticFrameSource.Pattern.GRADIENT),
+            new ThreadRecordingSource(SyntheticFrameSource.Pattern.NOISE),
+            new ThreadRecordingSource(SyntheticFrameSource.Pattern.MOVING),
+            new ThreadRecordingSource(SyntheticFrameSource.Pattern.GRADIENT));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        TiledCompositor compositor = new TiledCompositor(new ArrayList<>(sources), TileLayout.Mode.GRID, 2, main,
+                                                         new RowBands(pool, 0));
+        assertTrue(compositor.initialize());
+        try {
+            for (int i = 0; i < 5; i++) {
+                assertNotNull(compositor.compose());
+            }
+            for (ThreadRecordingSource source : sources) {
+                assertEquals(Collections.singleton(Thread.currentThread()), source.grabThreads);
+            }
+        } finally {
+            compositor.release();
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    public void nothingNewGivesNoFrame() {
+        ImageProcessor main = new ImageProcessor();
+        main.setTargetDimensions(40, 12);
+        TiledCompositor compositor = new TiledCompositor(
+            Arrays.asList(new OneShotSource(SyntheticFrameSource.Pattern.GRADIENT, 320, 240),
+                          new OneShotSource(SyntheticFrameSource.Pattern.MOVING, 320, 240)),
+            TileLayout.Mode.PIP, 2, main, null);
+        assertTrue(compositor.initialize());
+        try {
+            assertNotNull(compositor.compose());
+            assertNull(compositor.compose());
+        } finally {
+            compositor.release();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.asciiart.processor;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the glyph lookup table against the arithmetic mapping it replaces
+ */
+public class ASCIIConverterTest {
+    
+    private static final String[] CHARSETS = {
+        ASCIIConverter.SIMPLE_CHARSET, ASCIIConverter.EXTENDED_CHARSET, ASCIIConverter.BLOCK_CHARSET
+    };
+    
+    /**
+     * Mat.convertTo followed by the original clamp-multiply-divide mapping
+     */
+    private static char legacyGlyph(String charset, int gray, double contrast, int brightness) {
+        int adjusted = Math.max(0, Math.min(255, (int) Math.round(gray * contrast + brightness)));
+        return charset.charAt((adjusted * (charset.length() - 1)) / 255);
+    }
+    
+    @Test
+    public void tableMatchesArithmeticMapping() {
+        double[] contrasts = {0.5, 1.0, 1.8, 3.0};
+        int[] brightnesses = {-100, 0, 40};
+        for (String charset : CHARSETS) {
+            ASCIIConverter converter = new ASCIIConverter(charset);
+            for (double contrast : contrasts) {
+                for (int brightness : brightnesses) {
+                    converter.setAdjustments(contrast, brightness);
+                    ASCIIConverter.GlyphTable table = converter.getGlyphTable();
+                    for (int gray = 0; gray < 256; gray++) {
+                        char expected = legacyGlyph(charset, gray, contrast, brightness);
+                        assertEquals(expected, converter.grayscaleToChar(gray));
+                        
+                        int stride = table.getBytesPerGlyph();
+                        String decoded = new String(table.getEncoded(), gray * stride,
+                                                    table.getEncodedLength()[gray], StandardCharsets.UTF_8);
+                        assertEquals(String.valueOf(expected), decoded);
+                    }
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void tableIsReplacedOnlyWhenParametersChange() {
+        ASCIIConverter converter = new ASCIIConverter();
+        ASCIIConverter.GlyphTable before = converter.getGlyphTable();
+        converter.setAdjustments(1.0, 0);
+        assertSame(before, converter.getGlyphTable());
+        
+        converter.setAdjustments(1.2, 0);
+        assertNotSame(before, converter.getGlyphTable());
+    }
+    
+    @Test
+    public void deferredAdjustmentsMatchProcessorAdjustments() {
+        GrayFrame gray = new GrayFrame(16, 16);
+        for (int y = 0; y < 16; y++) {
+            for (int x = 0; x < 16; x++) {
+                gray.set(x, y, y * 16 + x);
+            }
+        }
+        
+        ImageProcessor processor = new ImageProcessor();
+        ASCIIConverter converter = new ASCIIConverter();
+        processor.deferAdjustmentsTo(converter);
+        processor.applyConfig(PipelineConfig.defaults().withContrast(1.6).withBrightness(-20));
+        
+        String art = converter.convertToAscii(gray);
+        String[] lines = art.split("\n");
+        for (int y = 0; y < 16; y++) {
+            for (int x = 0; x < 16; x++) {
+                assertEquals(legacyGlyph(ASCIIConverter.SIMPLE_CHARSET, gray.get(x, y), 1.6, -20), lines[y].charAt(x));
+            }
+        }
+    }
+    
+    /**
+     * Mean charset level shown for a frame filled with one gray value
+     */
+    private static double meanLevel(ASCIIConverter converter, String charset, int gray) {
+        GrayFrame frame = new GrayFrame(64, 32);
+        for (int y = 0; y < 32; y++) {
+            for (int x = 0; x < 64; x++) {
+                frame.set(x, y, gray);
+            }
+        }
+        converter.dither(frame);
+        long sum = 0;
+        for (int y = 0; y < 32; y++) {
+            for (int x = 0; x < 64; x++) {
+                sum += charset.indexOf(converter.grayscaleToChar(frame.get(x, y)));
+            }
+        }
+        return sum / (64.0 * 32.0);
+    }
+    
+    @Test
+    public void ditheringPreservesAverageBrightness() {
+        String charset = ASCIIConverter.BLOCK_CHARSET;
+        ASCIIConverter converter = new ASCIIConverter(charset);
+        int maxLevel = charset.length() - 1;
+        for (ASCIIConverter.Dither mode : new ASCIIConverter.Dither[] {
+                ASCIIConverter.Dither.BAYER, ASCIIConverter.Dither.FLOYD_STEINBERG}) {
+            converter.setDither(mode);
+            for (int gray = 0; gray < 256; gray += 17) {
+                double expected = gray * maxLevel / 255.0;
+                assertEquals(expected, meanLevel(converter, charset, gray), 0.05, mode + " at gray " + gray);
+            }
+        }
+    }
+    
+    @Test
+    public void ditheringMixesNeighbouringLevels() {
+        ASCIIConverter converter = new ASCIIConverter(ASCIIConverter.SIMPLE_CHARSET);
+        converter.setDither(ASCIIConverter.Dither.ATKINSON);
+        // Halfway between levels 4 and 5, which undithered always shows level 4
+        double mean = meanLevel(converter, ASCIIConverter.SIMPLE_CHARSET, 127);
+        assertTrue(mean > 4.2 && mean < 4.8, "mean level " + mean);
+        
+        converter.setDither(ASCIIConverter.Dither.NONE);
+        assertEquals(4.0, meanLevel(converter, ASCIIConverter.SIMPLE_CHARSET, 127));
+    }
+    
+    @Test
+    public void ditheringFollowsDeferredAdjustments() {
+        ASCIIConverter converter = new ASCIIConverter(ASCIIConverter.BLOCK_CHARSET);
+        converter.setAdjustments(1.0, 100);
+        converter.setDither(ASCIIConverter.Dither.BAYER);
+        // Raw 100 is adjusted to 200, 3.14 levels up the block charset
+        assertEquals(200 * 4 / 255.0, meanLevel(converter, ASCIIConverter.BLOCK_CHARSET, 100), 0.05);
+    }
+}
@@ -0,0 +1,165 @@
+package com.asciiart.processor;
+
+import com.asciiart.camera.SyntheticFrameSource;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks frame processing across row bands, color sampling and edge detection
+ */
+public class ImageProcessorTest {
+    
+    // Resolutions selectable with keys 1-4
+    private static final int[][] TARGETS = {{40, 15}, {80, 24}, {120, 40}, {160, 50}};
+    
+    private static int maxDifference(GrayFrame expected, GrayFrame actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getHeight(), actual.getHeight(), "rows");
+        assertEquals(expected.getWidth(), actual.getWidth(), "cols");
+        int max = 0;
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                max = Math.max(max, Math.abs(expected.get(x, y) - actual.get(x, y)));
+            }
+        }
+        return max;
+    }
+    
+    @Test
+    public void parallelBandsMatchSequentialExactly() {
+        SyntheticFrameSource source = new SyntheticFrameSource(SyntheticFrameSource.Pattern.NOISE, 1279, 721);
+        assertTrue(source.initialize());
+        ImageProcessor sequential = new ImageProcessor();
+        ImageProcessor parallel = new ImageProcessor();
+        ASCIIConverter converter = new ASCIIConverter(ASCIIConverter.EXTENDED_CHARSET);
+        ASCIIConverter parallelConverter = new ASCIIConverter(ASCIIConverter.EXTENDED_CHARSET);
+        
+        // Threshold 0 splits every frame, including bands only a row or two tall
+        try (RowBands bands = RowBands.create(7, 0)) {
+            parallel.setRowBands(bands);
+            parallelConverter.setRowBands(bands);
+            Mat frame = source.captureFrame();
+            for (int[] target : TARGETS) {
+                sequential.setTargetDimensions(target[0], target[1]);
+                parallel.setTargetDimensions(target[0], target[1]);
+                GrayFrame expected = sequential.processFrame(frame);
+                GrayFrame actual = parallel.processFrame(frame);
+                assertEquals(0, maxDifference(expected, actual), target[0] + "x" + target[1]);
+                assertEquals(converter.convertToAscii(expected), parallelConverter.convertToAscii(actual));
+                
+                Mat gray = sequential.toGrayscale(frame);
+                assertEquals(0, maxDifference(sequential.matToGrayFrame(gray, new GrayFrame()),
+                                              parallel.matToGrayFrame(gray, new GrayFrame())));
+                sequential.recycle(gray);
+            }
+        }
+        source.release();
+    }
+    
+    @Test
+    public void colorSamplingAgreesAcrossBands() {
+        SyntheticFrameSource source = new SyntheticFrameSource(SyntheticFrameSource.Pattern.NOISE, 1279, 721);
+        assertTrue(source.initialize());
+        Mat frame = source.captureFrame();
+        ImageProcessor sequential = new ImageProcessor();
+        ImageProcessor parallel = new ImageProcessor();
+        sequential.setColorSampling(true);
+        parallel.setColorSampling(true);
+        
+        try (RowBands bands = RowBands.create(7, 0)) {
+            parallel.setRowBands(bands);
+            for (int[] target : TARGETS) {
+                sequential.setTargetDimensions(target[0], target[1]);
+                parallel.setTargetDimensions(target[0], target[1]);
+                GrayFrame cells = sequential.processFrame(frame);
+                GrayFrame banded = parallel.processFrame(frame);
+                assertTrue(cells.isColored() && banded.isColored());
+                for (int y = 0; y < cells.getHeight(); y++) {
+                    for (int x = 0; x < cells.getWidth(); x++) {
+                        assertEquals(cells.getColor(x, y), banded.getColor(x, y), x + "," + y);
+                    }
+                }
+                
+                // The top-left cell takes the pixel in the middle of its area, BGR read back as RGB
+                double cellHeight = (double) frame.rows() / cells.getHeight();
+                int lastRow = 0;
+                while ((int) ((lastRow + 1) / cellHeight) == 0) {
+                    lastRow++;
+                }
+                byte[] pixel = new byte[3];
+                frame.ptr(lastRow / 2, frame.cols() / cells.getWidth() / 2).get(pixel);
+                int rgb = cells.getColor(0, 0);
+                assertEquals(pixel[2] & 0xFF, (rgb >> 16) & 0xFF);
+                assertEquals(pixel[1] & 0xFF, (rgb >> 8) & 0xFF);
+                assertEquals(pixel[0] & 0xFF, rgb & 0xFF);
+            }
+        }
+        source.release();
+    }
+    
+    private static int edgeAtCenter(int[][] pattern) {
+        GrayFrame frame = new GrayFrame(9, 9);
+        for (int y = 0; y < 9; y++) {
+            for (int x = 0; x < 9; x++) {
+                frame.set(x, y, pattern[0][0] * x + pattern[0][1] * y > pattern[1][0] ? 255 : 0);
+            }
+        }
+        new ImageProcessor().detectEdges(frame);
+        assertTrue(frame.hasEdges());
+        return frame.getEdges()[4 * 9 + 4];
+    }
+    
+    @Test
+    public void edgeDirectionsFollowGradients() {
+        // Bright where a*x + b*y > c; the edge through the center runs across the gradient
+        assertEquals(GrayFrame.EDGE_VERTICAL, edgeAtCenter(new int[][]{{1, 0}, {4}}));
+        assertEquals(GrayFrame.EDGE_HORIZONTAL, edgeAtCenter(new int[][]{{0, 1}, {4}}));
+        assertEquals(GrayFrame.EDGE_FALLING, edgeAtCenter(new int[][]{{1, -1}, {0}}));
+        assertEquals(GrayFrame.EDGE_RISING, edgeAtCenter(new int[][]{{1, 1}, {8}}));
+        assertEquals(GrayFrame.EDGE_NONE, edgeAtCenter(new int[][]{{0, 0}, {4}}));
+    }
+    
+    @Test
+    public void edgeModeMarksOnlyStrongGradients() {
+        SyntheticFrameSource source = new SyntheticFrameSource(SyntheticFrameSource.Pattern.GRADIENT, 640, 480);
+        assertTrue(source.initialize());
+        ImageProcessor processor = new ImageProcessor();
+        processor.setEdgeDetection(true);
+        processor.setEdgeThreshold(200);
+        
+        // A smooth gradient has no edge anywhere near the threshold
+        GrayFrame cells = processor.processFrame(source.captureFrame());
+        assertTrue(cells.hasEdges());
+        for (int i = 0; i < cells.getWidth() * cells.getHeight(); i++) {
+            assertEquals(GrayFrame.EDGE_NONE, cells.getEdges()[i]);
+        }
+        
+        processor.setEdgeDetection(false);
+        assertFalse(processor.processFrame(source.captureFrame()).hasEdges());
+        source.release();
+    }
+    
+    @Test
+    public void processingReusesOutputBuffer() {
+        SyntheticFrameSource source = new SyntheticFrameSource(SyntheticFrameSource.Pattern.NOISE, 320, 240);
+        assertTrue(source.initialize());
+        ImageProcessor processor = new ImageProcessor();
+        
+        GrayFrame first = processor.processFrame(source.captureFrame());
+        byte[] cells = first.getData();
+        GrayFrame second = processor.processFrame(source.captureFrame());
+        assertSame(first, second);
+        assertSame(cells, second.getData());
+        
+        int[] size = processor.terminalSizeFor(320, 240);
+        assertEquals(size[0], second.getWidth());
+        assertEquals(size[1], second.getHeight());
+        source.release();
+    }
+}
@@ -0,0 +1,74 @@
+package com.asciiart.processor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks settings parsing, clamping and that tables are only rebuilt when their inputs change
+ */
+public class PipelineConfigTest {
+    
+    private static PipelineConfig parse(String json) throws Exception {
+        return PipelineConfig.fromSettings(new ObjectMapper().readTree(json));
+    }
+    
+    @Test
+    public void readsProcessingSettings() throws Exception {
+        PipelineConfig config = parse("{\"display\": {\"characterSet\": \"block\"}, \"processing\": "
+                                      + "{\"contrast\": 1.4, \"brightness\": -20, \"dither\": \"bayer\", "
+                                      + "\"edgeDetection\": true, \"edgeThreshold\": 900}}");
+        assertEquals(1.4, config.getContrast());
+        assertEquals(-20, config.getBrightness());
+        assertEquals(ASCIIConverter.BLOCK_CHARSET, config.getCharset());
+        assertEquals(ASCIIConverter.Dither.BAYER, config.getDither());
+        assertTrue(config.isEdgeDetection());
+        assertEquals(255, config.getEdgeThreshold());
+        assertEquals(ASCIIConverter.BLOCK_CHARSET, config.getGlyphTable().getCharset());
+        
+        PipelineConfig empty = parse("{}");
+        assertEquals(1.0, empty.getContrast());
+        assertEquals(ASCIIConverter.SIMPLE_CHARSET, empty.getCharset());
+        assertEquals(ASCIIConverter.Dither.NONE, empty.getDither());
+    }
+    
+    @Test
+    public void changesMakeNewSnapshotsWithinLimits() {
+        PipelineConfig config = PipelineConfig.defaults();
+        PipelineConfig brighter = config.withBrightness(500);
+        assertEquals(PipelineConfig.MAX_BRIGHTNESS, brighter.getBrightness());
+        assertEquals(0, config.getBrightness());
+        assertEquals(PipelineConfig.MIN_CONTRAST, config.withContrast(0.1).getContrast());
+        
+        // Only the table's own inputs rebuild it
+        assertNotSame(config.getGlyphTable(), brighter.getGlyphTable());
+        assertSame(config.getGlyphTable(), config.withDither(ASCIIConverter.Dither.ATKINSON).getGlyphTable());
+        assertSame(config.getGlyphTable(), config.withEdgeDetection(true).getGlyphTable());
+        
+        assertEquals(ASCIIConverter.EXTENDED_CHARSET, config.withNextCharset().getCharset());
+        assertEquals(ASCIIConverter.SIMPLE_CHARSET, config.withCharset("ab").withNextCharset().getCharset());
+    }
+    
+    @Test
+    public void converterTakesThePrebuiltTable() {
+        PipelineConfig config = PipelineConfig.defaults().withCharset(ASCIIConverter.EXTENDED_CHARSET)
+                                              .withContrast(2.0).withDither(ASCIIConverter.Dither.BAYER);
+        ASCIIConverter converter = new ASCIIConverter();
+        converter.applyConfig(config);
+        assertSame(config.getGlyphTable(), converter.getGlyphTable());
+        assertEquals(ASCIIConverter.Dither.BAYER, converter.getDither());
+        
+        // An active override keeps rendering its own charset, from a table built with the snapshot
+        converter.setCharsetOverride(ASCIIConverter.SIMPLE_CHARSET);
+        PipelineConfig brighter = config.withBrightness(10);
+        converter.applyConfig(brighter);
+        assertEquals(ASCIIConverter.SIMPLE_CHARSET, converter.getCurrentCharset());
+        assertSame(brighter.getGlyphTable(ASCIIConverter.SIMPLE_CHARSET), converter.getGlyphTable());
+        converter.setCharsetOverride(null);
+        assertEquals(ASCIIConverter.EXTENDED_CHARSET, converter.getCurrentCharset());
+    }
+}
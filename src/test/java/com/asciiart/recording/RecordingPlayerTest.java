@@ -0,0 +1,115 @@
+package com.asciiart.recording;
+
+import com.asciiart.processor.ASCIIConverter;
+import com.asciiart.processor.GrayFrame;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Plays back recordings written by RecordingWriter, sequentially and by seeking
+ */
+public class RecordingPlayerTest {
+    
+    private static final int FRAMES = 23;
+    private static final long FRAME_NANOS = 100_000_000L;
+    
+    private static GrayFrame frame(int i) {
+        int width = i < 15 ? 20 : 26;
+        GrayFrame frame = new GrayFrame(width, 6);
+        for (int y = 0; y < 6; y++) {
+            for (int x = 0; x < width; x++) {
+                frame.set(x, y, (x * 10 + y * 3) & 0xFF);
+            }
+        }
+        frame.set(i % width, i % 6, 255);
+        return frame;
+    }
+    
+    private static String text(GrayFrame frame, ASCIIConverter.GlyphTable table) {
+        StringBuilder text = new StringBuilder();
+        for (int y = 0; y < frame.getHeight(); y++) {
+            for (int x = 0; x < frame.getWidth(); x++) {
+                text.append(table.getChars()[frame.get(x, y)]);
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+    
+    /**
+     * Record the test frames, switching charset half way; returns the expected text per frame
+     */
+    private static List<String> record(RecordingWriter writer) throws IOException {
+        ASCIIConverter converter = new ASCIIConverter();
+        List<String> expected = new ArrayList<>();
+        long base = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            if (i == 10) {
+                converter.setCharset(ASCIIConverter.EXTENDED_CHARSET);
+            }
+            GrayFrame frame = frame(i);
+            writer.writeFrame(frame, converter.getGlyphTable(), base + i * FRAME_NANOS);
+            expected.add(text(frame, converter.getGlyphTable()));
+        }
+        return expected;
+    }
+    
+    @Test
+    public void playsSequentiallyAndSeeksBothWays() throws IOException {
+        Path path = Files.createTempDirectory("playback").resolve("test" + RecordingFormat.EXTENSION);
+        List<String> expected;
+        try (RecordingWriter writer = new RecordingWriter(path, ASCIIConverter.SIMPLE_CHARSET, 20, 6, 10.0, 5)) {
+            expected = record(writer);
+        }
+        
+        try (RecordingPlayer player = new RecordingPlayer(path)) {
+            assertEquals(FRAMES, player.getFrameCount());
+            for (int i = 0; i < FRAMES; i++) {
+                player.next();
+                assertEquals(i, player.getFrameNumber());
+                assertEquals(expected.get(i), text(player.getFrame(), player.getGlyphTable()));
+            }
+            assertFalse(player.next());
+            
+            for (int target : new int[] {13, 2, 3, 22, 0, 16, 15, 7}) {
+                player.seek(target);
+                assertEquals(target, player.getFrameNumber());
+                assertEquals(expected.get(target), text(player.getFrame(), player.getGlyphTable()), "frame " + target);
+            }
+            
+            player.seekMillis(12 * 100 + 50);
+            assertEquals(12, player.getFrameNumber());
+            player.seekMillis(0);
+            assertEquals(0, player.getFrameNumber());
+            player.seekMillis(Long.MAX_VALUE);
+            assertEquals(FRAMES - 1, player.getFrameNumber());
+        }
+    }
+    
+    @Test
+    public void unclosedRecordingIsScanned() throws IOException {
+        Path path = Files.createTempDirectory("playback").resolve("crash" + RecordingFormat.EXTENSION);
+        try (RecordingWriter writer = new RecordingWriter(path, ASCIIConverter.SIMPLE_CHARSET, 20, 6, 10.0, 5)) {
+            List<String> expected = record(writer);
+            writer.flush();
+            
+            try (RecordingPlayer player = new RecordingPlayer(path)) {
+                assertEquals(0, player.getHeader().getIndexOffset());
+                assertEquals(FRAMES, player.getFrameCount());
+                player.seek(18);
+                assertEquals(expected.get(18), text(player.getFrame(), player.getGlyphTable()));
+                player.rewind();
+                player.next();
+                assertEquals(expected.get(0), text(player.getFrame(), player.getGlyphTable()));
+            }
+        }
+    }
+}
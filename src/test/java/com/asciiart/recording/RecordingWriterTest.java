@@ -0,0 +1,137 @@
+package com.asciiart.recording;
+
+import com.asciiart.processor.ASCIIConverter;
+import com.asciiart.processor.GrayFrame;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Writes recordings and decodes them again with the format helpers
+ */
+public class RecordingWriterTest {
+    
+    private static GrayFrame gradient(int width, int height, int offset) {
+        GrayFrame frame = new GrayFrame(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                frame.set(x, y, (x * 8 + offset) & 0xFF);
+            }
+        }
+        return frame;
+    }
+    
+    /**
+     * Every frame of the recording as text, replayed front to back
+     */
+    private static List<String> replay(Path path, RecordingFormat.Header[] headerOut) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(path));
+        RecordingFormat.Header header = RecordingFormat.Header.read(in);
+        headerOut[0] = header;
+        StringBuilder glyphs = new StringBuilder(header.getGlyphs());
+        long end = header.getIndexOffset() > 0 ? header.getIndexOffset() : in.limit();
+        List<String> frames = new ArrayList<>();
+        byte[] cells = new byte[0];
+        int width = 0;
+        int height = 0;
+        while (in.position() < end) {
+            byte type = in.get();
+            in.getInt();
+            int length = in.getInt();
+            ByteBuffer payload = in.slice();
+            payload.limit(length);
+            in.position(in.position() + length);
+            if (type == RecordingFormat.GLYPHS) {
+                int added = payload.getShort();
+                for (int i = 0; i < added; i++) {
+                    glyphs.append(payload.getChar());
+                }
+                continue;
+            }
+            if (type == RecordingFormat.KEYFRAME) {
+                width = payload.getShort();
+                height = payload.getShort();
+                cells = new byte[width * height];
+                RecordingFormat.decodeKeyframe(payload, cells, width * height);
+            } else {
+                RecordingFormat.decodeDelta(payload, cells, width * height);
+            }
+            StringBuilder text = new StringBuilder();
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    text.append(glyphs.charAt(cells[y * width + x] & 0xFF));
+                }
+                text.append('\n');
+            }
+            frames.add(text.toString());
+        }
+        return frames;
+    }
+    
+    @Test
+    public void framesReplayExactlyAcrossDeltasSizesAndCharsets() throws IOException {
+        Path dir = Files.createTempDirectory("recording");
+        Path path = dir.resolve("test" + RecordingFormat.EXTENSION);
+        ASCIIConverter converter = new ASCIIConverter();
+        List<String> expected = new ArrayList<>();
+        
+        try (RecordingWriter writer = new RecordingWriter(path, converter.getCurrentCharset(), 24, 6, 15.0, 4)) {
+            for (int i = 0; i < 10; i++) {
+                // A small moving change per frame, then a resize and a charset switch
+                GrayFrame frame = i < 6 ? gradient(24, 6, 0) : gradient(30, 5, 3);
+                frame.set(i % 24, i % 5, 255);
+                if (i == 8) {
+                    converter.setCharset(ASCIIConverter.BLOCK_CHARSET);
+                }
+                writer.writeFrame(frame, converter.getGlyphTable(), System.nanoTime());
+                expected.add(converter.convertToAscii(frame));
+            }
+            assertEquals(10, writer.getFrameCount());
+        }
+        
+        RecordingFormat.Header[] header = new RecordingFormat.Header[1];
+        assertEquals(expected, replay(path, header));
+        assertEquals(24, header[0].getWidth());
+        assertEquals(6, header[0].getHeight());
+        assertEquals(10, header[0].getFrameCount());
+        
+        // Index: keyframes at 0 and 4 (interval), 6 (resize), and 6 + 4 is past the end
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(path));
+        in.position((int) header[0].getIndexOffset());
+        assertEquals(3, in.getInt());
+        int[] frameNumbers = new int[3];
+        for (int i = 0; i < 3; i++) {
+            frameNumbers[i] = in.getInt();
+            in.getInt();
+            long offset = in.getLong();
+            assertEquals(RecordingFormat.KEYFRAME, Files.readAllBytes(path)[(int) offset]);
+        }
+        assertEquals(List.of(0, 4, 6), List.of(frameNumbers[0], frameNumbers[1], frameNumbers[2]));
+        int glyphCount = in.getShort();
+        assertTrue(glyphCount >= ASCIIConverter.SIMPLE_CHARSET.length() + ASCIIConverter.BLOCK_CHARSET.length() - 1);
+    }
+    
+    @Test
+    public void unchangedFramesCostOnlyARecordHeader() throws IOException {
+        Path path = Files.createTempDirectory("recording").resolve("static" + RecordingFormat.EXTENSION);
+        ASCIIConverter converter = new ASCIIConverter();
+        GrayFrame frame = gradient(80, 24, 0);
+        long afterFirst;
+        try (RecordingWriter writer = new RecordingWriter(path, converter.getCurrentCharset(), 80, 24, 15.0, 1000)) {
+            writer.writeFrame(frame, converter.getGlyphTable(), System.nanoTime());
+            afterFirst = writer.getBytesWritten();
+            for (int i = 0; i < 100; i++) {
+                writer.writeFrame(frame, converter.getGlyphTable(), System.nanoTime());
+            }
+            assertEquals(afterFirst + 100L * RecordingFormat.RECORD_HEADER_BYTES, writer.getBytesWritten());
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.asciiart.server;
+
+import com.asciiart.processor.ASCIIConverter;
+import com.asciiart.processor.GrayFrame;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives the server with loopback clients of each protocol
+ */
+public class StreamServerTest {
+    
+    private static final ASCIIConverter.GlyphTable GLYPHS = ASCIIConverter.GlyphTable.ofGlyphs("abcdefghijXYZ");
+    
+    private StreamServer server;
+    private final List<Socket> sockets = new ArrayList<>();
+    
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = new StreamServer("127.0.0.1", 0, 500);
+        server.setDetectMillis(50);
+        server.setSendBufferBytes(16384);
+        server.start();
+    }
+    
+    @AfterEach
+    public void stopServer() throws IOException {
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        server.close();
+    }
+    
+    private static GrayFrame frame(int width, int height, int glyph) {
+        GrayFrame frame = new GrayFrame(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                frame.set(x, y, glyph);
+            }
+        }
+        return frame;
+    }
+    
+    private Socket connect(int receiveBuffer) throws IOException {
+        Socket socket = new Socket();
+        if (receiveBuffer > 0) {
+            socket.setReceiveBufferSize(receiveBuffer);
+        }
+        socket.connect(new InetSocketAddress("127.0.0.1", server.getPort()));
+        socket.setSoTimeout(5000);
+        sockets.add(socket);
+        return socket;
+    }
+    
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+    
+    /**
+     * Read until the text received so far contains the expected text
+     */
+    private static String readUntil(InputStream in, String expected) throws IOException {
+        StringBuilder received = new StringBuilder();
+        byte[] buffer = new byte[65536];
+        int from = 0;
+        while (received.indexOf(expected, from) < 0) {
+            from = Math.max(0, received.length() - expected.length());
+            int n = in.read(buffer);
+            assertTrue(n > 0, "connection closed before " + expected);
+            received.append(new String(buffer, 0, n, StandardCharsets.ISO_8859_1));
+        }
+        return received.toString();
+    }
+    
+    private static void send(Socket socket, String request) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(request.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+    
+    @Test
+    public void rawClientGetsFullRepaints() throws Exception {
+        Socket socket = connect(0);
+        await(() -> server.getStreamingClients() == 1);
+        
+        server.publish(frame(3, 2, 1), GLYPHS);
+        String text = readUntil(socket.getInputStream(), "\u001b[J");
+        assertTrue(text.startsWith("\u001b[2J\u001b[Hbbb\u001b[K\r\nbbb\u001b[K\u001b[J"), text);
+        await(() -> server.getFramesSent() == 1);
+    }
+    
+    @Test
+    public void eventStreamSendsEachRowAsData() throws Exception {
+        Socket socket = connect(0);
+        send(socket, "GET /events HTTP/1.1\r\nHost: localhost\r\nAccept: text/event-stream\r\n\r\n");
+        await(() -> server.getStreamingClients() == 1);
+        
+        server.publish(frame(2, 2, 2), GLYPHS);
+        String text = readUntil(socket.getInputStream(), "data: cc\n\n");
+        assertTrue(text.startsWith("HTTP/1.1 200 OK\r\n"), text);
+        assertTrue(text.contains("Content-Type: text/event-stream"), text);
+        assertTrue(text.endsWith("\r\n\r\ndata: cc\ndata: cc\n\n"), text);
+    }
+    
+    @Test
+    public void webSocketHandshakeAndTextFrame() throws Exception {
+        Socket socket = connect(0);
+        // Sample key and answer from RFC 6455
+        send(socket, "GET /ws HTTP/1.1\r\nHost: localhost\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                     + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\nSec-WebSocket-Version: 13\r\n\r\n");
+        InputStream in = socket.getInputStream();
+        String head = readUntil(in, "\r\n\r\n");
+        assertTrue(head.startsWith("HTTP/1.1 101 Switching Protocols\r\n"), head);
+        assertTrue(head.contains("Sec-WebSocket-Accept: s3pPLMBiTxaQ9kYGzzhZRbK+xOo=\r\n"), head);
+        await(() -> server.getStreamingClients() == 1);
+        
+        server.publish(frame(4, 2, 3), GLYPHS);
+        byte[] header = in.readNBytes(2);
+        assertEquals((byte) 0x81, header[0]);
+        assertEquals(9, header[1]);
+        assertEquals("dddd\ndddd", new String(in.readNBytes(9), StandardCharsets.US_ASCII));
+        
+        // Long frames use the 16-bit length
+        server.publish(frame(100, 3, 4), GLYPHS);
+        header = in.readNBytes(4);
+        assertEquals(126, header[1]);
+        assertEquals(302, ((header[2] & 0xFF) << 8) | (header[3] & 0xFF));
+    }
+    
+    @Test
+    public void rootServesViewerPage() throws Exception {
+        Socket socket = connect(0);
+        send(socket, "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n");
+        String page = new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(page.startsWith("HTTP/1.1 200 OK\r\n"), page);
+        assertTrue(page.contains("new EventSource('/events')"), page);
+        await(() -> server.getClients() == 0);
+    }
+    
+    @Test
+    public void slowClientSkipsToLatestFrame() throws Exception {
+        Socket slow = connect(4096);
+        Socket fast = connect(0);
+        send(fast, "GET /events HTTP/1.1\r\n\r\n");
+        await(() -> server.getStreamingClients() == 2);
+        InputStream fastIn = fast.getInputStream();
+        readUntil(fastIn, "\r\n\r\n");
+        
+        // Frames far larger than the slow client takes while it is not reading
+        for (int i = 0; i < 100; i++) {
+            server.publish(frame(400, 200, i % 10), GLYPHS);
+            Thread.sleep(2);
+        }
+        server.publish(frame(400, 200, 11), GLYPHS);
+        char[] row = new char[400];
+        Arrays.fill(row, 'Y');
+        String lastRow = new String(row);
+        readUntil(fastIn, "data: " + lastRow + "\n\n");
+        
+        // Catching up, the slow client goes straight to the newest frame
+        readUntil(slow.getInputStream(), lastRow + "\u001b[K\u001b[J");
+        await(() -> server.getFramesSkipped() > 0);
+        assertTrue(server.getFramesSent() < 2 * server.getFramesEncoded());
+    }
+    
+    @Test
+    public void holdsHundredsOfViewers() throws Exception {
+        int viewers = 200;
+        for (int i = 0; i < viewers; i++) {
+            send(connect(0), "GET /events HTTP/1.1\r\n\r\n");
+        }
+        await(() -> server.getStreamingClients() == viewers);
+        
+        server.publish(frame(40, 10, 5), GLYPHS);
+        for (Socket socket : sockets) {
+            readUntil(socket.getInputStream(), "data: ffff");
+        }
+        await(() -> server.getFramesSent() == viewers);
+        assertEquals(1, server.getFramesEncoded());
+        assertEquals(viewers, (int) server.getClientsByProtocol().get("sse"));
+    }
+    
+    @Test
+    public void closedClientsAreDropped() throws Exception {
+        Socket socket = connect(0);
+        await(() -> server.getStreamingClients() == 1);
+        socket.close();
+        await(() -> server.getClients() == 0);
+        assertEquals(1, server.getConnectionsAccepted());
+    }
+}
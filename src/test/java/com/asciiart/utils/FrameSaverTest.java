@@ -0,0 +1,63 @@
+package com.asciiart.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that background saves get unique, ordered files and never block the submitter
+ */
+public class FrameSaverTest {
+    
+    private static List<Path> savedFiles(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+    
+    @Test
+    public void burstGetsUniqueFilesInCaptureOrder() throws IOException {
+        Path dir = Files.createTempDirectory("saves");
+        FrameSaver saver = new FrameSaver(dir.toString(), 64);
+        saver.start();
+        for (int i = 0; i < 40; i++) {
+            assertTrue(saver.submit("frame " + i, " .:-=+*#%@", 1.0, 0, 8, 1));
+        }
+        saver.stop(5000);
+        
+        assertEquals(40, saver.getSavedFrames());
+        List<Path> files = savedFiles(dir);
+        assertEquals(40, files.size());
+        for (int i = 0; i < 40; i++) {
+            String content = new String(Files.readAllBytes(files.get(i)), StandardCharsets.UTF_8);
+            assertTrue(content.contains("\nframe " + i + "\n"), files.get(i).toString());
+            assertTrue(content.contains("Sequence: " + i + "\n"));
+        }
+    }
+    
+    @Test
+    public void fullQueueDropsInsteadOfWaiting() throws IOException {
+        Path dir = Files.createTempDirectory("saves");
+        // Writer not started yet, so nothing drains the queue
+        FrameSaver saver = new FrameSaver(dir.toString(), 2);
+        assertTrue(saver.submit("a", "@", 1.0, 0, 1, 1));
+        assertTrue(saver.submit("b", "@", 1.0, 0, 1, 1));
+        assertFalse(saver.submit("c", "@", 1.0, 0, 1, 1));
+        assertEquals(1, saver.getDroppedFrames());
+        
+        saver.start();
+        saver.stop(5000);
+        assertEquals(2, saver.getSavedFrames());
+        assertEquals(2, savedFiles(dir).size());
+    }
+}
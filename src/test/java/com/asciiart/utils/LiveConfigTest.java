@@ -0,0 +1,89 @@
+package com.asciiart.utils;
+
+import com.asciiart.processor.ASCIIConverter;
+import com.asciiart.processor.PipelineConfig;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks atomic updates and reloads of the settings file
+ */
+public class LiveConfigTest {
+    
+    private static void write(Path file, String json) throws Exception {
+        Files.write(file, json.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    @Test
+    public void concurrentUpdatesAreNotLost() throws Exception {
+        LiveConfig config = new LiveConfig(PipelineConfig.defaults().withBrightness(-100));
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 25; i++) {
+                    config.update(c -> c.withBrightness(c.getBrightness() + 1));
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, config.get().getBrightness());
+    }
+    
+    @Test
+    public void brokenFileKeepsTheCurrentSnapshot() throws Exception {
+        Path file = Files.createTempDirectory("settings").resolve("settings.json");
+        LiveConfig config = new LiveConfig(PipelineConfig.defaults());
+        List<String> messages = Collections.synchronizedList(new ArrayList<>());
+        config.setReloadListener(messages::add);
+        
+        write(file, "{\"processing\": {\"contrast\": 2.0}}");
+        assertTrue(config.reload(file));
+        assertEquals(2.0, config.get().getContrast());
+        
+        write(file, "{\"processing\": {\"contrast\": ");
+        assertFalse(config.reload(file));
+        assertEquals(2.0, config.get().getContrast());
+        assertEquals(2, messages.size());
+    }
+    
+    @Test
+    public void editedFileIsPickedUp() throws Exception {
+        Path file = Files.createTempDirectory("settings").resolve("settings.json");
+        write(file, "{}");
+        LiveConfig config = new LiveConfig(PipelineConfig.defaults());
+        config.watch(file);
+        try {
+            write(file, "{\"display\": {\"characterSet\": \"extended\"}, \"processing\": {\"dither\": \"atkinson\"}}");
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (config.get().getDither() != ASCIIConverter.Dither.ATKINSON) {
+                assertTrue(System.nanoTime() < deadline, "settings change not picked up");
+                Thread.sleep(20);
+            }
+            assertEquals(ASCIIConverter.EXTENDED_CHARSET, config.get().getCharset());
+        } finally {
+            config.close();
+        }
+    }
+}